@@ -0,0 +1,28 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.benchmarks;
+
+/**
+ * The K definitions the benchmarks are run against, together with the program each one executes.
+ * <p>
+ * The definitions are kept in this module rather than taken from the tutorial or the regression
+ * tests, so that changes to those do not show up as changes in performance.
+ */
+public enum Fixture {
+
+    IMP("imp.k", "IMP", "IMP-SYNTAX",
+            "int s, n; n = 20; while(0<=n) { s = s + n; n = n + -1; }"),
+    COLLECTIONS("collections.k", "COLLECTIONS", "COLLECTIONS-SYNTAX",
+            "fill 100");
+
+    public final String fileName;
+    public final String mainModule;
+    public final String mainProgramsModule;
+    public final String program;
+
+    Fixture(String fileName, String mainModule, String mainProgramsModule, String program) {
+        this.fileName = fileName;
+        this.mainModule = mainModule;
+        this.mainProgramsModule = mainProgramsModule;
+        this.program = program;
+    }
+}
@@ -0,0 +1,184 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.benchmarks;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.TypeLiteral;
+import org.kframework.attributes.Source;
+import org.kframework.backend.java.compile.KOREtoBackendKIL;
+import org.kframework.backend.java.kil.ConstrainedTerm;
+import org.kframework.backend.java.kil.Definition;
+import org.kframework.backend.java.kil.GlobalContext;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.TermContext;
+import org.kframework.backend.java.symbolic.InitializeRewriter;
+import org.kframework.backend.java.symbolic.JavaBackend;
+import org.kframework.backend.java.symbolic.JavaExecutionOptions;
+import org.kframework.backend.java.symbolic.JavaSymbolicCommonModule;
+import org.kframework.backend.java.symbolic.KILtoBackendJavaKILTransformer;
+import org.kframework.backend.java.symbolic.Stage;
+import org.kframework.backend.java.symbolic.SymbolicRewriter;
+import org.kframework.backend.java.util.JavaKRunState;
+import org.kframework.builtin.Sorts;
+import org.kframework.kompile.CompiledDefinition;
+import org.kframework.kompile.Kompile;
+import org.kframework.kompile.KompileOptions;
+import org.kframework.kore.K;
+import org.kframework.krun.KRun;
+import org.kframework.krun.api.KRunState;
+import org.kframework.krun.api.io.FileSystem;
+import org.kframework.krun.ioserver.filesystem.portable.PortableFileSystem;
+import org.kframework.main.GlobalOptions;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.file.FileUtil;
+import org.kframework.utils.inject.Builtins;
+import org.kframework.utils.inject.DefinitionScoped;
+import org.kframework.utils.inject.RequestScoped;
+import org.kframework.utils.inject.SimpleScope;
+import org.kframework.utils.options.SMTOptions;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.kframework.kore.KORE.KToken;
+
+/**
+ * Benchmark state holding a {@link Fixture} kompiled with the Java backend, and the states of the
+ * concrete execution of its program. The benchmarks replay their hot path on each of these states,
+ * so that they measure the mix of terms the rewrite engine actually sees.
+ * <p>
+ * Kompiling reads the builtin modules from {@code k-distribution/include} in the source tree, so
+ * the benchmarks have to be run from a checkout of K.
+ */
+@State(Scope.Benchmark)
+public class KompiledDefinition {
+
+    /**
+     * The bound on the number of execution states recorded.
+     */
+    private static final int MAX_TRACE_LENGTH = 1000;
+
+    @Param({"IMP", "COLLECTIONS"})
+    public Fixture fixture;
+
+    /**
+     * The value of {@code --hash-consing} for the execution. Run with {@code -p hashConsing=false,true}
+     * to compare.
+     */
+    @Param({"false"})
+    public boolean hashConsing;
+
+    public Definition definition;
+    public GlobalContext global;
+    public SymbolicRewriter rewriter;
+    public KompileOptions kompileOptions;
+    public JavaExecutionOptions javaOptions;
+    public KExceptionManager kem;
+    public Map<String, Provider<MethodHandle>> hookProvider;
+
+    /**
+     * The states of the execution of the program of the fixture, in order, starting with the
+     * initial configuration.
+     */
+    public List<ConstrainedTerm> trace;
+
+    @Setup(Level.Trial)
+    public void kompile() throws IOException {
+        GlobalOptions globalOptions = new GlobalOptions();
+        kem = new KExceptionManager(globalOptions);
+        FileUtil files = FileUtil.testFileUtil();
+        kompileOptions = new KompileOptions();
+
+        Kompile kompile = new Kompile(kompileOptions, files, kem, false);
+        CompiledDefinition compiledDef = kompile.run(
+                copyToTempDirectory(fixture.fileName),
+                fixture.mainModule,
+                fixture.mainProgramsModule,
+                Sorts.K(),
+                new JavaBackend(kem, files, globalOptions, kompileOptions).steps(kompile));
+
+        SimpleScope requestScope = new SimpleScope();
+        Injector injector = Guice.createInjector(new JavaSymbolicCommonModule() {
+            @Override
+            protected void configure() {
+                super.configure();
+                bind(GlobalOptions.class).toInstance(globalOptions);
+                bind(SMTOptions.class).toInstance(new SMTOptions());
+                bind(Stage.class).toInstance(Stage.REWRITING);
+                bind(FileSystem.class).to(PortableFileSystem.class);
+                bind(FileUtil.class).toInstance(files);
+                bind(KompileOptions.class).toInstance(kompileOptions);
+
+                bindScope(RequestScoped.class, requestScope);
+                bindScope(DefinitionScoped.class, requestScope);
+            }
+        });
+
+        requestScope.enter();
+        try {
+            injector.getInstance(JavaExecutionOptions.class).hashConsing = hashConsing;
+            InitializeRewriter.SymbolicRewriterGlue glue = (InitializeRewriter.SymbolicRewriterGlue)
+                    injector.getInstance(InitializeRewriter.class).apply(compiledDef.executionModule());
+            definition = glue.definition;
+            global = glue.rewritingContext;
+            javaOptions = injector.getInstance(JavaExecutionOptions.class);
+            hookProvider = injector.getInstance(Key.get(new TypeLiteral<Map<String, Provider<MethodHandle>>>() {}, Builtins.class));
+            rewriter = new SymbolicRewriter(global, kompileOptions, javaOptions, new KRunState.Counter());
+
+            K program = compiledDef.getProgramParser(kem).apply(
+                    fixture.program,
+                    Source.apply("generated by " + KompiledDefinition.class.getSimpleName()));
+            K initialConfiguration = new KRun(kem, files, true).plugConfigVars(
+                    compiledDef,
+                    Collections.singletonMap(KToken("$PGM", Sorts.KConfigVar()), program));
+
+            TermContext termContext = TermContext.builder(global).freshCounter(0).build();
+            KOREtoBackendKIL converter = new KOREtoBackendKIL(glue.module, definition, global, false, false);
+            Term initialTerm = KILtoBackendJavaKILTransformer.expandAndEvaluate(
+                    termContext, kem, converter.convert(initialConfiguration));
+            trace = execute(new ConstrainedTerm(initialTerm, termContext));
+        } finally {
+            requestScope.exit();
+        }
+    }
+
+    private List<ConstrainedTerm> execute(ConstrainedTerm initialState) {
+        List<ConstrainedTerm> states = new ArrayList<>();
+        ConstrainedTerm state = initialState;
+        states.add(state);
+        while (states.size() < MAX_TRACE_LENGTH) {
+            JavaKRunState next = (JavaKRunState) rewriter.rewrite(state, 1);
+            if (next.getStepsTaken().get() == 0) {
+                break;
+            }
+            state = next.getConstrainedTerm();
+            states.add(state);
+        }
+        return Collections.unmodifiableList(states);
+    }
+
+    private File copyToTempDirectory(String fileName) throws IOException {
+        File directory = Files.createTempDirectory("k-benchmarks").toFile();
+        directory.deleteOnExit();
+        File file = new File(directory, fileName);
+        file.deleteOnExit();
+        try (InputStream in = KompiledDefinition.class.getResourceAsStream(fileName)) {
+            Files.copy(in, file.toPath());
+        }
+        return file;
+    }
+}
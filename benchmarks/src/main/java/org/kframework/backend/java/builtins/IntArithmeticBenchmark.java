@@ -0,0 +1,88 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.builtins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the builtin integer arithmetic on operands which fit in a {@code long}, computed on
+ * unboxed {@code long}s, and on operands which do not, computed on {@link BigInteger}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IntArithmeticBenchmark {
+
+    private static final int OPERAND_COUNT = 100;
+
+    /** "long" for operands which fit in a long, "big" for operands which only fit in a BigInteger */
+    @Param({"long", "big"})
+    public String operands;
+
+    private final IntToken[] terms = new IntToken[OPERAND_COUNT];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BigInteger offset = operands.equals("big") ? BigInteger.ONE.shiftLeft(80) : BigInteger.valueOf(1000);
+        for (int i = 0; i < OPERAND_COUNT; i++) {
+            terms[i] = IntToken.of(offset.add(BigInteger.valueOf(i + 1)));
+        }
+    }
+
+    @Benchmark
+    public void add(Blackhole blackhole) {
+        for (int i = 1; i < OPERAND_COUNT; i++) {
+            blackhole.consume(BuiltinIntOperations.add(terms[i - 1], terms[i], null));
+        }
+    }
+
+    @Benchmark
+    public void mul(Blackhole blackhole) {
+        for (int i = 1; i < OPERAND_COUNT; i++) {
+            blackhole.consume(BuiltinIntOperations.mul(terms[i - 1], terms[i], null));
+        }
+    }
+
+    @Benchmark
+    public void mod(Blackhole blackhole) {
+        for (int i = 1; i < OPERAND_COUNT; i++) {
+            blackhole.consume(BuiltinIntOperations.mod(terms[i], terms[i - 1], null));
+        }
+    }
+
+    @Benchmark
+    public void le(Blackhole blackhole) {
+        for (int i = 1; i < OPERAND_COUNT; i++) {
+            blackhole.consume(BuiltinIntOperations.le(terms[i - 1], terms[i], null));
+        }
+    }
+
+    /**
+     * A loop summing the operands, as in the arithmetic-heavy programs of the semantics.
+     */
+    @Benchmark
+    public IntToken sum() {
+        IntToken sum = IntToken.of(0);
+        for (IntToken term : terms) {
+            sum = BuiltinIntOperations.add(sum, term, null);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,155 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.kil;
+
+import org.kframework.backend.java.benchmarks.KompiledDefinition;
+import org.kframework.backend.java.builtins.BuiltinListOperations;
+import org.kframework.backend.java.builtins.BuiltinMapOperations;
+import org.kframework.backend.java.builtins.BuiltinSetOperations;
+import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.backend.java.symbolic.BottomUpVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the construction of the terms the rewrite engine builds most often.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TermConstructionBenchmark {
+
+    /**
+     * The elements of the maps and lists built, and a map, a set and a list of these elements to
+     * update.
+     */
+    @State(Scope.Benchmark)
+    public static class Elements {
+
+        @Param({"10", "1000"})
+        public int size;
+
+        private final List<Term> terms = new ArrayList<>();
+        private BuiltinMap map;
+        private BuiltinSet set;
+        private BuiltinList list;
+
+        @Setup(Level.Trial)
+        public void setUp(KompiledDefinition fixture) {
+            BuiltinMap.Builder mapBuilder = BuiltinMap.builder(fixture.global);
+            BuiltinSet.Builder setBuilder = BuiltinSet.builder(fixture.global);
+            BuiltinList.Builder listBuilder = BuiltinList.builder(fixture.global);
+            for (int i = 0; i < size; i++) {
+                Term term = IntToken.of(i);
+                terms.add(term);
+                mapBuilder.put(term, term);
+                setBuilder.add(term);
+                listBuilder.addItem(term);
+            }
+            map = (BuiltinMap) mapBuilder.build();
+            set = (BuiltinSet) setBuilder.build();
+            list = (BuiltinList) listBuilder.build();
+        }
+    }
+
+    private GlobalContext global;
+    private TermContext context;
+    private List<KItem> kItems;
+
+    @Setup(Level.Trial)
+    public void setUp(KompiledDefinition fixture) {
+        global = fixture.global;
+        context = TermContext.builder(global).build();
+
+        kItems = new ArrayList<>();
+        BottomUpVisitor collector = new BottomUpVisitor() {
+            @Override
+            public void visit(KItem kItem) {
+                super.visit(kItem);
+                kItems.add(kItem);
+            }
+        };
+        for (ConstrainedTerm state : fixture.trace) {
+            state.term().accept(collector);
+        }
+    }
+
+    @Benchmark
+    public Term builtinMapBuilder(Elements elements) {
+        BuiltinMap.Builder builder = BuiltinMap.builder(global);
+        for (Term element : elements.terms) {
+            builder.put(element, element);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public Term builtinListBuilder(Elements elements) {
+        BuiltinList.Builder builder = BuiltinList.builder(global);
+        for (Term element : elements.terms) {
+            builder.addItem(element);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public Term mapUpdate(Elements elements) {
+        return BuiltinMapOperations.update(elements.map, elements.terms.get(0), IntToken.of(-1), context);
+    }
+
+    @Benchmark
+    public Term mapRemove(Elements elements) {
+        return BuiltinMapOperations.remove(elements.map, elements.terms.get(0), context);
+    }
+
+    @Benchmark
+    public Term setAdd(Elements elements) {
+        return BuiltinSetOperations.constructor(
+                elements.set,
+                BuiltinSetOperations.element(IntToken.of(-1), context),
+                context);
+    }
+
+    @Benchmark
+    public Term listGet(Elements elements) {
+        return BuiltinListOperations.get(elements.list, IntToken.of(elements.size / 2), context);
+    }
+
+    @Benchmark
+    public Term listRange(Elements elements) {
+        return BuiltinListOperations.range(elements.list, IntToken.of(1), IntToken.of(1), context);
+    }
+
+    @Benchmark
+    public Term listConcatenate(Elements elements) {
+        return BuiltinListOperations.constructor(elements.list, elements.list, context);
+    }
+
+    /**
+     * Rebuilds each {@link KItem} of the execution trace of the fixture and computes its sort,
+     * which after the first iteration is served by the sort cache of the {@link Definition}.
+     */
+    @Benchmark
+    public void kItemSort(Blackhole blackhole) {
+        for (KItem kItem : kItems) {
+            blackhole.consume(KItem.of(kItem.kLabel(), kItem.kList(), global).sort());
+        }
+    }
+}
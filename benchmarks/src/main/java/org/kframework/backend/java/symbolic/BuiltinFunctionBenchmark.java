@@ -0,0 +1,90 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.kframework.backend.java.benchmarks.KompiledDefinition;
+import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.TermContext;
+import org.kframework.kil.Attribute;
+import org.kframework.kil.Attributes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the invocation of the builtin integer arithmetic of a definition. The
+ * {@code invokeWithArguments} benchmark calls the unadapted hook implementations the way
+ * {@link BuiltinFunction} used to, as a baseline for {@code invoke}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BuiltinFunctionBenchmark {
+
+    private static final List<String> ARITHMETIC_HOOKS = Arrays.asList(
+            "INT.add", "INT.sub", "INT.mul", "INT.tmod", "INT.le", "INT.eq");
+
+    private static final int OPERAND_COUNT = 100;
+
+    private BuiltinFunction builtins;
+    private TermContext context;
+    private final List<KLabelConstant> labels = new ArrayList<>();
+    private final List<MethodHandle> hooks = new ArrayList<>();
+    private final Term[] operands = new Term[OPERAND_COUNT];
+
+    @Setup(Level.Trial)
+    public void setUp(KompiledDefinition fixture) {
+        builtins = new BuiltinFunction(fixture.definition, fixture.hookProvider, fixture.kem, Stage.REWRITING);
+        context = TermContext.builder(fixture.global).build();
+        for (Map.Entry<String, Attributes> entry : fixture.definition.kLabelAttributes().entrySet()) {
+            String hook = entry.getValue().getAttr(Attribute.HOOK_KEY);
+            if (ARITHMETIC_HOOKS.contains(hook)) {
+                labels.add(KLabelConstant.of(entry.getKey(), fixture.definition));
+                hooks.add(fixture.hookProvider.get(hook).get());
+            }
+        }
+        for (int i = 0; i < OPERAND_COUNT; i++) {
+            operands[i] = IntToken.of(i + 1);
+        }
+    }
+
+    // DISABLE EXCEPTION CHECKSTYLE
+    @Benchmark
+    public void invoke(Blackhole blackhole) throws Throwable {
+        for (KLabelConstant label : labels) {
+            for (int i = 1; i < OPERAND_COUNT; i++) {
+                blackhole.consume(builtins.invoke(context, label, operands[i - 1], operands[i]));
+            }
+        }
+    }
+
+    @Benchmark
+    public void invokeWithArguments(Blackhole blackhole) throws Throwable {
+        for (MethodHandle hook : hooks) {
+            for (int i = 1; i < OPERAND_COUNT; i++) {
+                blackhole.consume(hook.invokeWithArguments(operands[i - 1], operands[i], context));
+            }
+        }
+    }
+    // ENABLE EXCEPTION CHECKSTYLE
+}
@@ -0,0 +1,46 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.kframework.backend.java.benchmarks.KompiledDefinition;
+import org.kframework.backend.java.kil.ConstrainedTerm;
+import org.kframework.krun.api.KRunState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the complete execution of the program of a {@link KompiledDefinition}. Run it with
+ * {@code -prof gc} to also measure the allocation rate and the time spent in garbage collection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExecutionBenchmark {
+
+    private SymbolicRewriter rewriter;
+    private ConstrainedTerm initialState;
+
+    @Setup(Level.Trial)
+    public void setUp(KompiledDefinition fixture) {
+        rewriter = fixture.rewriter;
+        initialState = fixture.trace.get(0);
+    }
+
+    @Benchmark
+    public KRunState execute() {
+        return rewriter.rewrite(initialState, -1);
+    }
+}
@@ -0,0 +1,154 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.kframework.backend.java.benchmarks.KompiledDefinition;
+import org.kframework.backend.java.kil.ConstrainedTerm;
+import org.kframework.backend.java.kil.Rule;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.TermContext;
+import org.kframework.backend.java.kil.Variable;
+import org.kframework.utils.BitSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks of the hot paths of the rewrite engine. Each benchmark replays one of them on every
+ * state of the execution trace of a {@link KompiledDefinition}, so the scores are per trace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RewriterBenchmark {
+
+    /**
+     * A rule application found by the {@link FastRuleMatcher}, ready to have its right-hand side
+     * built.
+     */
+    private static class Match {
+        private final ConstrainedTerm subject;
+        private final Substitution<Variable, Term> substitution;
+        private final Map<scala.collection.immutable.List<Integer>, Term> rewrites;
+
+        private Match(ConstrainedTerm subject, Substitution<Variable, Term> substitution, Map<scala.collection.immutable.List<Integer>, Term> rewrites) {
+            this.subject = subject;
+            this.substitution = substitution;
+            this.rewrites = rewrites;
+        }
+    }
+
+    private SymbolicRewriter rewriter;
+    private FastRuleMatcher matcher;
+    private Term automaton;
+    private CompiledRuleAutomaton compiledAutomaton;
+    private BitSet allRuleBits;
+    private List<ConstrainedTerm> trace;
+    private List<Match> matches;
+    private List<Pair<ConstrainedTerm, Rule>> candidateRules;
+    private List<Pair<ConjunctiveFormula, TermContext>> unificationProblems;
+
+    @Setup(Level.Trial)
+    public void setUp(KompiledDefinition fixture) {
+        rewriter = fixture.rewriter;
+        trace = fixture.trace;
+        int ruleCount = fixture.definition.ruleTable.size();
+        matcher = new FastRuleMatcher(fixture.global, ruleCount);
+        automaton = fixture.definition.automaton.leftHandSide();
+        compiledAutomaton = fixture.definition.compiledAutomaton();
+        allRuleBits = BitSet.apply(ruleCount);
+        allRuleBits.makeOnes(ruleCount);
+
+        matches = new ArrayList<>();
+        for (ConstrainedTerm state : trace) {
+            // the matcher reuses its substitutions across calls, so each state gets its own
+            FastRuleMatcher stateMatcher = new FastRuleMatcher(fixture.global, ruleCount);
+            for (Pair<Substitution<Variable, Term>, Integer> pair : stateMatcher.mainMatch(state.term(), automaton, allRuleBits, true, state.termContext())) {
+                matches.add(new Match(state, pair.getLeft(), stateMatcher.getRewrite(pair.getRight())));
+            }
+        }
+
+        candidateRules = new ArrayList<>();
+        unificationProblems = new ArrayList<>();
+        for (ConstrainedTerm state : trace) {
+            for (Rule rule : fixture.definition.getIndex().getRules(state.term())) {
+                if (rule == fixture.definition.automaton) {
+                    continue;
+                }
+                candidateRules.add(Pair.of(state, rule));
+                unificationProblems.add(Pair.of(
+                        ConjunctiveFormula.of(fixture.global).add(state.term(), rule.renameVariables().leftHandSide()),
+                        state.termContext()));
+            }
+        }
+    }
+
+    @Benchmark
+    public void fastRuleMatcherMainMatch(Blackhole blackhole) {
+        for (ConstrainedTerm state : trace) {
+            blackhole.consume(matcher.mainMatch(state.term(), automaton, allRuleBits, true, state.termContext()));
+        }
+    }
+
+    @Benchmark
+    public void compiledRuleAutomatonMainMatch(Blackhole blackhole) {
+        for (ConstrainedTerm state : trace) {
+            blackhole.consume(matcher.mainMatch(state.term(), compiledAutomaton, allRuleBits, true, state.termContext()));
+        }
+    }
+
+    @Benchmark
+    public void buildRHS(Blackhole blackhole) {
+        for (Match match : matches) {
+            Term subject = match.subject.term();
+            TermContext context = match.subject.termContext();
+            if (match.rewrites.size() == 1) {
+                Map.Entry<scala.collection.immutable.List<Integer>, Term> rewrite = match.rewrites.entrySet().iterator().next();
+                blackhole.consume(rewriter.buildRHS(subject, match.substitution, rewrite.getKey(), rewrite.getValue(), context));
+            } else {
+                blackhole.consume(rewriter.buildRHS(subject, match.substitution,
+                        match.rewrites.entrySet().stream().map(e -> Pair.of(e.getKey(), e.getValue())).collect(Collectors.toList()),
+                        context));
+            }
+        }
+    }
+
+    @Benchmark
+    public void patternMatcherMatch(Blackhole blackhole) {
+        for (Pair<ConstrainedTerm, Rule> pair : candidateRules) {
+            blackhole.consume(PatternMatcher.match(pair.getLeft().term(), pair.getRight(), pair.getLeft().termContext()));
+        }
+    }
+
+    @Benchmark
+    public void conjunctiveFormulaSimplify(Blackhole blackhole) {
+        for (Pair<ConjunctiveFormula, TermContext> pair : unificationProblems) {
+            blackhole.consume(pair.getLeft().simplify(pair.getRight()));
+        }
+    }
+
+    @Benchmark
+    public void deepClonerClone(Blackhole blackhole) {
+        for (ConstrainedTerm state : trace) {
+            blackhole.consume(DeepCloner.clone(state.term()));
+        }
+    }
+}
@@ -19,7 +19,7 @@ import org.kframework.utils.StringUtil;
 public class BuiltinStringOperations {
 
     public static StringToken add(StringToken term1, StringToken term2, TermContext context) {
-        return StringToken.of(term1.stringValue() + term2.stringValue());
+        return StringToken.concat(term1, term2);
     }
 
     public static BoolToken eq(StringToken term1, StringToken term2, TermContext context) {
@@ -9,12 +9,15 @@ import org.kframework.backend.java.symbolic.Visitor;
 import org.kframework.kil.ASTNode;
 
 import java.math.BigInteger;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
  * An integer token. Integer tokens have arbitrary precision.
+ * <p>
+ * The values which fit in a {@code long} are stored unboxed, so that the arithmetic of
+ * {@link BuiltinIntOperations} does not need to allocate {@link BigInteger}s for them. The other
+ * values are stored as {@code BigInteger}s. The tokens of the small values near zero are
+ * preallocated.
  *
  * @author AndreiS
  */
@@ -22,25 +25,47 @@ public final class IntToken extends Token {
 
     public static final Sort SORT = Sort.INT;
 
-    /* BigInteger value wrapped by this IntToken */
-    private final BigInteger value;
+    private static final long CACHE_LOW = -128;
+    private static final long CACHE_HIGH = 1024;
+    private static final IntToken[] cache = new IntToken[(int) (CACHE_HIGH - CACHE_LOW)];
 
-    private IntToken(BigInteger value) {
-        this.value = value;
+    static {
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new IntToken(i + CACHE_LOW, null);
+        }
+    }
+
+    /* the value wrapped by this IntToken if it fits in a long */
+    private final long smallValue;
+
+    /* BigInteger value wrapped by this IntToken, or null if the value fits in a long */
+    private final BigInteger bigValue;
+
+    private IntToken(long smallValue, BigInteger bigValue) {
+        this.smallValue = smallValue;
+        this.bigValue = bigValue;
     }
 
     /**
-     * Returns a {@code IntToken} representation of the given {@link BigInteger} value. The
-     * {@code IntToken} instances are cached to ensure uniqueness (subsequent invocations of this
-     * method with the same {@code BigInteger} value return the same {@code IntToken} object).
+     * Returns a {@code IntToken} representation of the given {@link BigInteger} value.
      */
     public static IntToken of(BigInteger value) {
         assert value != null;
-        return new IntToken(value);
+        if (value.bitLength() < Long.SIZE) {
+            return of(value.longValue());
+        }
+        return new IntToken(0, value);
     }
 
+    /**
+     * Returns a {@code IntToken} representation of the given {@code long} value. The tokens of the
+     * values in [-128, 1024) are shared.
+     */
     public static IntToken of(long value) {
-        return of(BigInteger.valueOf(value));
+        if (value >= CACHE_LOW && value < CACHE_HIGH) {
+            return cache[(int) (value - CACHE_LOW)];
+        }
+        return new IntToken(value, null);
     }
 
     public static IntToken of(String value) {
@@ -57,11 +82,19 @@ public final class IntToken extends Token {
         }
     }
 
+    /**
+     * Returns true iff the value of this IntToken fits in a {@code long}, in which case it can be
+     * retrieved without allocation by {@link #longValue()}.
+     */
+    public boolean isLong() {
+        return bigValue == null;
+    }
+
     /**
      * Returns a {@link BigInteger} representation of the (interpreted) value of this IntToken.
      */
     public BigInteger bigIntegerValue() {
-        return value;
+        return bigValue != null ? bigValue : BigInteger.valueOf(smallValue);
     }
 
     /**
@@ -70,13 +103,10 @@ public final class IntToken extends Token {
      * @throws ArithmeticException Integer does not fit in an int.
      */
     public int intValue() {
-        if (value.compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0) {
-            throw new ArithmeticException();
-        }
-        if (value.compareTo(BigInteger.valueOf(Integer.MIN_VALUE)) < 0) {
+        if (bigValue != null || smallValue > Integer.MAX_VALUE || smallValue < Integer.MIN_VALUE) {
             throw new ArithmeticException();
         }
-        return (int)value.longValue();
+        return (int) smallValue;
     }
 
     /**
@@ -85,13 +115,20 @@ public final class IntToken extends Token {
      * @throws ArithmeticException Integer does not fit in a long.
      */
     public long longValue() {
-        if (value.compareTo(BigInteger.valueOf(Long.MAX_VALUE)) > 0) {
+        if (bigValue != null) {
             throw new ArithmeticException();
         }
-        if (value.compareTo(BigInteger.valueOf(Long.MIN_VALUE)) < 0) {
-            throw new ArithmeticException();
+        return smallValue;
+    }
+
+    /**
+     * Compares the values of this IntToken and of the given one.
+     */
+    public int compareTo(IntToken that) {
+        if (bigValue == null && that.bigValue == null) {
+            return Long.compare(smallValue, that.smallValue);
         }
-        return value.longValue();
+        return bigIntegerValue().compareTo(that.bigIntegerValue());
     }
 
     /**
@@ -100,13 +137,10 @@ public final class IntToken extends Token {
      * @throws ArithmeticException Integer is not in the range of an unsigned byte.
      */
     public byte unsignedByteValue() {
-        if (value.compareTo(BigInteger.valueOf(255)) > 0) {
-            throw new ArithmeticException();
-        }
-        if (value.compareTo(BigInteger.valueOf(0)) < 0) {
+        if (bigValue != null || smallValue > 255 || smallValue < 0) {
             throw new ArithmeticException();
         }
-        return (byte)value.longValue();
+        return (byte) smallValue;
     }
 
     @Override
@@ -119,12 +153,12 @@ public final class IntToken extends Token {
      */
     @Override
     public String value() {
-        return value.toString();
+        return bigValue != null ? bigValue.toString() : Long.toString(smallValue);
     }
 
     @Override
     protected int computeHash() {
-        return value.hashCode();
+        return bigValue != null ? bigValue.hashCode() : Long.hashCode(smallValue);
     }
 
     @Override
@@ -134,7 +168,9 @@ public final class IntToken extends Token {
 
         IntToken intToken = (IntToken) o;
 
-        return value.equals(intToken.value);
+        /* a value which fits in a long is never stored as a BigInteger */
+        return bigValue == null ? intToken.bigValue == null && smallValue == intToken.smallValue
+                : bigValue.equals(intToken.bigValue);
 
     }
 
@@ -1,7 +1,6 @@
 // Copyright (c) 2013-2015 K Team. All Rights Reserved.
 package org.kframework.backend.java.builtins;
 
-import org.kframework.backend.java.kil.MaximalSharing;
 import org.kframework.backend.java.kil.Sort;
 import org.kframework.backend.java.kil.Token;
 import org.kframework.backend.java.symbolic.Transformer;
@@ -15,6 +14,8 @@ import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -22,31 +23,64 @@ import java.util.concurrent.ConcurrentHashMap;
  * A string token. String tokens represent a sequence of unicode code points.
  * In this regard they differ from the underlying String class they are built
  * off of in Java because Java Strings are a sequence of 16-bit UTF-16 characters.
+ * <p>
+ * Strings of at most {@link #INTERN_LIMIT} characters are interned. Longer strings built by
+ * {@link #concat} are ropes: the concatenation of two StringTokens, which is only flattened into
+ * a {@code String} the first time {@link #stringValue()} is called. Appending to a string one
+ * piece at a time thus does not copy the whole string each time. The hash of a rope is computed
+ * from the hashes of its pieces, so hashing one does not flatten it.
  *
  * @author DwightG
  */
-public final class StringToken extends Token implements MaximalSharing {
+public final class StringToken extends Token {
 
     public static final Sort SORT = Sort.STRING;
 
+    /** the maximum length of the strings which are interned */
+    static final int INTERN_LIMIT = 64;
+    /** the maximum length of the flat pieces which {@link #concat} merges into one */
+    static final int CHUNK_SIZE = 256;
+
     /* StringToken cache */
     private static final Map<String, StringToken> cache = new ConcurrentHashMap<>();
 
-    /* String value wrapped by this StringToken */
-    private final String value;
+    /* String value wrapped by this StringToken, or null if it is a rope which is not flattened yet */
+    private volatile String value;
+
+    /* the pieces of this StringToken if it is a rope which is not flattened yet, or null */
+    private volatile StringToken left;
+    private volatile StringToken right;
+
+    /* the number of UTF-16 characters of this StringToken */
+    private final int length;
+
+    /* the hash of the String value of this StringToken, as computed by String#hashCode */
+    private final int stringHash;
 
     private StringToken(String value) {
         this.value = value;
+        this.length = value.length();
+        this.stringHash = value.hashCode();
+    }
+
+    private StringToken(StringToken left, StringToken right) {
+        this.left = left;
+        this.right = right;
+        this.length = left.length + right.length;
+        this.stringHash = left.stringHash * pow31(right.length) + right.stringHash;
     }
 
     /**
      * Returns a {@code StringToken} representation of a given {@link String}
-     * value. The {@code StringToken} instances are cached to ensure uniqueness
+     * value. The {@code StringToken} instances of short strings are cached to ensure uniqueness
      * (subsequent invocations of this method with the same {@code String}
      * value return the same {@code StringToken} object).
      * @param value A UTF-16 representation of this sequence of code points.
      */
     public static StringToken of(String value) {
+        if (value.length() > INTERN_LIMIT) {
+            return new StringToken(value);
+        }
         return cache.computeIfAbsent(value, StringToken::new);
     }
 
@@ -65,14 +99,86 @@ public final class StringToken extends Token implements MaximalSharing {
         }
     }
 
+    /**
+     * Returns the concatenation of the given {@code StringToken}s, without copying them unless the
+     * result is short.
+     */
+    public static StringToken concat(StringToken term1, StringToken term2) {
+        if (term1.length == 0) {
+            return term2;
+        }
+        if (term2.length == 0) {
+            return term1;
+        }
+        if (term1.length + term2.length <= CHUNK_SIZE) {
+            return of(term1.stringValue() + term2.stringValue());
+        }
+
+        /* merge a short piece into the adjacent piece of a rope, so that building a string one
+         * character at a time builds a rope of chunks rather than one node per character */
+        StringToken left = term1.left;
+        StringToken right = term1.right;
+        if (left != null && right != null && right.length + term2.length <= CHUNK_SIZE) {
+            return new StringToken(left, concat(right, term2));
+        }
+        left = term2.left;
+        right = term2.right;
+        if (left != null && right != null && term1.length + left.length <= CHUNK_SIZE) {
+            return new StringToken(concat(term1, left), right);
+        }
+        return new StringToken(term1, term2);
+    }
+
     /**
      * Returns a {@link String} representation of the interpreted value of
-     * this StringToken.
+     * this StringToken, flattening it first if it is a rope.
      */
     public String stringValue() {
+        String s = value;
+        return s != null ? s : flatten();
+    }
+
+    private synchronized String flatten() {
+        if (value != null) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(length);
+        Deque<StringToken> pieces = new ArrayDeque<>();
+        pieces.push(this);
+        while (!pieces.isEmpty()) {
+            StringToken piece = pieces.pop();
+            StringToken left = piece.left;
+            StringToken right = piece.right;
+            if (left == null || right == null) {
+                /* flat, or flattened by another thread since */
+                sb.append(piece.value);
+            } else {
+                pieces.push(right);
+                pieces.push(left);
+            }
+        }
+        /* the value is set before the pieces are dropped, see above */
+        value = sb.toString();
+        left = null;
+        right = null;
         return value;
     }
 
+    /**
+     * Returns 31 to the power of {@code n}, modulo 2^32.
+     */
+    private static int pow31(int n) {
+        int result = 1;
+        int base = 31;
+        for (; n > 0; n >>= 1) {
+            if ((n & 1) != 0) {
+                result *= base;
+            }
+            base *= base;
+        }
+        return result;
+    }
+
     /**
      * Returns a {@code byte[]} representation of the interpreted value of this StringToken.
      * @throws CharacterCodingException Thrown if the String is not a valid sequence of code points
@@ -82,7 +188,7 @@ public final class StringToken extends Token implements MaximalSharing {
         ByteBuffer buffer = Charset.forName("ISO-8859-1")
             .newEncoder()
             .onUnmappableCharacter(CodingErrorAction.REPORT)
-            .encode(CharBuffer.wrap(value));
+            .encode(CharBuffer.wrap(stringValue()));
         byte[] bytes = new byte[buffer.remaining()];
         buffer.get(bytes);
         return bytes;
@@ -98,18 +204,28 @@ public final class StringToken extends Token implements MaximalSharing {
      */
     @Override
     public String value() {
-        return StringUtil.enquoteKString(value);
+        return StringUtil.enquoteKString(stringValue());
     }
 
     @Override
     protected int computeHash() {
-        return value.hashCode();
+        return stringHash;
     }
 
     @Override
     public boolean equals(Object object) {
-        // cached
-        return this == object;
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof StringToken)) {
+            return false;
+        }
+        StringToken stringToken = (StringToken) object;
+        /* short strings are cached */
+        return length > INTERN_LIMIT
+                && length == stringToken.length
+                && stringHash == stringToken.stringHash
+                && stringValue().equals(stringToken.stringValue());
     }
 
     @Override
@@ -122,11 +238,22 @@ public final class StringToken extends Token implements MaximalSharing {
         visitor.visit(this);
     }
 
+    /**
+     * Flattens a rope before it is serialized, so that its pieces are not serialized recursively.
+     */
+    private Object writeReplace() {
+        stringValue();
+        return this;
+    }
+
     /**
      * Returns the cached instance rather than the de-serialized instance if there is a cached
      * instance.
      */
     private Object readResolve() {
+        if (length > INTERN_LIMIT) {
+            return this;
+        }
         return cache.computeIfAbsent(value, v -> this);
     }
 
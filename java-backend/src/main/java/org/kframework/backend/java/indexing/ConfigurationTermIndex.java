@@ -4,6 +4,7 @@ package org.kframework.backend.java.indexing;
 import java.util.List;
 
 import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.util.Constants;
 
 import com.google.common.collect.ImmutableList;
 
@@ -52,4 +53,33 @@ public class ConfigurationTermIndex {
     public int maxOutputBufLen() {
         return maxOutputBufLen;
     }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+
+        if (!(object instanceof ConfigurationTermIndex)) {
+            return false;
+        }
+
+        ConfigurationTermIndex index = (ConfigurationTermIndex) object;
+        return maxInputBufLen == index.maxInputBufLen
+                && maxOutputBufLen == index.maxOutputBufLen
+                && kCellIndexingPairs.equals(index.kCellIndexingPairs)
+                && instreamIndexingPairs.equals(index.instreamIndexingPairs)
+                && outstreamIndexingPairs.equals(index.outstreamIndexingPairs);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        hash = hash * Constants.HASH_PRIME + kCellIndexingPairs.hashCode();
+        hash = hash * Constants.HASH_PRIME + instreamIndexingPairs.hashCode();
+        hash = hash * Constants.HASH_PRIME + outstreamIndexingPairs.hashCode();
+        hash = hash * Constants.HASH_PRIME + maxInputBufLen;
+        hash = hash * Constants.HASH_PRIME + maxOutputBufLen;
+        return hash;
+    }
 }
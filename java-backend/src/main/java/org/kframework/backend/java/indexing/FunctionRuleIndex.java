@@ -0,0 +1,140 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.indexing;
+
+import com.google.common.collect.ImmutableList;
+import org.kframework.backend.java.kil.KItem;
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.KList;
+import org.kframework.backend.java.kil.Rule;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.Token;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the rules of a function on one of its arguments, used to avoid trying to match an
+ * application of the function against each of its rules in turn.
+ * <p>
+ * The index discriminates the rules on the top of the argument of their left-hand side at the
+ * position with the most distinct tops: the {@link KLabelConstant} of a {@link KItem}, or the
+ * value of a {@link Token}. A rule whose argument at that position is anything else (typically
+ * a variable) is a candidate for every application. The candidates are kept in the order of the
+ * rules, except that the [owise] rules come last.
+ *
+ * @see org.kframework.backend.java.kil.Definition#candidateFunctionRules(KItem)
+ */
+public class FunctionRuleIndex {
+
+    private final int position;
+    private final Map<Object, List<Rule>> candidates;
+    /** the candidate rules for an argument whose top is not in {@link #candidates} */
+    private final List<Rule> defaultCandidates;
+    /** the candidate rules for an argument whose top is unknown */
+    private final List<Rule> allRules;
+
+    public FunctionRuleIndex(Collection<Rule> rules) {
+        List<Rule> orderedRules = new ArrayList<>();
+        rules.stream().filter(r -> !r.containsAttribute("owise")).forEach(orderedRules::add);
+        rules.stream().filter(r -> r.containsAttribute("owise")).forEach(orderedRules::add);
+        this.allRules = ImmutableList.copyOf(orderedRules);
+
+        this.position = discriminatingPosition(orderedRules);
+        this.candidates = new HashMap<>();
+        List<Rule> defaultCandidates = new ArrayList<>();
+        if (position >= 0) {
+            for (Rule rule : orderedRules) {
+                Object top = top(argument(rule.leftHandSide(), position));
+                if (top != null) {
+                    candidates.putIfAbsent(top, new ArrayList<>());
+                }
+            }
+            for (Rule rule : orderedRules) {
+                Object top = top(argument(rule.leftHandSide(), position));
+                if (top != null) {
+                    candidates.get(top).add(rule);
+                } else {
+                    defaultCandidates.add(rule);
+                    candidates.values().forEach(l -> l.add(rule));
+                }
+            }
+        }
+        this.defaultCandidates = defaultCandidates;
+    }
+
+    /**
+     * Returns the rules which may apply to the given application of the function, in the order in
+     * which they should be tried.
+     */
+    public List<Rule> candidates(KItem kItem) {
+        if (position < 0) {
+            return allRules;
+        }
+        Object top = top(argument(kItem, position));
+        if (top == null) {
+            return allRules;
+        }
+        List<Rule> rules = candidates.get(top);
+        return rules != null ? rules : defaultCandidates;
+    }
+
+    /**
+     * Returns the argument position on which the rules have the most distinct tops, or -1 if
+     * there is none on which at least two rules differ.
+     */
+    private static int discriminatingPosition(List<Rule> rules) {
+        int bestPosition = -1;
+        int bestCount = 1;
+        for (int i = 0; ; i++) {
+            Set<Object> tops = new HashSet<>();
+            boolean hasArgument = false;
+            for (Rule rule : rules) {
+                Term argument = argument(rule.leftHandSide(), i);
+                if (argument == null) {
+                    continue;
+                }
+                hasArgument = true;
+                Object top = top(argument);
+                if (top != null) {
+                    tops.add(top);
+                }
+            }
+            if (!hasArgument) {
+                return bestPosition;
+            }
+            if (tops.size() > bestCount) {
+                bestPosition = i;
+                bestCount = tops.size();
+            }
+        }
+    }
+
+    private static Term argument(Term term, int position) {
+        if (!(term instanceof KItem) || !(((KItem) term).kList() instanceof KList)) {
+            return null;
+        }
+        KList kList = (KList) ((KItem) term).kList();
+        if (kList.hasFrame() || position >= kList.concreteSize()) {
+            return null;
+        }
+        return kList.get(position);
+    }
+
+    /**
+     * Returns the top of the given argument, or null if it is unknown.
+     */
+    private static Object top(Term argument) {
+        if (argument instanceof Token) {
+            return argument;
+        }
+        if (argument instanceof KItem && ((KItem) argument).kLabel() instanceof KLabelConstant) {
+            return ((KItem) argument).kLabel();
+        }
+        return null;
+    }
+}
@@ -1,6 +1,7 @@
 // Copyright (c) 2014-2015 K Team. All Rights Reserved.
 package org.kframework.backend.java.indexing;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -25,6 +26,7 @@ import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The indexing scheme currently used in the Java Backend
@@ -37,8 +39,44 @@ public class IndexingTable implements Serializable, RuleIndex {
     private Map<Index, ImmutableSet<Rule>> instreamRuleTable;
     private Map<Index, ImmutableSet<Rule>> outstreamRuleTable;
     private ImmutableSet<Rule> unindexedRules;
+    /* the maximum number of lookups in the buffer of an instream or outstream rule */
+    private int maxInstreamRuleBufLen;
+    private int maxOutstreamRuleBufLen;
     private final Definition definition;
 
+    /**
+     * The maximum number of configuration indices whose rules are cached in {@link #rulesCache}.
+     */
+    private static final int RULES_CACHE_SIZE = 1024;
+
+    /**
+     * The rules which may apply to the configurations with a given index, built on demand by
+     * {@link #getRulesFromCfgTermIdx}.
+     */
+    private transient volatile Map<ConfigurationTermIndex, List<Rule>> rulesCache;
+
+    /**
+     * The indexing pair computed for the last content seen in a cell with the given label, so that
+     * it is only computed again when the content of the cell changes. Consecutive steps usually
+     * only change the k cell, and not the stream cells.
+     */
+    private transient volatile Map<CellLabel, CellIndex> cellIndices;
+
+    private static class CellIndex {
+        final Term content;
+        /* the stream attribute of the cell, or null if it is a k cell */
+        final String streamCellAttr;
+        final IndexingPair indexingPair;
+        final int bufLen;
+
+        CellIndex(Term content, String streamCellAttr, IndexingPair indexingPair, int bufLen) {
+            this.content = content;
+            this.streamCellAttr = streamCellAttr;
+            this.indexingPair = indexingPair;
+            this.bufLen = bufLen;
+        }
+    }
+
     private final Data data;
 
     @RequestScoped
@@ -153,6 +191,18 @@ public class IndexingTable implements Serializable, RuleIndex {
             }
         }
         unindexedRules = unindexedRulesBuilder.build();
+
+        maxInstreamRuleBufLen = 0;
+        maxOutstreamRuleBufLen = 0;
+        for (Rule rule : definition.rules()) {
+            if (rule.containsAttribute(Constants.STDIN)) {
+                maxInstreamRuleBufLen = Math.max(maxInstreamRuleBufLen, rule.lookups().equalities().size());
+            } else if (rule.containsAttribute(Constants.STDOUT) || rule.containsAttribute(Constants.STDERR)) {
+                maxOutstreamRuleBufLen = Math.max(maxOutstreamRuleBufLen, rule.lookups().equalities().size());
+            }
+        }
+        rulesCache = null;
+        cellIndices = null;
     }
 
     private void addFreezerIndices(Set<Index> indices, Index index) {
@@ -178,7 +228,32 @@ public class IndexingTable implements Serializable, RuleIndex {
         return getRulesFromCfgTermIdx(getConfigurationTermIndex(indexingCells));
     }
 
+    /**
+     * Returns the rules which may apply to the configurations with the given index, caching them
+     * unless a rule is being audited.
+     */
     private List<Rule> getRulesFromCfgTermIdx(ConfigurationTermIndex cfgTermIdx) {
+        if (RuleAuditing.isAudit()) {
+            return computeRulesFromCfgTermIdx(cfgTermIdx);
+        }
+
+        Map<ConfigurationTermIndex, List<Rule>> cache = rulesCache;
+        if (cache == null) {
+            cache = new ConcurrentHashMap<>();
+            rulesCache = cache;
+        }
+        List<Rule> rules = cache.get(cfgTermIdx);
+        if (rules == null) {
+            rules = ImmutableList.copyOf(computeRulesFromCfgTermIdx(cfgTermIdx));
+            if (cache.size() >= RULES_CACHE_SIZE) {
+                cache.clear();
+            }
+            cache.put(cfgTermIdx, rules);
+        }
+        return rules;
+    }
+
+    private List<Rule> computeRulesFromCfgTermIdx(ConfigurationTermIndex cfgTermIdx) {
         List<Rule> rules = Lists.newArrayList();
 
         /* give priority to IO rules */
@@ -248,33 +323,54 @@ public class IndexingTable implements Serializable, RuleIndex {
         int maxInputBufLen = 0;
         int maxOutputBufLen = 0;
 
+        Map<CellLabel, CellIndex> indices = cellIndices;
+        if (indices == null) {
+            indices = new ConcurrentHashMap<>();
+            cellIndices = indices;
+        }
         for (CellCollection.Cell cell : indexingCells) {
             CellLabel cellLabel = cell.cellLabel();
-            String streamCellAttr = definition.getConfigurationStructureMap()
-                    .get(cellLabel.name()).cell.getCellAttribute(Attribute.STREAM_KEY);
-
-            if (cellLabel.equals(CellLabel.K)) {
-                kCellIndexingPairs.add(IndexingPair.getKCellIndexingPair(cell.content(), definition));
-            } else if (Constants.STDIN.equals(streamCellAttr)) {
-                Term instream = cell.content();
-                instreamIndexingPairs.add(IndexingPair.getInstreamIndexingPair(instream, definition));
-                if (instream instanceof BuiltinList) {
-                    maxInputBufLen = Math.max(maxInputBufLen, ((BuiltinList) instream).concreteSize());
-                }
-            } else if (Constants.STDOUT.equals(streamCellAttr) || Constants.STDERR.equals(streamCellAttr)) {
-                Term outstream = cell.content();
-                outstreamIndexingPairs.add(IndexingPair.getOutstreamIndexingPair(outstream, definition));
-                if (outstream instanceof BuiltinList) {
-                    maxOutputBufLen = Math.max(maxOutputBufLen, ((BuiltinList) outstream).concreteSize());
-                }
+            CellIndex cellIndex = indices.get(cellLabel);
+            if (cellIndex == null || cellIndex.content != cell.content()) {
+                cellIndex = getCellIndex(cell);
+                indices.put(cellLabel, cellIndex);
+            }
+
+            if (cellIndex.streamCellAttr == null) {
+                kCellIndexingPairs.add(cellIndex.indexingPair);
+            } else if (Constants.STDIN.equals(cellIndex.streamCellAttr)) {
+                instreamIndexingPairs.add(cellIndex.indexingPair);
+                maxInputBufLen = Math.max(maxInputBufLen, cellIndex.bufLen);
             } else {
-                assert false : "unexpected indexing cell " + cell;
+                outstreamIndexingPairs.add(cellIndex.indexingPair);
+                maxOutputBufLen = Math.max(maxOutputBufLen, cellIndex.bufLen);
             }
         }
 
+        /* the rules only depend on whether the buffers are at least as long as the lookups of
+         * the stream rules, so the lengths are capped to keep the number of indices bounded */
         return new ConfigurationTermIndex(kCellIndexingPairs,
                 instreamIndexingPairs, outstreamIndexingPairs,
-                maxInputBufLen, maxOutputBufLen);
+                Math.min(maxInputBufLen, maxInstreamRuleBufLen),
+                Math.min(maxOutputBufLen, maxOutstreamRuleBufLen));
+    }
+
+    private CellIndex getCellIndex(CellCollection.Cell cell) {
+        CellLabel cellLabel = cell.cellLabel();
+        String streamCellAttr = definition.getConfigurationStructureMap()
+                .get(cellLabel.name()).cell.getCellAttribute(Attribute.STREAM_KEY);
+
+        Term content = cell.content();
+        int bufLen = content instanceof BuiltinList ? ((BuiltinList) content).concreteSize() : 0;
+        if (cellLabel.equals(CellLabel.K)) {
+            return new CellIndex(content, null, IndexingPair.getKCellIndexingPair(content, definition), 0);
+        } else if (Constants.STDIN.equals(streamCellAttr)) {
+            return new CellIndex(content, streamCellAttr, IndexingPair.getInstreamIndexingPair(content, definition), bufLen);
+        } else if (Constants.STDOUT.equals(streamCellAttr) || Constants.STDERR.equals(streamCellAttr)) {
+            return new CellIndex(content, streamCellAttr, IndexingPair.getOutstreamIndexingPair(content, definition), bufLen);
+        } else {
+            throw new AssertionError("unexpected indexing cell " + cell);
+        }
     }
 
     private ConfigurationTermIndex getConfigurationTermIndex(Term term) {
@@ -5,10 +5,10 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import org.apache.commons.collections4.ListUtils;
 import org.kframework.backend.java.symbolic.Transformer;
 import org.kframework.backend.java.symbolic.Visitor;
 import org.kframework.backend.java.util.Constants;
+import org.kframework.backend.java.util.PersistentList;
 import org.kframework.kil.ASTNode;
 import org.kframework.kil.DataStructureSort;
 import org.kframework.utils.errorsystem.KEMException;
@@ -22,6 +22,9 @@ import java.util.stream.Collectors;
 
 /**
  * Class representing a list.
+ * <p>
+ * The elements are kept in {@link PersistentList}s, so that indexed access, ranges, and pushing
+ * to, popping from, or concatenating lists take O(log n) time.
  *
  * @author: YilongL
  */
@@ -31,8 +34,8 @@ public class BuiltinList extends Collection implements KItemCollection {
         VARIABLE, FUNCTION, PATTERN, LIST;
     }
 
-    private final ImmutableList<Term> elementsLeft;
-    private final ImmutableList<Term> elementsRight;
+    private final PersistentList<Term> elementsLeft;
+    private final PersistentList<Term> elementsRight;
     private final ImmutableList<Term> baseTerms;
     private final ImmutableList<BaseTermType> baseTermTypes;
     private final ImmutableList<Variable> listVariables;
@@ -43,9 +46,9 @@ public class BuiltinList extends Collection implements KItemCollection {
      * Private efficient constructor used by {@link BuiltinList.Builder}.
      */
     private BuiltinList(
-            ImmutableList<Term> elementsLeft,
+            PersistentList<Term> elementsLeft,
             ImmutableList<Term> baseTerms,
-            ImmutableList<Term> elementsRight,
+            PersistentList<Term> elementsRight,
             ImmutableList<BaseTermType> baseTermTypes,
             ImmutableList<Variable> listVariables,
             GlobalContext global) {
@@ -66,10 +69,10 @@ public class BuiltinList extends Collection implements KItemCollection {
         }
     }
 
-    private BuiltinList(ImmutableList<Term> elementsLeft, GlobalContext global) {
+    private BuiltinList(PersistentList<Term> elementsLeft, GlobalContext global) {
         this(elementsLeft,
              ImmutableList.<Term>of(),
-             ImmutableList.<Term>of(),
+             PersistentList.<Term>empty(),
              ImmutableList.<BaseTermType>of(),
              ImmutableList.<Variable>of(),
              global);
@@ -86,7 +89,7 @@ public class BuiltinList extends Collection implements KItemCollection {
     }
 
     public List<Term> elements() {
-        return ListUtils.union(elementsLeft, elementsRight);
+        return elementsLeft.concat(elementsRight);
     }
 
     public List<Term> elementsLeft() {
@@ -343,11 +346,18 @@ public class BuiltinList extends Collection implements KItemCollection {
          * the {@code BuiltinList} to be built. This field is only valid in
          * {@code BuilderStatus#BASE_TERMS}.
          */
-        private final List<Term> pendingElements = Lists.newArrayList();
+        private PersistentList<Term> pendingElements = PersistentList.empty();
 
-        private final ImmutableList.Builder<Term> elementsLeftBuilder = new ImmutableList.Builder<>();
+        /**
+         * List items added one at a time which are yet to be appended to
+         * {@code elementsLeft} or {@code elementsRight} (depending on the
+         * status), so that they are appended in a single concatenation.
+         */
+        private final List<Term> pendingItems = Lists.newArrayList();
+
+        private PersistentList<Term> elementsLeft = PersistentList.empty();
         private final ImmutableList.Builder<Term> baseTermsBuilder = new ImmutableList.Builder<>();
-        private final ImmutableList.Builder<Term> elementsRightBuilder = new ImmutableList.Builder<>();
+        private PersistentList<Term> elementsRight = PersistentList.empty();
         private final ImmutableList.Builder<BaseTermType> baseTermTypesBuilder = new ImmutableList.Builder<>();
         private final ImmutableList.Builder<Variable> listVariablesBuilder = new ImmutableList.Builder<>();
         private final GlobalContext global;
@@ -364,22 +374,45 @@ public class BuiltinList extends Collection implements KItemCollection {
          *            the specified term
          */
         public void addItem(Term term) {
+            if (status == BuilderStatus.BASE_TERMS) {
+                startElementsRight();
+            }
+            pendingItems.add(term);
+        }
+
+        public void addItems(List<Term> terms) {
+            if (terms.isEmpty()) {
+                return;
+            }
+
+            if (status == BuilderStatus.BASE_TERMS) {
+                startElementsRight();
+            }
+            flushPendingItems();
             if (status == BuilderStatus.ELEMENTS_LEFT) {
-                elementsLeftBuilder.add(term);
-            } else if (status == BuilderStatus.BASE_TERMS) {
-                status = BuilderStatus.ELEMENTS_RIGHT;
-                elementsRightBuilder.addAll(pendingElements);
-                pendingElements.clear();
-                elementsRightBuilder.add(term);
+                elementsLeft = elementsLeft.concat(PersistentList.from(terms));
             } else {
-                elementsRightBuilder.add(term);
+                elementsRight = elementsRight.concat(PersistentList.from(terms));
             }
         }
 
-        public void addItems(List<Term> terms) {
-            for (Term term : terms) {
-                addItem(term);
+        private void startElementsRight() {
+            status = BuilderStatus.ELEMENTS_RIGHT;
+            elementsRight = pendingElements;
+            pendingElements = PersistentList.empty();
+        }
+
+        private void flushPendingItems() {
+            if (pendingItems.isEmpty()) {
+                return;
+            }
+
+            if (status == BuilderStatus.ELEMENTS_LEFT) {
+                elementsLeft = elementsLeft.concat(PersistentList.from(pendingItems));
+            } else {
+                elementsRight = elementsRight.concat(PersistentList.from(pendingItems));
             }
+            pendingItems.clear();
         }
 
         private void addConcatTerm(Term term) {
@@ -414,6 +447,7 @@ public class BuiltinList extends Collection implements KItemCollection {
                         + "; expected " + Sort.LIST);
             }
 
+            flushPendingItems();
             if (status == BuilderStatus.ELEMENTS_LEFT) {
                 if (!(term instanceof BuiltinList)) {
                     status = BuilderStatus.BASE_TERMS;
@@ -426,32 +460,28 @@ public class BuiltinList extends Collection implements KItemCollection {
                         addItems(list.elementsLeft);
                         status = BuilderStatus.BASE_TERMS;
                         addConcatTerms(list.baseTerms);
-                        pendingElements.addAll(list.elementsRight);
+                        pendingElements = list.elementsRight;
                     }
                 }
             } else if (status == BuilderStatus.BASE_TERMS) {
                 if (!(term instanceof BuiltinList)) {
                     if (!pendingElements.isEmpty()) {
-                        addConcatTerm(new BuiltinList(
-                                ImmutableList.copyOf(pendingElements),
-                                global));
-                        pendingElements.clear();
+                        addConcatTerm(new BuiltinList(pendingElements, global));
+                        pendingElements = PersistentList.empty();
                     }
                     addConcatTerm(term);
                 } else {
                     BuiltinList list = (BuiltinList) term;
                     if (list.isConcreteCollection()) {
-                        pendingElements.addAll(list.elementsLeft);
+                        pendingElements = pendingElements.concat(list.elementsLeft);
                     } else {
-                        pendingElements.addAll(list.elementsLeft);
+                        pendingElements = pendingElements.concat(list.elementsLeft);
                         if (!pendingElements.isEmpty()) {
-                            addConcatTerm(new BuiltinList(
-                                    ImmutableList.copyOf(pendingElements),
-                                    global));
-                            pendingElements.clear();
+                            addConcatTerm(new BuiltinList(pendingElements, global));
+                            pendingElements = PersistentList.empty();
                         }
                         addConcatTerms(list.baseTerms);
-                        pendingElements.addAll(list.elementsRight);
+                        pendingElements = list.elementsRight;
                     }
                 }
             } else {
@@ -480,15 +510,16 @@ public class BuiltinList extends Collection implements KItemCollection {
         }
 
         public Term build() {
+            flushPendingItems();
             if (!pendingElements.isEmpty()) {
-                elementsRightBuilder.addAll(pendingElements);
-                pendingElements.clear();
+                elementsRight = elementsRight.concat(pendingElements);
+                pendingElements = PersistentList.empty();
             }
 
             BuiltinList builtinList = new BuiltinList(
-                    elementsLeftBuilder.build(),
+                    elementsLeft,
                     baseTermsBuilder.build(),
-                    elementsRightBuilder.build(),
+                    elementsRight,
                     baseTermTypesBuilder.build(),
                     listVariablesBuilder.build(),
                     global);
@@ -8,40 +8,65 @@ import org.kframework.kil.ASTNode;
 import org.kframework.kil.DataStructureSort;
 import org.kframework.utils.errorsystem.KEMException;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import org.apache.commons.collections4.map.UnmodifiableMap;
-
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.Lists;
+import org.pcollections.HashPMap;
+import org.pcollections.HashTreePMap;
 
 
 /**
  * Class representing a map.
+ * <p>
+ * The entries are kept in a persistent map, so that updating a map shares all but O(log n) of the
+ * structure of the original map instead of copying its entries. They are iterated in the order of a
+ * {@link HashMap} holding them, as they were before, since printed configurations and the builtins
+ * choosing an entry depend on that order.
  *
  * @author AndreiS
  */
 public class BuiltinMap extends AssociativeCommutativeCollection {
 
-    private final UnmodifiableMap<Term, Term> entries;
+    private final transient HashPMap<Term, Term> entries;
+
+    /**
+     * The hash code of {@link #entries} as specified by {@link Map#hashCode}, maintained
+     * incrementally by {@link BuiltinMap.Builder}.
+     */
+    private final transient int entriesHashCode;
+
+    /**
+     * The entries in the iteration order of a {@link HashMap}, built on the first call to {@link #getEntries}.
+     */
+    private transient volatile Map<Term, Term> orderedEntries;
 
     /**
      * Private efficient constructor used by {@link BuiltinMap.Builder}.
      */
     private BuiltinMap(
-            UnmodifiableMap<Term, Term> entries,
+            HashPMap<Term, Term> entries,
+            int entriesHashCode,
             ImmutableMultiset<KItem> collectionPatterns,
             ImmutableMultiset<Term> collectionFunctions,
             ImmutableMultiset<Variable> collectionVariables,
             GlobalContext global) {
         super(collectionPatterns, collectionFunctions, collectionVariables, global);
         this.entries = entries;
+        this.entriesHashCode = entriesHashCode;
     }
 
     public static Term concatenate(GlobalContext global, Term... maps) {
@@ -65,8 +90,16 @@ public class BuiltinMap extends AssociativeCommutativeCollection {
         return entries.get(key);
     }
 
-    public UnmodifiableMap<Term, Term> getEntries() {
-        return entries;
+    /**
+     * Returns the entries of this map, unmodifiable, iterated in the order of a {@link HashMap}.
+     */
+    public Map<Term, Term> getEntries() {
+        Map<Term, Term> ordered = orderedEntries;
+        if (ordered == null) {
+            ordered = Collections.unmodifiableMap(new HashMap<>(entries));
+            orderedEntries = ordered;
+        }
+        return ordered;
     }
 
     public boolean isUnifiableByCurrentAlgorithm() {
@@ -99,7 +132,8 @@ public class BuiltinMap extends AssociativeCommutativeCollection {
         }
 
         BuiltinMap map = (BuiltinMap) object;
-        return entries.equals(map.entries)
+        return entriesHashCode == map.entriesHashCode
+                && (entries == map.entries || entries.equals(map.entries))
                 && collectionPatterns.equals(map.collectionPatterns)
                 && collectionFunctions.equals(map.collectionFunctions)
                 && collectionVariables.equals(map.collectionVariables);
@@ -108,7 +142,7 @@ public class BuiltinMap extends AssociativeCommutativeCollection {
     @Override
     protected int computeHash() {
         int hashCode = 1;
-        hashCode = hashCode * Constants.HASH_PRIME + entries.hashCode();
+        hashCode = hashCode * Constants.HASH_PRIME + entriesHashCode;
         hashCode = hashCode * Constants.HASH_PRIME + collectionPatterns.hashCode();
         hashCode = hashCode * Constants.HASH_PRIME + collectionFunctions.hashCode();
         hashCode = hashCode * Constants.HASH_PRIME + collectionVariables.hashCode();
@@ -141,7 +175,7 @@ public class BuiltinMap extends AssociativeCommutativeCollection {
     private String toString(String operator, String mapsTo, String identity) {
         if (!isEmpty()) {
             return Joiner.on(operator).join(
-                    Joiner.on(operator).withKeyValueSeparator(mapsTo).join(entries),
+                    Joiner.on(operator).withKeyValueSeparator(mapsTo).join(getEntries()),
                     Joiner.on(operator).join(collectionPatterns),
                     Joiner.on(operator).join(collectionFunctions),
                     Joiner.on(operator).join(collectionVariables));
@@ -165,7 +199,7 @@ public class BuiltinMap extends AssociativeCommutativeCollection {
         DataStructureSort sort = global.getDefinition().dataStructureSortOf(sort());
 
         ArrayList<Term> components = Lists.newArrayList();
-        entries.entrySet().stream().forEach(entry ->
+        getEntries().entrySet().stream().forEach(entry ->
                 components.add(KItem.of(
                         KLabelConstant.of(sort.elementLabel(), global.getDefinition()),
                         KList.concatenate(entry.getKey(), entry.getValue()),
@@ -182,13 +216,43 @@ public class BuiltinMap extends AssociativeCommutativeCollection {
         return components;
     }
 
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(new HashMap<>(entries));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        Map<Term, Term> map = (Map<Term, Term>) in.readObject();
+        try {
+            Field entriesField = BuiltinMap.class.getDeclaredField("entries");
+            entriesField.setAccessible(true);
+            entriesField.set(this, HashTreePMap.from(map));
+            Field entriesHashCodeField = BuiltinMap.class.getDeclaredField("entriesHashCode");
+            entriesHashCodeField.setAccessible(true);
+            entriesHashCodeField.setInt(this, map.hashCode());
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void readObjectNoData() throws ObjectStreamException {
+        throw new InvalidObjectException("Stream data required");
+    }
+
+    private static int entryHashCode(Term key, Term value) {
+        return key.hashCode() ^ value.hashCode();
+    }
+
     public static Builder builder(GlobalContext global) {
         return new Builder(global);
     }
 
     public static class Builder {
 
-        private final Map<Term, Term> entries = new HashMap<>();
+        private HashPMap<Term, Term> entries = HashTreePMap.empty();
+        private int entriesHashCode = 0;
         private final ImmutableMultiset.Builder<KItem> patternsBuilder = new ImmutableMultiset.Builder<>();
         private final ImmutableMultiset.Builder<Term> functionsBuilder = new ImmutableMultiset.Builder<>();
         private final ImmutableMultiset.Builder<Variable> variablesBuilder = new ImmutableMultiset.Builder<>();
@@ -199,7 +263,12 @@ public class BuiltinMap extends AssociativeCommutativeCollection {
         }
 
         public void put(Term key, Term value) {
-            entries.put(key, value);
+            Term oldValue = entries.get(key);
+            if (oldValue != null) {
+                entriesHashCode -= entryHashCode(key, oldValue);
+            }
+            entries = entries.plus(key, value);
+            entriesHashCode += entryHashCode(key, value);
         }
 
         /**
@@ -207,15 +276,20 @@ public class BuiltinMap extends AssociativeCommutativeCollection {
          * built.
          */
         public void putAll(Map<? extends Term, ? extends Term> map) {
-            entries.putAll(map);
+            map.forEach(this::put);
         }
 
         public Term remove(Term key) {
-            return entries.remove(key);
+            Term value = entries.get(key);
+            if (value != null) {
+                entries = entries.minus(key);
+                entriesHashCode -= entryHashCode(key, value);
+            }
+            return value;
         }
 
         public Map<Term, Term> getEntries() {
-            return UnmodifiableMap.unmodifiableMap(entries);
+            return entries;
         }
 
         private void concatenate(Term term, boolean update) {
@@ -228,12 +302,25 @@ public class BuiltinMap extends AssociativeCommutativeCollection {
             if (term instanceof BuiltinMap) {
                 BuiltinMap map = (BuiltinMap) term;
 
-                if (!update && entries.keySet().stream().anyMatch(key -> map.entries.containsKey(key))) {
+                HashPMap<Term, Term> smaller = entries.size() <= map.entries.size() ? entries : map.entries;
+                HashPMap<Term, Term> larger = smaller == entries ? map.entries : entries;
+                if (!update && smaller.keySet().stream().anyMatch(larger::containsKey)) {
                     throw KEMException.criticalError("failed to concatenate maps with common keys: "
-                            + entries.keySet().stream().filter(map.entries::containsKey).collect(Collectors.toList()));
+                            + smaller.keySet().stream().filter(larger::containsKey).collect(Collectors.toList()));
                 }
 
-                entries.putAll(map.entries);
+                if (entries.isEmpty()) {
+                    /* share the entries of the concatenated map instead of copying them */
+                    entries = map.entries;
+                    entriesHashCode = map.entriesHashCode;
+                } else if (!update && smaller == entries) {
+                    /* the keys are disjoint, so it suffices to insert the smaller map into the larger one */
+                    entries = map.entries;
+                    entriesHashCode = map.entriesHashCode;
+                    putAll(smaller);
+                } else {
+                    putAll(map.entries);
+                }
                 patternsBuilder.addAll(map.collectionPatterns);
                 functionsBuilder.addAll(map.collectionFunctions);
                 variablesBuilder.addAll(map.collectionVariables);
@@ -276,12 +363,9 @@ public class BuiltinMap extends AssociativeCommutativeCollection {
         }
 
         public Term build() {
-            // YilongL: Guava's ImmutableMap.copyOf(entries) is not smart enough
-            // to avoid actually copying the entries, because entries is not an
-            // ImmutableMap yet; using Apache's decorate method because it would
-            // avoid creating nesting wrappers
             BuiltinMap builtinMap = new BuiltinMap(
-                    (UnmodifiableMap<Term, Term>) UnmodifiableMap.unmodifiableMap(entries),
+                    entries,
+                    entriesHashCode,
                     patternsBuilder.build(),
                     functionsBuilder.build(),
                     variablesBuilder.build(),
@@ -8,36 +8,62 @@ import org.kframework.kil.ASTNode;
 import org.kframework.kil.DataStructureSort;
 import org.kframework.utils.errorsystem.KEMException;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMultiset;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import org.pcollections.HashTreePSet;
+import org.pcollections.MapPSet;
 
 
 /**
  * Class representing a set.
+ * <p>
+ * The elements are kept in a persistent set, so that adding elements to a set shares all but
+ * O(log n) of the structure of the original set instead of copying its elements. They are iterated
+ * in the order of a {@link HashSet} holding them, as they were before, since printed configurations
+ * and the builtins choosing an element depend on that order.
  *
  * @author AndreiS
  */
 public class BuiltinSet extends AssociativeCommutativeCollection {
 
-    private final ImmutableSet<Term> elements;
+    private final transient MapPSet<Term> elements;
+
+    /**
+     * The hash code of {@link #elements} as specified by {@link Set#hashCode}, maintained
+     * incrementally by {@link BuiltinSet.Builder}.
+     */
+    private final transient int elementsHashCode;
+
+    /**
+     * The elements in the iteration order of a {@link HashSet}, built on the first call to {@link #elements}.
+     */
+    private transient volatile Set<Term> orderedElements;
 
     private BuiltinSet(
-            ImmutableSet<Term> elements,
+            MapPSet<Term> elements,
+            int elementsHashCode,
             ImmutableMultiset<KItem> collectionPatterns,
             ImmutableMultiset<Term> collectionFunctions,
             ImmutableMultiset<Variable> collectionVariables,
             GlobalContext global) {
         super(collectionPatterns, collectionFunctions, collectionVariables, global);
         this.elements = elements;
+        this.elementsHashCode = elementsHashCode;
     }
 
     public static Term concatenate(GlobalContext global, Term... sets) {
@@ -64,8 +90,21 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
         return elements.contains(element);
     }
 
+    /**
+     * Returns the elements of this set, unmodifiable, iterated in the order of a {@link HashSet}.
+     */
     public Set<Term> elements() {
-        return elements;
+        Set<Term> ordered = orderedElements;
+        if (ordered == null) {
+            Set<Term> hashSet = new HashSet<>();
+            /* added one by one, as the builder used to, so that the table grows the same way */
+            for (Term element : elements) {
+                hashSet.add(element);
+            }
+            ordered = Collections.unmodifiableSet(hashSet);
+            orderedElements = ordered;
+        }
+        return ordered;
     }
 
     @Override
@@ -89,7 +128,8 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
         }
 
         BuiltinSet set = (BuiltinSet) object;
-        return elements.equals(set.elements)
+        return elementsHashCode == set.elementsHashCode
+                && (elements == set.elements || elements.equals(set.elements))
                 && collectionPatterns.equals(set.collectionPatterns)
                 && collectionFunctions.equals(set.collectionFunctions)
                 && collectionVariables.equals(set.collectionVariables);
@@ -98,7 +138,7 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
     @Override
     protected int computeHash() {
         int hashCode = 1;
-        hashCode = hashCode * Constants.HASH_PRIME + elements.hashCode();
+        hashCode = hashCode * Constants.HASH_PRIME + elementsHashCode;
         hashCode = hashCode * Constants.HASH_PRIME + collectionPatterns.hashCode();
         hashCode = hashCode * Constants.HASH_PRIME + collectionFunctions.hashCode();
         hashCode = hashCode * Constants.HASH_PRIME + collectionVariables.hashCode();
@@ -136,7 +176,7 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
     public String toString(String operator, String identity) {
         Joiner joiner = Joiner.on(operator);
         StringBuilder stringBuilder = new StringBuilder();
-        joiner.appendTo(stringBuilder, elements);
+        joiner.appendTo(stringBuilder, elements());
         joiner.appendTo(stringBuilder, baseTerms());
         if (stringBuilder.length() == 0) {
             stringBuilder.append(identity);
@@ -149,7 +189,7 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
         DataStructureSort sort = global.getDefinition().dataStructureSortOf(sort());
 
         ArrayList<Term> components = Lists.newArrayList();
-        elements.stream().forEach(element ->
+        elements().stream().forEach(element ->
                 components.add(KItem.of(
                         KLabelConstant.of(sort.elementLabel(), global.getDefinition()),
                         KList.singleton(element),
@@ -166,13 +206,39 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
         return components;
     }
 
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(new HashSet<>(elements));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        Set<Term> set = (Set<Term>) in.readObject();
+        try {
+            Field elementsField = BuiltinSet.class.getDeclaredField("elements");
+            elementsField.setAccessible(true);
+            elementsField.set(this, HashTreePSet.from(set));
+            Field elementsHashCodeField = BuiltinSet.class.getDeclaredField("elementsHashCode");
+            elementsHashCodeField.setAccessible(true);
+            elementsHashCodeField.setInt(this, set.hashCode());
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void readObjectNoData() throws ObjectStreamException {
+        throw new InvalidObjectException("Stream data required");
+    }
+
     public static Builder builder(GlobalContext global) {
         return new Builder(global);
     }
 
     public static class Builder {
 
-        private final Set<Term> elements = new HashSet<>();
+        private MapPSet<Term> elements = HashTreePSet.empty();
+        private int elementsHashCode = 0;
         private final ImmutableMultiset.Builder<KItem> patternsBuilder = new ImmutableMultiset.Builder<>();
         private final ImmutableMultiset.Builder<Term> functionsBuilder = new ImmutableMultiset.Builder<>();
         private final ImmutableMultiset.Builder<Variable> variablesBuilder = new ImmutableMultiset.Builder<>();
@@ -183,16 +249,30 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
         }
 
         public boolean add(Term element) {
-            return elements.add(element);
+            if (elements.contains(element)) {
+                return false;
+            }
+            elements = elements.plus(element);
+            elementsHashCode += element.hashCode();
+            return true;
         }
 
         public <T extends Term> boolean addAll(Collection<T> elements) {
             // elements refers to the one in the outer class
-            return this.elements.addAll(elements);
+            boolean changed = false;
+            for (T element : elements) {
+                changed |= add(element);
+            }
+            return changed;
         }
 
         public boolean remove(Term element) {
-            return elements.remove(element);
+            if (!elements.contains(element)) {
+                return false;
+            }
+            elements = elements.minus(element);
+            elementsHashCode -= element.hashCode();
+            return true;
         }
 
         /**
@@ -208,7 +288,19 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
 
                 if (term instanceof BuiltinSet) {
                     BuiltinSet set = (BuiltinSet) term;
-                    elements.addAll(set.elements);
+                    if (elements.isEmpty()) {
+                        /* share the elements of the concatenated set instead of copying them */
+                        elements = set.elements;
+                        elementsHashCode = set.elementsHashCode;
+                    } else if (elements.size() < set.elements.size()) {
+                        /* insert the smaller set into the larger one */
+                        MapPSet<Term> smaller = elements;
+                        elements = set.elements;
+                        elementsHashCode = set.elementsHashCode;
+                        addAll(smaller);
+                    } else {
+                        addAll(set.elements);
+                    }
                     patternsBuilder.addAll(set.collectionPatterns);
                     functionsBuilder.addAll(set.collectionFunctions);
                     variablesBuilder.addAll(set.collectionVariables);
@@ -226,7 +318,8 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
 
         public Term build() {
             BuiltinSet builtinSet = new BuiltinSet(
-                    ImmutableSet.copyOf(elements),
+                    elements,
+                    elementsHashCode,
                     patternsBuilder.build(),
                     functionsBuilder.build(),
                     variablesBuilder.build(),
@@ -15,8 +15,10 @@ import com.google.inject.Inject;
 import com.google.inject.name.Names;
 import org.kframework.attributes.Att;
 import org.kframework.backend.java.compile.KOREtoBackendKIL;
+import org.kframework.backend.java.indexing.FunctionRuleIndex;
 import org.kframework.backend.java.indexing.IndexingTable;
 import org.kframework.backend.java.indexing.RuleIndex;
+import org.kframework.backend.java.symbolic.CompiledRuleAutomaton;
 import org.kframework.backend.java.symbolic.Transformer;
 import org.kframework.backend.java.symbolic.Visitor;
 import org.kframework.backend.java.util.Subsorts;
@@ -31,12 +33,17 @@ import org.kframework.kil.Attributes;
 import org.kframework.kil.DataStructureSort;
 import org.kframework.kil.Production;
 import org.kframework.kil.loader.Context;
+import org.kframework.kore.K;
+import org.kframework.kore.KApply;
+import org.kframework.kore.compile.RewriteToTop;
 import org.kframework.kore.convertors.KOREtoKIL;
 import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import scala.collection.JavaConversions;
 import scala.collection.JavaConverters;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -45,8 +52,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.kframework.kore.KORE.Sort;
@@ -114,6 +123,26 @@ public class Definition extends JavaSymbolicObject {
     private final Multimap<KLabelConstant, Rule> anywhereRules = HashMultimap.create();
     private final Multimap<KLabelConstant, Rule> patternRules = ArrayListMultimap.create();
     private final List<Rule> patternFoldingRules = new ArrayList<>();
+    /**
+     * the function rules tagged with {@link Attribute#SMT_LEMMA_KEY}, which are never pending
+     */
+    private final List<Rule> smtLemmas = new ArrayList<>();
+
+    /**
+     * the function rules not yet converted to backend rules, by the function they define, or null if there are none;
+     * see {@link #addKoreRules(Module, GlobalContext, boolean)}
+     */
+    private transient volatile Map<KLabelConstant, List<org.kframework.definition.Rule>> pendingFunctionRules = null;
+    /**
+     * the function rules converted on demand, by the function they define
+     */
+    private transient Map<KLabelConstant, Collection<Rule>> loadedFunctionRules;
+    private transient KOREtoBackendKIL pendingFunctionRulesTransformer;
+    private transient Module pendingFunctionRulesModule;
+    /**
+     * the indices of the function rules, built on demand by {@link #candidateFunctionRules}
+     */
+    private transient volatile Map<KLabelConstant, FunctionRuleIndex> functionRuleIndices;
 
     private final Set<KLabelConstant> kLabels;
 
@@ -130,6 +159,10 @@ public class Definition extends JavaSymbolicObject {
      * the automaton rule used by {@link org.kframework.backend.java.symbolic.FastRuleMatcher}
      */
     public Rule automaton = null;
+    /**
+     * the left-hand side of {@link #automaton}, compiled on first use (see {@link #compiledAutomaton()})
+     */
+    private transient volatile CompiledRuleAutomaton compiledAutomaton = null;
     /**
      * all the rules indexed with the ordinal used by {@link org.kframework.backend.java.symbolic.FastRuleMatcher}
      */
@@ -300,8 +333,11 @@ public class Definition extends JavaSymbolicObject {
 
     /**
      * Converts the org.kframework.Rules to backend Rules, also plugging in the automaton rule
+     *
+     * @param lazyFunctionRules whether to postpone the conversion of the rules of each function until the function is
+     *                          first looked up with {@link #functionRulesOn}
      */
-    public void addKoreRules(Module module, GlobalContext global) {
+    public void addKoreRules(Module module, GlobalContext global, boolean lazyFunctionRules) {
         KOREtoBackendKIL transformer = new KOREtoBackendKIL(module, this, global, false, global.krunOptions.experimental.prove != null);
         List<org.kframework.definition.Rule> koreRules = JavaConversions.setAsJavaSet(module.sentences()).stream()
                 .filter(org.kframework.definition.Rule.class::isInstance)
@@ -315,7 +351,24 @@ public class Definition extends JavaSymbolicObject {
                 }
             }
         });
+        /* the SMT lemmas are needed by every query to the solver, so their functions are converted eagerly */
+        Set<KLabelConstant> smtLemmaKLabels = new HashSet<>();
+        if (lazyFunctionRules) {
+            koreRules.stream()
+                    .filter(r -> r.att().contains(Attribute.SMT_LEMMA_KEY))
+                    .map(r -> definedFunction(module, r))
+                    .filter(Objects::nonNull)
+                    .forEach(smtLemmaKLabels::add);
+        }
+        Map<KLabelConstant, List<org.kframework.definition.Rule>> pendingRules = new HashMap<>();
         koreRules.forEach(r -> {
+            if (lazyFunctionRules) {
+                KLabelConstant definedKLabel = definedFunction(module, r);
+                if (definedKLabel != null && !smtLemmaKLabels.contains(definedKLabel)) {
+                    pendingRules.computeIfAbsent(definedKLabel, l -> new ArrayList<>()).add(r);
+                    return;
+                }
+            }
             Rule convertedRule = transformer.convert(Optional.of(module), r);
             addRule(convertedRule);
 //            if (r.body() instanceof KApply && ((KApply) r.body()).klabel().name().equals(KLabels.GENERATED_TOP_CELL)) {
@@ -326,8 +379,66 @@ public class Definition extends JavaSymbolicObject {
             }
             if (r.att().contains(AUTOMATON)) {
                 automaton = convertedRule;
+                compiledAutomaton = null;
             }
         });
+        if (!pendingRules.isEmpty()) {
+            pendingFunctionRulesTransformer = transformer;
+            pendingFunctionRulesModule = module;
+            loadedFunctionRules = new ConcurrentHashMap<>();
+            pendingFunctionRules = pendingRules;
+        }
+    }
+
+    /**
+     * Returns the function defined by the given rule if the rule can be converted on demand, or null otherwise.
+     * Sort predicates are excluded, as their rules are also looked up by the label of their argument.
+     */
+    private KLabelConstant definedFunction(Module module, org.kframework.definition.Rule rule) {
+        K leftHandSide = RewriteToTop.toLeft(rule.body());
+        if (!(leftHandSide instanceof KApply)
+                || !module.attributesFor().apply(((KApply) leftHandSide).klabel()).contains(Attribute.FUNCTION_KEY)
+                || rule.att().contains(Attribute.PATTERN_FOLDING_KEY)
+                || rule.att().contains(Att.topRule())
+                || rule.att().contains(AUTOMATON)) {
+            return null;
+        }
+        KLabelConstant kLabel = KLabelConstant.of(((KApply) leftHandSide).klabel().name(), this);
+        return kLabel.isSortPredicate() ? null : kLabel;
+    }
+
+    /**
+     * Converts the pending rules of the given function, if they have not been converted yet.
+     */
+    private synchronized Collection<Rule> loadFunctionRules(KLabelConstant kLabel) {
+        if (pendingFunctionRules == null) {
+            return functionRules.get(kLabel);
+        }
+        Collection<Rule> rules = loadedFunctionRules.get(kLabel);
+        if (rules == null) {
+            List<org.kframework.definition.Rule> koreRules = pendingFunctionRules.get(kLabel);
+            if (koreRules != null) {
+                koreRules.forEach(r -> addRule(pendingFunctionRulesTransformer.convert(Optional.of(pendingFunctionRulesModule), r)));
+            }
+            rules = ImmutableList.copyOf(functionRules.get(kLabel));
+            loadedFunctionRules.put(kLabel, rules);
+        }
+        return rules;
+    }
+
+    /**
+     * Converts all the pending function rules.
+     */
+    private synchronized void loadAllFunctionRules() {
+        if (pendingFunctionRules == null) {
+            return;
+        }
+        for (KLabelConstant kLabel : pendingFunctionRules.keySet()) {
+            loadFunctionRules(kLabel);
+        }
+        pendingFunctionRules = null;
+        pendingFunctionRulesTransformer = null;
+        pendingFunctionRulesModule = null;
     }
 
     @Inject
@@ -359,6 +470,13 @@ public class Definition extends JavaSymbolicObject {
     public void addRule(Rule rule) {
         if (rule.isFunction()) {
             functionRules.put(rule.definedKLabel(), rule);
+            if (rule.containsAttribute(Attribute.SMT_LEMMA_KEY)) {
+                smtLemmas.add(rule);
+            }
+            Map<KLabelConstant, FunctionRuleIndex> indices = functionRuleIndices;
+            if (indices != null) {
+                indices.remove(rule.definedKLabel());
+            }
             if (rule.isSortPredicate()) {
                 sortPredicateRules.put((KLabelConstant) rule.sortPredicateArgument().kLabel(), rule);
             }
@@ -416,10 +534,56 @@ public class Definition extends JavaSymbolicObject {
         this.kem = kem;
     }
 
+    /**
+     * Returns all the function rules, converting the pending ones first.
+     */
     public Multimap<KLabelConstant, Rule> functionRules() {
+        loadAllFunctionRules();
         return functionRules;
     }
 
+    /**
+     * Returns the function rules tagged with {@link Attribute#SMT_LEMMA_KEY}, without converting the pending ones.
+     */
+    public List<Rule> smtLemmas() {
+        return smtLemmas;
+    }
+
+    /**
+     * Returns the rules of the given function, converting them first if they are pending.
+     */
+    public Collection<Rule> functionRulesOn(KLabelConstant kLabel) {
+        if (pendingFunctionRules == null) {
+            return functionRules.get(kLabel);
+        }
+        Collection<Rule> rules = loadedFunctionRules.get(kLabel);
+        return rules != null ? rules : loadFunctionRules(kLabel);
+    }
+
+    /**
+     * Returns the rules of the function applied by the given {@code KItem} which may apply to it,
+     * in the order in which they should be tried, looking them up in the {@link FunctionRuleIndex}
+     * of the function.
+     */
+    public List<Rule> candidateFunctionRules(KItem kItem) {
+        KLabelConstant kLabel = (KLabelConstant) kItem.kLabel();
+        Map<KLabelConstant, FunctionRuleIndex> indices = functionRuleIndices;
+        if (indices == null) {
+            indices = new ConcurrentHashMap<>();
+            functionRuleIndices = indices;
+        }
+        FunctionRuleIndex index = indices.get(kLabel);
+        if (index == null) {
+            index = new FunctionRuleIndex(functionRulesOn(kLabel));
+            indices.put(kLabel, index);
+        }
+        return index.candidates(kItem);
+    }
+
+    public boolean hasFunctionRules() {
+        return pendingFunctionRules != null || !functionRules.isEmpty();
+    }
+
     public Multimap<KLabelConstant, Rule> anywhereRules() {
         return anywhereRules;
     }
@@ -526,4 +690,24 @@ public class Definition extends JavaSymbolicObject {
         return definitionData;
     }
 
+    /**
+     * Returns the left-hand side of {@link #automaton} compiled for
+     * {@link org.kframework.backend.java.symbolic.FastRuleMatcher}, or null if there is no automaton rule.
+     */
+    public CompiledRuleAutomaton compiledAutomaton() {
+        if (automaton == null) {
+            return null;
+        }
+        CompiledRuleAutomaton result = compiledAutomaton;
+        if (result == null) {
+            result = CompiledRuleAutomaton.compile(automaton.leftHandSide(), this);
+            compiledAutomaton = result;
+        }
+        return result;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        loadAllFunctionRules();
+        out.defaultWriteObject();
+    }
 }
@@ -0,0 +1,58 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.kil;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded table of the results of ground applications of the functions whose production is
+ * tagged with {@code memo}, used by {@link KItem.KItemOperations#evaluateFunction}.
+ * <p>
+ * Such a function must be pure: the result of a ground application only depends on the
+ * definition, so it can be reused each time the same application is evaluated again. Kompile
+ * rejects the attribute on functions which are not. Only ground results which are not mutable
+ * are recorded, so that a cached result can be shared between configurations.
+ * <p>
+ * There is one table per {@link GlobalContext}, holding at most {@code --memo-cache-size}
+ * results, evicting the least recently used ones first.
+ */
+public class FunctionMemoTable {
+
+    private final Cache<KItem, Term> results;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public FunctionMemoTable(int maximumSize) {
+        this.results = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * Returns the result recorded for the given function application, or {@code null} if there is
+     * none.
+     */
+    public Term get(KItem kItem) {
+        Term result = results.getIfPresent(kItem);
+        if (result != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Records the result of the given function application, if it can be shared.
+     */
+    public void put(KItem kItem, Term result) {
+        if (result != kItem && result.isGround() && !result.isMutable()) {
+            results.put(kItem, result);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[memo: " + hits + " hits, " + misses + " misses, " + results.size() + " entries]";
+    }
+}
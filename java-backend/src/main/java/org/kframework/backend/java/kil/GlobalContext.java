@@ -8,6 +8,7 @@ import org.kframework.backend.java.kil.KItem.KItemOperations;
 import org.kframework.backend.java.symbolic.BuiltinFunction;
 import org.kframework.backend.java.symbolic.Equality.EqualityOperations;
 import org.kframework.backend.java.symbolic.JavaExecutionOptions;
+import org.kframework.backend.java.symbolic.SMTCache;
 import org.kframework.backend.java.symbolic.SMTOperations;
 import org.kframework.backend.java.symbolic.Stage;
 import org.kframework.backend.java.util.Z3Wrapper;
@@ -37,6 +38,7 @@ public class GlobalContext implements Serializable {
     private final transient Map<String, Provider<MethodHandle>> hookProvider;
     public final transient FileUtil files;
     public final transient GlobalOptions globalOptions;
+    public final transient TermInterner interner; // null unless --hash-consing is given
 
     @Inject
     public GlobalContext(
@@ -56,8 +58,9 @@ public class GlobalContext implements Serializable {
         this.hookProvider = hookProvider;
         this.files = files;
         this.equalityOps = new EqualityOperations(() -> def, javaOptions);
-        this.constraintOps = new SMTOperations(() -> def, smtOptions, new Z3Wrapper(smtOptions, kem, globalOptions, files));
+        this.constraintOps = new SMTOperations(() -> def, smtOptions, new Z3Wrapper(smtOptions, kem, globalOptions, files), new SMTCache(smtOptions, files, kem));
         this.kItemOps = new KItemOperations(stage, javaOptions, kem, this::builtins, globalOptions);
+        this.interner = javaOptions.hashConsing ? new TermInterner() : null;
         this.stage = stage;
     }
 
@@ -78,4 +81,12 @@ public class GlobalContext implements Serializable {
     public Definition getDefinition() {
         return def;
     }
+
+    /**
+     * Releases the resources of this context which outlive a single query, such as the processes
+     * of the SMT solver.
+     */
+    public void close() {
+        constraintOps.close();
+    }
 }
@@ -10,8 +10,9 @@ public class IsGroundFieldInitializer extends BasicVisitor {
 
     @Override
     public final void visitNode(JavaSymbolicObject node) {
-        if (node.isGround != null) {
-            isGround = isGround && node.isGround;
+        Boolean nodeIsGround = node.cachedIsGround();
+        if (nodeIsGround != null) {
+            isGround = isGround && nodeIsGround;
             return;
         }
 
@@ -20,7 +21,7 @@ public class IsGroundFieldInitializer extends BasicVisitor {
         if (!(node instanceof KLabelConstant || node instanceof Token)) {
             super.visitNode(node);
         }
-        node.isGround = isGround;
+        node.setGround(isGround);
         isGround = parentIsGround && isGround;
     }
 
@@ -45,10 +45,28 @@ public abstract class JavaSymbolicObject<T extends JavaSymbolicObject<T>> extend
      * adopt the same pattern used for hashCode, which is also safe and potentially a tiny bit faster.
      */
     volatile transient PSet<Variable> variableSet = null;
-    volatile transient Boolean isGround = null;
-    volatile transient Boolean isNormal = null;
     volatile transient Set<Term> userVariableSet = null;
 
+    /**
+     * Bit field caching the results of {@link #isGround()} and {@link #isNormal()}. The leaves and
+     * the {@link KItem}s, {@link KList}s and {@link KSequence}s set it at construction time from
+     * the flags of their children (see {@link #andFlags}); the flags still unknown afterwards are
+     * computed on demand by {@link IsGroundFieldInitializer} and {@link IsNormalFieldInitializer}.
+     * <p>
+     * Concurrent updates may lose each other's bits, which only causes them to be recomputed.
+     */
+    volatile transient byte flags = 0;
+
+    static final byte GROUND_KNOWN = 1;
+    static final byte GROUND = 2;
+    static final byte NORMAL_KNOWN = 4;
+    static final byte NORMAL = 8;
+
+    /**
+     * The flags of an object which is ground and normal.
+     */
+    static final byte GROUND_AND_NORMAL = GROUND_KNOWN | GROUND | NORMAL_KNOWN | NORMAL;
+
     protected JavaSymbolicObject() {
         super();
     }
@@ -103,7 +121,7 @@ public abstract class JavaSymbolicObject<T extends JavaSymbolicObject<T>> extend
      */
     public PSet<Variable> variableSet() {
         if (variableSet == null) {
-            if (isGround == null || !isGround) {
+            if ((flags & (GROUND_KNOWN | GROUND)) != (GROUND_KNOWN | GROUND)) {
                 new VariableSetFieldInitializer().visitNode(this);
             } else {
                 variableSet = HashTreePSet.empty();
@@ -116,14 +134,14 @@ public abstract class JavaSymbolicObject<T extends JavaSymbolicObject<T>> extend
      * Returns {@code true} if this JavaSymbolicObject does not contain any variables.
      */
     public boolean isGround() {
-        if (isGround == null) {
+        if ((flags & GROUND_KNOWN) == 0) {
             if (variableSet == null) {
                 new IsGroundFieldInitializer().visitNode(this);
             } else {
-                isGround = variableSet.isEmpty();
+                setGround(variableSet.isEmpty());
             }
         }
-        return isGround;
+        return (flags & GROUND) != 0;
     }
 
     /**
@@ -131,10 +149,70 @@ public abstract class JavaSymbolicObject<T extends JavaSymbolicObject<T>> extend
      * patterns, false otherwise.
      */
     public boolean isNormal() {
-        if (isNormal == null) {
+        if ((flags & NORMAL_KNOWN) == 0) {
             new IsNormalFieldInitializer().visitNode(this);
         }
-        return isNormal;
+        return (flags & NORMAL) != 0;
+    }
+
+    /**
+     * Returns the cached result of {@link #isGround()}, or {@code null} if it is not known yet.
+     */
+    final Boolean cachedIsGround() {
+        byte flags = this.flags;
+        return (flags & GROUND_KNOWN) == 0 ? null : (flags & GROUND) != 0;
+    }
+
+    /**
+     * Returns the cached result of {@link #isNormal()}, or {@code null} if it is not known yet.
+     */
+    final Boolean cachedIsNormal() {
+        byte flags = this.flags;
+        return (flags & NORMAL_KNOWN) == 0 ? null : (flags & NORMAL) != 0;
+    }
+
+    final void setGround(boolean isGround) {
+        flags |= isGround ? GROUND_KNOWN | GROUND : GROUND_KNOWN;
+    }
+
+    final void setNormal(boolean isNormal) {
+        flags |= isNormal ? NORMAL_KNOWN | NORMAL : NORMAL_KNOWN;
+    }
+
+    /**
+     * Returns the flags of the conjunction of two sets of flags: an object is ground (normal) iff
+     * all its parts are; this is known if it is known for all the parts or if some part is known
+     * not to be ground (normal).
+     */
+    static byte andFlags(byte flags, byte otherFlags) {
+        return (byte) (andFlag(flags, otherFlags, GROUND_KNOWN, GROUND)
+                | andFlag(flags, otherFlags, NORMAL_KNOWN, NORMAL));
+    }
+
+    /**
+     * Returns the flags of the conjunction of the given flags and the flags of the given child.
+     */
+    static byte andFlags(byte flags, JavaSymbolicObject child) {
+        return andFlags(flags, child.flags);
+    }
+
+    /**
+     * Returns the given flags with the object they describe known not to be normal.
+     */
+    static byte notNormal(byte flags) {
+        return (byte) (flags & ~NORMAL | NORMAL_KNOWN);
+    }
+
+    private static int andFlag(byte flags, byte otherFlags, byte known, byte value) {
+        boolean isKnown = (flags & known) != 0;
+        boolean otherIsKnown = (otherFlags & known) != 0;
+        if (isKnown && (flags & value) == 0 || otherIsKnown && (otherFlags & value) == 0) {
+            return known;
+        } else if (isKnown && otherIsKnown) {
+            return known | value;
+        } else {
+            return 0;
+        }
     }
 
     /**
@@ -45,6 +45,21 @@ public abstract class KCollection extends Collection implements Iterable<Term>,
 
     public abstract List<Term> getContents();
 
+    /**
+     * Returns the ground and normal flags of this {@code KCollection} as far as they follow from
+     * the flags of its contents and frame.
+     */
+    final byte computeFlags() {
+        byte flags = GROUND_AND_NORMAL;
+        for (Term term : getContents()) {
+            flags = andFlags(flags, term);
+        }
+        if (frame != null) {
+            flags = andFlags(flags, frame);
+        }
+        return flags;
+    }
+
     @Override
     public final Iterator<Term> iterator() {
         return getContents().iterator();
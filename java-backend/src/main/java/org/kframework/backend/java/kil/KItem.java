@@ -66,6 +66,12 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
 
     private BitSet[] childrenDontCareRuleMask = null;
 
+    /**
+     * True if this {@code KItem} is the instance of its value held by the {@link TermInterner} of
+     * {@link #global}.
+     */
+    transient boolean interned = false;
+
     public static KItem of(Term kLabel, Term kList, GlobalContext global) {
         return of(kLabel, kList, global, null, null, null);
     }
@@ -83,6 +89,13 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
          * following conversion is necessary */
         kList = KCollection.upKind(kList, Kind.KLIST);
 
+        TermInterner interner = global.interner;
+        if (interner != null && kList instanceof KList
+                && source == null && location == null && childrenDontCareRuleMask == null) {
+            kList = interner.intern((KList) kList);
+            return interner.intern(new KItem(kLabel, kList, global, global.stage, null, null, null));
+        }
+
         // TODO(yilongli): break the dependency on the Tool object
         return new KItem(kLabel, kList, global, global.stage, source, location, childrenDontCareRuleMask);
     }
@@ -104,6 +117,7 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
         this.possibleSorts = possibleSorts;
         this.global = null;
         this.enableCache = false;
+        this.flags = computeFlags();
     }
 
     private KItem(Term kLabel, Term kList, GlobalContext global, Stage stage, Source source, Location location, BitSet[] childrenDonCareRuleMask) {
@@ -139,6 +153,16 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
             possibleSorts = Collections.singleton(sort);
             enableCache = false;
         }
+        this.flags = computeFlags();
+    }
+
+    /**
+     * Returns the ground and normal flags of this {@code KItem} as far as they follow from the
+     * flags of its children.
+     */
+    private byte computeFlags() {
+        byte flags = andFlags(andFlags(GROUND_AND_NORMAL, kLabel), kList);
+        return isSymbolic() ? notNormal(flags) : flags;
     }
 
     private void computeSort() {
@@ -288,6 +312,7 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
         private final KExceptionManager kem;
         private final Provider<BuiltinFunction> builtins;
         private final GlobalOptions options;
+        private final FunctionMemoTable memoTable; // null if --memo-cache-size is 0
 
         @Inject
         public KItemOperations(
@@ -301,6 +326,14 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
             this.kem = kem;
             this.builtins = builtins;
             this.options = options;
+            this.memoTable = javaOptions.memoCacheSize > 0 ? new FunctionMemoTable(javaOptions.memoCacheSize) : null;
+        }
+
+        /**
+         * Returns the table of the results of {@code memo} functions, or {@code null} if it is disabled.
+         */
+        public FunctionMemoTable memoTable() {
+            return memoTable;
         }
 
         private static final String TRACE_MSG = "Function evaluation triggered infinite recursion. Trace:";
@@ -330,9 +363,9 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                         sb.append("Unable to resolve function symbol:\n\t\t");
                         sb.append(result);
                         sb.append('\n');
-                        if (!context.definition().functionRules().isEmpty()) {
+                        if (context.definition().hasFunctionRules()) {
                             sb.append("\tDefined function rules:\n");
-                            for (Rule rule : context.definition().functionRules().get((KLabelConstant) ((KItem) result).kLabel())) {
+                            for (Rule rule : context.definition().functionRulesOn((KLabelConstant) ((KItem) result).kLabel())) {
                                 sb.append("\t\t");
                                 sb.append(rule);
                                 sb.append('\n');
@@ -369,7 +402,7 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
             }
 
             if (kLabelConstant.isSortPredicate()
-                    || !definition.functionRules().get(kLabelConstant).isEmpty()
+                    || !definition.functionRulesOn(kLabelConstant).isEmpty()
                     || builtins.get().isBuiltinKLabel(kLabelConstant)) {
                 kItem.evaluable = true;
             }
@@ -394,6 +427,19 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                 return kItem;
             }
 
+            if (memoTable != null && ((KLabelConstant) kItem.kLabel).isMemo()
+                    && kItem.isGround() && !kItem.isMutable()) {
+                Term result = memoTable.get(kItem);
+                if (result == null) {
+                    result = evaluateFunctionRules(kItem, copyOnShareSubstAndEval, context);
+                    memoTable.put(kItem, result);
+                }
+                return result;
+            }
+            return evaluateFunctionRules(kItem, copyOnShareSubstAndEval, context);
+        }
+
+        private Term evaluateFunctionRules(KItem kItem, boolean copyOnShareSubstAndEval, TermContext context) {
             Definition definition = context.definition();
             KLabelConstant kLabelConstant = (KLabelConstant) kItem.kLabel;
 
@@ -442,11 +488,11 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                 }
 
                 /* apply rules for user defined functions */
-                if (!definition.functionRules().get(kLabelConstant).isEmpty()) {
+                if (!definition.functionRulesOn(kLabelConstant).isEmpty()) {
                     Term result = null;
                     Term owiseResult = null;
 
-                    for (Rule rule : definition.functionRules().get(kLabelConstant)) {
+                    for (Rule rule : definition.candidateFunctionRules(kItem)) {
                         try {
                             if (rule == RuleAuditing.getAuditingRule()) {
                                 RuleAuditing.beginAudit();
@@ -478,7 +524,7 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                                 }
                             }
                             Term rightHandSide = KAbstractRewriteMachine.construct(
-                                    rule.rhsInstructions(),
+                                    rule.compiledRHS(),
                                     solution,
                                     copyOnShareSubstAndEval ? rule.reusableVariables().elementSet() : null,
                                     context,
@@ -532,7 +578,7 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                              * apply the "[owise]" rule only if this kItem does not unify with any
                              * of the left-hand-sides of the other rules (no other rule may apply)
                              */
-                            for (Rule rule : definition.functionRules().get(kLabelConstant)) {
+                            for (Rule rule : definition.functionRulesOn(kLabelConstant)) {
                                 if (rule.containsAttribute("owise")) {
                                     continue;
                                 }
@@ -701,6 +747,10 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
         }
 
         KItem kItem = (KItem) object;
+        if (interned && kItem.interned && global == kItem.global) {
+            /* distinct instances held by the same TermInterner */
+            return false;
+        }
         return kLabel.equals(kItem.kLabel) && kList.equals(kItem.kList);
     }
 
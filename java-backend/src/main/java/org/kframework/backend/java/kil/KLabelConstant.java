@@ -65,6 +65,12 @@ public class KLabelConstant extends KLabel implements MaximalSharing, org.kframe
      */
     private final boolean isPattern;
 
+    /*
+     * boolean flag set iff a production tagged with "memo" generates this
+     * {@code KLabelConstant}
+     */
+    private final boolean isMemo;
+
     private final boolean isSortPredicate;
 
     private final Sort predicateSort;
@@ -103,6 +109,8 @@ public class KLabelConstant extends KLabel implements MaximalSharing, org.kframe
         this.isFunction = isFunction;
         this.isPattern = isPattern;
         this.smtlib = smtlib;
+        this.isMemo = productionAttributes.containsKey(Attribute.keyOf(Attribute.MEMO_KEY));
+        this.flags = GROUND_AND_NORMAL;
     }
 
     /**
@@ -150,6 +158,15 @@ public class KLabelConstant extends KLabel implements MaximalSharing, org.kframe
         return isPattern;
     }
 
+    /**
+     * Returns true iff a production tagged with "memo" generates this
+     * {@code KLabelConstant}, in which case the results of its ground
+     * applications are cached.
+     */
+    public boolean isMemo() {
+        return isMemo;
+    }
+
     /**
      * Returns true if this {@code KLabelConstant} is a sort membership
      * predicate; otherwise, false.
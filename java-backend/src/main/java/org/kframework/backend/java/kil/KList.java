@@ -41,6 +41,11 @@ public class KList extends KCollection implements org.kframework.kore.KList {
      */
     private final ImmutableList<Variable> kListVariables;
 
+    /**
+     * True if this {@code KList} is the instance of its value held by a {@link TermInterner}.
+     */
+    transient boolean interned = false;
+
     /**
      * Builds a single-element KList based on the given term. This method is
      * necessary in addition to the {@code Builder} because the {@code Builder}
@@ -71,6 +76,7 @@ public class KList extends KCollection implements org.kframework.kore.KList {
         super(frame, Kind.KLIST);
         this.contents = contents;
         this.kListVariables = kListVariables;
+        this.flags = computeFlags();
     }
 
     @Override
@@ -86,6 +86,7 @@ public class KSequence extends KCollection implements org.kframework.kore.KSeque
         super(frame, Kind.K);
         this.contents = contents;
         this.kSequenceVariables = kSequenceVariables;
+        this.flags = computeFlags();
     }
 
     @Override
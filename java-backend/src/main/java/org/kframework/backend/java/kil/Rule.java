@@ -11,10 +11,10 @@ import com.google.common.collect.Sets;
 import org.apache.commons.collections15.list.UnmodifiableList;
 import org.kframework.backend.java.builtins.BoolToken;
 import org.kframework.backend.java.indexing.IndexingPair;
+import org.kframework.backend.java.rewritemachine.CompiledRHS;
 import org.kframework.backend.java.rewritemachine.GenerateRHSInstructions;
 import org.kframework.backend.java.rewritemachine.KAbstractRewriteMachine;
 import org.kframework.backend.java.rewritemachine.MatchingInstruction;
-import org.kframework.backend.java.rewritemachine.RHSInstruction;
 import org.kframework.backend.java.symbolic.ConjunctiveFormula;
 import org.kframework.backend.java.symbolic.Equality;
 import org.kframework.backend.java.symbolic.Transformer;
@@ -68,17 +68,17 @@ public class Rule extends JavaSymbolicObject<Rule> {
      */
     private final Map<CellLabel, Term> rhsOfWriteCells;
     /**
-     * Instructions for constructing rhs of local rewrite operations under write cells.
+     * Compiled instructions for constructing rhs of local rewrite operations under write cells.
      */
-    private final Map<CellLabel, ImmutableList<RHSInstruction>> instructionsOfWriteCells;
+    private final Map<CellLabel, CompiledRHS> compiledWriteCells;
     /**
-     * Instructions for evaluating side condition of rule.
+     * Compiled instructions for evaluating side condition of rule.
      */
-    private final List<ImmutableList<RHSInstruction>> instructionsOfRequires;
+    private final List<CompiledRHS> compiledRequires;
     /**
-     * Instructions for evaluating side condition of rule.
+     * Compiled instructions for evaluating data structure lookups of rule.
      */
-    private final List<ImmutableList<RHSInstruction>> instructionsOfLookups;
+    private final List<CompiledRHS> compiledLookups;
     /**
      * @see Rule#computeReusableBoundVars()
      */
@@ -94,7 +94,7 @@ public class Rule extends JavaSymbolicObject<Rule> {
      * {@link KAbstractRewriteMachine}.
      */
     private final List<MatchingInstruction> matchingInstructions;
-    private final List<RHSInstruction> rhsInstructions;
+    private final CompiledRHS compiledRHS;
 
     private final boolean modifyCellStructure;
 
@@ -207,33 +207,22 @@ public class Rule extends JavaSymbolicObject<Rule> {
         this.groundCells        = cellsToCopy != null ? ImmutableSet.copyOf(cellsToCopy) : null;
         this.matchingInstructions       = compiledForFastRewriting ? ImmutableList.copyOf(instructions) : null;
 
-        GenerateRHSInstructions rhsVisitor = new GenerateRHSInstructions();
-        rightHandSide.accept(rhsVisitor);
-        this.rhsInstructions = rhsVisitor.getInstructions();
+        this.compiledRHS = compileRHS(rightHandSide);
 
-        instructionsOfWriteCells = new HashMap<>();
+        compiledWriteCells = new HashMap<>();
         if (compiledForFastRewriting) {
             for (Map.Entry<CellLabel, Term> entry :
                 rhsOfWriteCells.entrySet()) {
-                GenerateRHSInstructions visitor = new GenerateRHSInstructions();
-                entry.getValue().accept(visitor);
-                ImmutableList<RHSInstruction> rhsInstructions = visitor.getInstructions();
-                if (rhsInstructions != null) {
-                    instructionsOfWriteCells.put(entry.getKey(), rhsInstructions);
-                }
+                compiledWriteCells.put(entry.getKey(), compileRHS(entry.getValue()));
             }
         }
-        instructionsOfRequires = new ArrayList<>();
+        compiledRequires = new ArrayList<>();
         for (Term require : requires) {
-            GenerateRHSInstructions visitor = new GenerateRHSInstructions();
-            require.accept(visitor);
-            instructionsOfRequires.add(visitor.getInstructions());
+            compiledRequires.add(compileRHS(require));
         }
-        instructionsOfLookups = new ArrayList<>();
+        compiledLookups = new ArrayList<>();
         for (Equality equality : lookups.equalities()) {
-            GenerateRHSInstructions visitor = new GenerateRHSInstructions();
-            equality.leftHandSide().accept(visitor);
-            instructionsOfLookups.add(visitor.getInstructions());
+            compiledLookups.add(compileRHS(equality.leftHandSide()));
         }
 
         boolean modifyCellStructure;
@@ -472,16 +461,16 @@ public class Rule extends JavaSymbolicObject<Rule> {
         return rhsOfWriteCells;
     }
 
-    public Map<CellLabel, ImmutableList<RHSInstruction>> instructionsOfWriteCell() {
-        return instructionsOfWriteCells;
+    public Map<CellLabel, CompiledRHS> compiledWriteCells() {
+        return compiledWriteCells;
     }
 
-    public List<ImmutableList<RHSInstruction>> instructionsOfRequires() {
-        return UnmodifiableList.decorate(instructionsOfRequires);
+    public List<CompiledRHS> compiledRequires() {
+        return UnmodifiableList.decorate(compiledRequires);
     }
 
-    public List<ImmutableList<RHSInstruction>> instructionsOfLookups() {
-        return UnmodifiableList.decorate(instructionsOfLookups);
+    public List<CompiledRHS> compiledLookups() {
+        return UnmodifiableList.decorate(compiledLookups);
     }
 
     public Multiset<Variable> reusableVariables() {
@@ -496,8 +485,14 @@ public class Rule extends JavaSymbolicObject<Rule> {
         return matchingInstructions;
     }
 
-    public List<RHSInstruction> rhsInstructions() {
-        return rhsInstructions;
+    public CompiledRHS compiledRHS() {
+        return compiledRHS;
+    }
+
+    private static CompiledRHS compileRHS(Term term) {
+        GenerateRHSInstructions visitor = new GenerateRHSInstructions();
+        term.accept(visitor);
+        return CompiledRHS.compile(visitor.getInstructions());
     }
 
     /**
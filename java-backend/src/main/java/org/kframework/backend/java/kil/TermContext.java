@@ -53,6 +53,13 @@ public class TermContext extends JavaSymbolicObject {
         return counter != null ? new TermContext(global, new FreshCounter(counter.value)) : this;
     }
 
+    /**
+     * Forks a {@link TermContext} whose fresh counter, if this context has one, starts at the given value.
+     */
+    public TermContext fork(BigInteger counterValue) {
+        return new TermContext(global, counter != null ? new FreshCounter(counterValue) : null);
+    }
+
     public BigInteger freshConstant() {
         if (counter == null) {
             throw KEMException.criticalError("No fresh counter available in this TermContext.");
@@ -64,6 +71,14 @@ public class TermContext extends JavaSymbolicObject {
         return counter.value;
     }
 
+    public void setCounterValue(BigInteger value) {
+        counter.value = value;
+    }
+
+    public boolean hasFreshCounter() {
+        return counter != null;
+    }
+
     public Definition definition() {
         return global.getDefinition();
     }
@@ -0,0 +1,89 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.kil;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hash-consing table for the ground {@link KItem}s and {@link KList}s built by
+ * {@link KItem#of}, enabled by {@code --hash-consing}.
+ * <p>
+ * A term is interned only if each of its children is either a {@link Token} or an interned term,
+ * so that structurally equal terms interned in the same table are the same object. The
+ * {@link MaximalSharing} contract thus extends to these terms, and {@link KItem#equals} reduces to
+ * an identity check for two {@code KItem}s interned in the same table.
+ * <p>
+ * There is one table per {@link GlobalContext}, because a {@code KItem} refers to the context it
+ * is evaluated in. The table holds its terms weakly, so it does not keep dead configurations
+ * alive.
+ */
+public class TermInterner {
+
+    private final Interner<Term> interner = Interners.newWeakInterner();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Returns the instance of the given {@code KList} held by this table, or the {@code KList}
+     * itself if it is not ground or has children which are not shared.
+     */
+    public KList intern(KList kList) {
+        if (kList.interned) {
+            return kList;
+        }
+        if (kList.hasFrame()) {
+            return kList;
+        }
+        for (Term term : kList.getContents()) {
+            if (!isShared(term)) {
+                return kList;
+            }
+        }
+
+        KList canonicalKList = (KList) lookup(kList);
+        if (canonicalKList == kList) {
+            kList.interned = true;
+        }
+        return canonicalKList;
+    }
+
+    /**
+     * Returns the instance of the given {@code KItem} held by this table, or the {@code KItem}
+     * itself if its {@code KList} is not interned.
+     */
+    public KItem intern(KItem kItem) {
+        if (!(kItem.kLabel() instanceof KLabelConstant)
+                || !(kItem.kList() instanceof KList)
+                || !((KList) kItem.kList()).interned) {
+            return kItem;
+        }
+
+        KItem canonicalKItem = (KItem) lookup(kItem);
+        if (canonicalKItem == kItem) {
+            /* only set once the term is in the table, as the table compares terms using equals */
+            kItem.interned = true;
+        }
+        return canonicalKItem;
+    }
+
+    private Term lookup(Term term) {
+        lookups.incrementAndGet();
+        Term canonicalTerm = interner.intern(term);
+        if (canonicalTerm != term) {
+            hits.incrementAndGet();
+        }
+        return canonicalTerm;
+    }
+
+    private static boolean isShared(Term term) {
+        return term instanceof Token
+                || term instanceof KItem && ((KItem) term).interned;
+    }
+
+    @Override
+    public String toString() {
+        return "[hash-consing: " + lookups + " lookups, " + hits + " hits]";
+    }
+}
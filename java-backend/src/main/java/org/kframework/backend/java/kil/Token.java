@@ -36,6 +36,7 @@ public abstract class Token extends Term implements KoreRepresentation, Immutabl
 
     public Token() {
         super(Kind.KITEM);
+        this.flags = GROUND_AND_NORMAL;
     }
 
     @Override
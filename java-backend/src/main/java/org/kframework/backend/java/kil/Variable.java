@@ -76,6 +76,7 @@ public class Variable extends Term implements Immutable, org.kframework.kore.KVa
         this.sort = sort;
         this.anonymous = anonymous;
         this.ordinal = ordinal;
+        this.flags = GROUND_KNOWN | NORMAL_KNOWN | NORMAL;
     }
 
     public Variable(String name, Sort sort) {
@@ -132,7 +132,7 @@ public class ExpandMacros {
                 context.att());
     }
 
-    public K expand(K term) {
+    public synchronized K expand(K term) {
         if (noMacros) {
             return term;
         }
@@ -0,0 +1,336 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.rewritemachine;
+
+import org.kframework.backend.java.kil.BuiltinList;
+import org.kframework.backend.java.kil.BuiltinMap;
+import org.kframework.backend.java.kil.BuiltinSet;
+import org.kframework.backend.java.kil.CellCollection;
+import org.kframework.backend.java.kil.CellLabel;
+import org.kframework.backend.java.kil.GlobalContext;
+import org.kframework.backend.java.kil.InjectedKLabel;
+import org.kframework.backend.java.kil.KItem;
+import org.kframework.backend.java.kil.KItemProjection;
+import org.kframework.backend.java.kil.KLabelFreezer;
+import org.kframework.backend.java.kil.KLabelInjection;
+import org.kframework.backend.java.kil.KList;
+import org.kframework.backend.java.kil.KSequence;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.TermContext;
+import org.kframework.backend.java.kil.Variable;
+import org.kframework.backend.java.rewritemachine.RHSInstruction.Constructor;
+import org.kframework.backend.java.symbolic.DeepCloner;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A list of {@link RHSInstruction}s compiled into a tree of nodes which builds the term directly, without the
+ * operand stack and the dispatch on the instruction type of interpreting the list.
+ * <p>
+ * Each node builds the terms of its operands in the order in which their instructions appear in the list, so that
+ * the side effects of building a term (evaluating functions, consuming reusable variables) happen in the same order
+ * as when interpreting the list.
+ *
+ * @see GenerateRHSInstructions
+ */
+public abstract class CompiledRHS implements Serializable {
+
+    /**
+     * Builds the term described by the compiled instructions.
+     *
+     * @param solution          the values of the variables
+     * @param reusableVariables the variables whose values may be used without being cloned, consumed on use;
+     *                          if null, the values of the variables are never cloned
+     * @param doClone           whether the constant subterms are cloned
+     */
+    public abstract Term build(Map<Variable, Term> solution, Set<Variable> reusableVariables, TermContext context,
+                               boolean doClone);
+
+    public static CompiledRHS compile(List<RHSInstruction> rhsInstructions) {
+        /* one-instruction lists neither clone constants nor consume reusable variables */
+        if (rhsInstructions.size() == 1) {
+            RHSInstruction instruction = rhsInstructions.get(0);
+            switch (instruction.type()) {
+            case PUSH:
+                return new Push(instruction.term(), false);
+            case SUBST:
+                return new Subst((Variable) instruction.term(), false);
+            }
+        }
+
+        Deque<CompiledRHS> stack = new ArrayDeque<>();
+        for (RHSInstruction instruction : rhsInstructions) {
+            if (stack.size() < operandCount(instruction)) {
+                return new Malformed(rhsInstructions);
+            }
+            switch (instruction.type()) {
+            case PUSH:
+                stack.push(new Push(instruction.term(), true));
+                break;
+            case CONSTRUCT:
+                Constructor constructor = instruction.constructor();
+                switch (constructor.type()) {
+                case KITEM:
+                    CompiledRHS kLabel = stack.pop();
+                    CompiledRHS kList = stack.pop();
+                    stack.push(new ConstructKItem(constructor, kLabel, kList));
+                    break;
+                default:
+                    CompiledRHS[] operands = new CompiledRHS[operandCount(constructor)];
+                    /* the last operand is on top of the stack */
+                    for (int i = operands.length - 1; i >= 0; i--) {
+                        operands[i] = stack.pop();
+                    }
+                    stack.push(new Construct(constructor, operands));
+                }
+                break;
+            case SUBST:
+                stack.push(new Subst((Variable) instruction.term(), true));
+                break;
+            case EVAL:
+                stack.push(new Eval(stack.pop()));
+                break;
+            case PROJECT:
+                stack.push(new Project(stack.pop()));
+                break;
+            }
+        }
+        return stack.size() == 1 ? stack.pop() : new Malformed(rhsInstructions);
+    }
+
+    private static int operandCount(RHSInstruction instruction) {
+        switch (instruction.type()) {
+        case CONSTRUCT:
+            return instruction.constructor().type() == Constructor.ConstructorType.KITEM ?
+                    2 : operandCount(instruction.constructor());
+        case EVAL:
+        case PROJECT:
+            return 1;
+        default:
+            return 0;
+        }
+    }
+
+    private static int operandCount(Constructor constructor) {
+        switch (constructor.type()) {
+        case BUILTIN_LIST:
+            return constructor.size1() + constructor.size2() + constructor.size3();
+        case BUILTIN_MAP:
+            return 2 * constructor.size1() + constructor.size2();
+        case BUILTIN_SET:
+            return constructor.size1() + constructor.size2();
+        case KLIST:
+        case KSEQUENCE:
+            return constructor.size1();
+        case CELL_COLLECTION:
+            return constructor.cellLabels().size() + constructor.size1();
+        case KITEM_PROJECTION:
+        case KLABEL_FREEZER:
+        case KLABEL_INJECTION:
+        case INJECTED_KLABEL:
+            return 1;
+        default:
+            throw new AssertionError("unreachable");
+        }
+    }
+
+    /**
+     * Instructions which do not describe a single term, such as the ones generated for the right-hand side of the
+     * automaton rule, whose disjunctions have no instructions. They are never meant to be executed.
+     */
+    private static class Malformed extends CompiledRHS {
+        private final List<RHSInstruction> rhsInstructions;
+
+        Malformed(List<RHSInstruction> rhsInstructions) {
+            this.rhsInstructions = rhsInstructions;
+        }
+
+        @Override
+        public Term build(Map<Variable, Term> solution, Set<Variable> reusableVariables, TermContext context, boolean doClone) {
+            throw new AssertionError("malformed RHS instructions: " + rhsInstructions);
+        }
+    }
+
+    private static class Push extends CompiledRHS {
+        private final Term term;
+        private final boolean cloneable;
+
+        Push(Term term, boolean cloneable) {
+            this.term = term;
+            this.cloneable = cloneable;
+        }
+
+        @Override
+        public Term build(Map<Variable, Term> solution, Set<Variable> reusableVariables, TermContext context, boolean doClone) {
+            return doClone && cloneable ? DeepCloner.clone(term) : term;
+        }
+    }
+
+    private static class Subst extends CompiledRHS {
+        private final Variable variable;
+        private final boolean reusable;
+
+        Subst(Variable variable, boolean reusable) {
+            this.variable = variable;
+            this.reusable = reusable;
+        }
+
+        @Override
+        public Term build(Map<Variable, Term> solution, Set<Variable> reusableVariables, TermContext context, boolean doClone) {
+            Term term = solution.get(variable);
+            if (term == null) {
+                term = variable;
+            } else if (reusable && reusableVariables != null) {
+                if (reusableVariables.contains(variable)) {
+                    reusableVariables.remove(variable);
+                } else if (term.isMutable()) {
+                    term = DeepCloner.clone(term);
+                }
+            }
+            return term;
+        }
+    }
+
+    private static class Eval extends CompiledRHS {
+        private final CompiledRHS kItem;
+
+        Eval(CompiledRHS kItem) {
+            this.kItem = kItem;
+        }
+
+        @Override
+        public Term build(Map<Variable, Term> solution, Set<Variable> reusableVariables, TermContext context, boolean doClone) {
+            return ((KItem) kItem.build(solution, reusableVariables, context, doClone))
+                    .resolveFunctionAndAnywhere(true, context);
+        }
+    }
+
+    private static class Project extends CompiledRHS {
+        private final CompiledRHS projection;
+
+        Project(CompiledRHS projection) {
+            this.projection = projection;
+        }
+
+        @Override
+        public Term build(Map<Variable, Term> solution, Set<Variable> reusableVariables, TermContext context, boolean doClone) {
+            return ((KItemProjection) projection.build(solution, reusableVariables, context, doClone))
+                    .evaluateProjection();
+        }
+    }
+
+    private static class ConstructKItem extends CompiledRHS {
+        private final Constructor constructor;
+        private final CompiledRHS kLabel;
+        private final CompiledRHS kList;
+
+        ConstructKItem(Constructor constructor, CompiledRHS kLabel, CompiledRHS kList) {
+            this.constructor = constructor;
+            this.kLabel = kLabel;
+            this.kList = kList;
+        }
+
+        @Override
+        public Term build(Map<Variable, Term> solution, Set<Variable> reusableVariables, TermContext context, boolean doClone) {
+            Term builtKList = kList.build(solution, reusableVariables, context, doClone);
+            Term builtKLabel = kLabel.build(solution, reusableVariables, context, doClone);
+            return KItem.of(builtKLabel, builtKList, context.global(), constructor.getSource(), constructor.getLocation());
+        }
+    }
+
+    private static class Construct extends CompiledRHS {
+        private final Constructor constructor;
+        /**
+         * the operands of the constructor, in the order of their instructions
+         */
+        private final CompiledRHS[] operands;
+
+        Construct(Constructor constructor, CompiledRHS[] operands) {
+            this.constructor = constructor;
+            this.operands = operands;
+        }
+
+        @Override
+        public Term build(Map<Variable, Term> solution, Set<Variable> reusableVariables, TermContext context, boolean doClone) {
+            GlobalContext global = context.global();
+            Term[] terms = new Term[operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                terms[i] = operands[i].build(solution, reusableVariables, context, doClone);
+            }
+
+            /* the operands are consumed in the order in which they would be popped off the stack */
+            int top = terms.length;
+            switch (constructor.type()) {
+            case BUILTIN_LIST:
+                BuiltinList.Builder builder = BuiltinList.builder(global);
+                for (int i = 0; i < constructor.size1(); i++) {
+                    builder.addItem(terms[--top]);
+                }
+                for (int i = 0; i < constructor.size2(); i++) {
+                    builder.concatenate(terms[--top]);
+                }
+                for (int i = 0; i < constructor.size3(); i++) {
+                    builder.addItem(terms[--top]);
+                }
+                return builder.build();
+            case BUILTIN_MAP:
+                BuiltinMap.Builder builder1 = BuiltinMap.builder(global);
+                for (int i = 0; i < constructor.size1(); i++) {
+                    Term key = terms[--top];
+                    Term value = terms[--top];
+                    builder1.put(key, value);
+                }
+                for (int i = 0; i < constructor.size2(); i++) {
+                    builder1.concatenate(terms[--top]);
+                }
+                return builder1.build();
+            case BUILTIN_SET:
+                BuiltinSet.Builder builder2 = BuiltinSet.builder(global);
+                for (int i = 0; i < constructor.size1(); i++) {
+                    builder2.add(terms[--top]);
+                }
+                for (int i = 0; i < constructor.size2(); i++) {
+                    builder2.concatenate(terms[--top]);
+                }
+                return builder2.build();
+            case KITEM_PROJECTION:
+                return new KItemProjection(constructor.kind(), terms[--top]);
+            case KLABEL_FREEZER:
+                return new KLabelFreezer(terms[--top]);
+            case KLABEL_INJECTION:
+                return new KLabelInjection(terms[--top]);
+            case INJECTED_KLABEL:
+                return new InjectedKLabel(terms[--top]);
+            case KLIST:
+                KList.Builder builder3 = KList.builder();
+                for (int i = 0; i < constructor.size1(); i++) {
+                    builder3.concatenate(terms[--top]);
+                }
+                return builder3.build();
+            case KSEQUENCE:
+                KSequence.Builder builder4 = KSequence.builder();
+                for (int i = 0; i < constructor.size1(); i++) {
+                    builder4.concatenate(terms[--top]);
+                }
+                return builder4.build();
+            case CELL_COLLECTION:
+                CellCollection.Builder builder5 = CellCollection.builder(
+                        constructor.cellCollectionSort(),
+                        context.definition());
+                for (CellLabel cellLabel : constructor.cellLabels()) {
+                    builder5.put(cellLabel, terms[--top]);
+                }
+                for (int i = 0; i < constructor.size1(); i++) {
+                    builder5.concatenate(terms[--top]);
+                }
+                return builder5.build();
+            default:
+                throw new AssertionError("unreachable");
+            }
+        }
+    }
+}
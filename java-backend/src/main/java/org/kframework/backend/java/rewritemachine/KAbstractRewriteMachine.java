@@ -5,8 +5,6 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.apache.commons.collections4.ListUtils;
 import org.kframework.backend.java.kil.*;
-import org.kframework.backend.java.rewritemachine.RHSInstruction.Constructor;
-import org.kframework.backend.java.symbolic.DeepCloner;
 import org.kframework.backend.java.symbolic.PatternMatcher;
 import org.kframework.backend.java.symbolic.RuleAuditing;
 import org.kframework.backend.java.symbolic.Substitution;
@@ -14,9 +12,7 @@ import org.kframework.backend.java.util.Profiler;
 import org.kframework.backend.java.util.RewriteEngineUtils;
 
 import java.util.Collection;
-import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -92,8 +88,8 @@ public class KAbstractRewriteMachine {
 
                 /* perform local rewrites under write cells */
                 for (CellCollection.Cell cell : solution.writeCells()) {
-                    List<RHSInstruction> instructions = getWriteCellInstructions(cell.cellLabel());
-                    cell.setContent(construct(instructions, solution.substitution(), reusableVariables, context, rule.cellsToCopy().contains(cell.cellLabel())));
+                    CompiledRHS rhs = getCompiledWriteCellRHS(cell.cellLabel());
+                    cell.setContent(construct(rhs, solution.substitution(), reusableVariables, context, rule.cellsToCopy().contains(cell.cellLabel())));
                 }
                 Profiler.stopTimer(Profiler.LOCAL_REWRITE_BUILD_RHS_TIMER);
             } else {
@@ -103,148 +99,10 @@ public class KAbstractRewriteMachine {
         return success;
     }
 
-    public static Term construct(List<RHSInstruction> rhsInstructions,
+    public static Term construct(CompiledRHS rhs,
             Map<Variable, Term> solution, Set<Variable> reusableVariables, TermContext context,
             boolean doClone) {
-        GlobalContext global = context.global();
-
-        /* Special case for one-instruction lists that can be resolved without a stack;
-         * The code falls through the general case. */
-        if (rhsInstructions.size() == 1) {
-            RHSInstruction instruction = rhsInstructions.get(0);
-            switch (instruction.type()) {
-            case PUSH:
-                return instruction.term();
-            case SUBST:
-                Variable var = (Variable) instruction.term();
-                Term content = solution.get(var);
-                if (content == null) {
-                    content = var;
-                }
-                return content;
-            }
-        }
-
-        Deque<Term> stack = new LinkedList<>();
-        for (RHSInstruction instruction : rhsInstructions) {
-            switch (instruction.type()) {
-            case PUSH:
-                Term t = instruction.term();
-                if (doClone) {
-                    stack.push(DeepCloner.clone(t));
-                } else {
-                    stack.push(t);
-                }
-                break;
-            case CONSTRUCT:
-                Constructor constructor = instruction.constructor();
-                switch (constructor.type()) {
-                case BUILTIN_LIST:
-                    BuiltinList.Builder builder = BuiltinList.builder(global);
-                    for (int i = 0; i < constructor.size1(); i++) {
-                        builder.addItem(stack.pop());
-                    }
-                    for (int i = 0; i < constructor.size2(); i++) {
-                        builder.concatenate(stack.pop());
-                    }
-                    for (int i = 0; i < constructor.size3(); i++) {
-                        builder.addItem(stack.pop());
-                    }
-                    stack.push(builder.build());
-                    break;
-                case BUILTIN_MAP:
-                    BuiltinMap.Builder builder1 = BuiltinMap.builder(global);
-                    for (int i = 0; i < constructor.size1(); i++) {
-                        Term key = stack.pop();
-                        Term value = stack.pop();
-                        builder1.put(key, value);
-                    }
-                    for (int i = 0; i < constructor.size2(); i++) {
-                        builder1.concatenate(stack.pop());
-                    }
-                    stack.push(builder1.build());
-                    break;
-                case BUILTIN_SET:
-                    BuiltinSet.Builder builder2 = BuiltinSet.builder(global);
-                    for (int i = 0; i < constructor.size1(); i++) {
-                        builder2.add(stack.pop());
-                    }
-                    for (int i = 0; i < constructor.size2(); i++) {
-                        builder2.concatenate(stack.pop());
-                    }
-                    stack.push(builder2.build());
-                    break;
-                case KITEM:
-                    Term kLabel = stack.pop();
-                    Term kList = stack.pop();
-                    stack.push(KItem.of(kLabel, kList, global, constructor.getSource(), constructor.getLocation()));
-                    break;
-                case KITEM_PROJECTION:
-                    stack.push(new KItemProjection(constructor.kind(), stack.pop()));
-                    break;
-                case KLABEL_FREEZER:
-                    stack.push(new KLabelFreezer(stack.pop()));
-                    break;
-                case KLABEL_INJECTION:
-                    stack.push(new KLabelInjection(stack.pop()));
-                    break;
-                case INJECTED_KLABEL:
-                    stack.push(new InjectedKLabel(stack.pop()));
-                    break;
-                case KLIST:
-                    KList.Builder builder3 = KList.builder();
-                    for (int i = 0; i < constructor.size1(); i++) {
-                        builder3.concatenate(stack.pop());
-                    }
-                    stack.push(builder3.build());
-                    break;
-                case KSEQUENCE:
-                    KSequence.Builder builder4 = KSequence.builder();
-                    for (int i = 0; i < constructor.size1(); i++) {
-                        builder4.concatenate(stack.pop());
-                    }
-                    stack.push(builder4.build());
-                    break;
-                case CELL_COLLECTION:
-                    CellCollection.Builder builder5 = CellCollection.builder(
-                            constructor.cellCollectionSort(),
-                            context.definition());
-                    for (CellLabel cellLabel : constructor.cellLabels()) {
-                        builder5.put(cellLabel, stack.pop());
-                    }
-                    for (int i = 0; i < constructor.size1(); i++) {
-                        builder5.concatenate(stack.pop());
-                    }
-                    stack.push(builder5.build());
-                    break;
-                default:
-                    throw new AssertionError("unreachable");
-                }
-                break;
-            case SUBST:
-                Variable var = (Variable) instruction.term();
-                Term term = solution.get(var);
-                if (term == null) {
-                    term = var;
-                } else if (reusableVariables != null && reusableVariables.contains(var)) {
-                    reusableVariables.remove(var);
-                } else if (reusableVariables != null && term.isMutable()) {
-                    term = DeepCloner.clone(term);
-                }
-                stack.push(term);
-                break;
-            case EVAL:
-                KItem kItem = (KItem) stack.pop();
-                stack.push(kItem.resolveFunctionAndAnywhere(true, context));
-                break;
-            case PROJECT:
-                KItemProjection projection = (KItemProjection) stack.pop();
-                stack.push(projection.evaluateProjection());
-                break;
-            }
-        }
-        assert stack.size() == 1;
-        return stack.pop();
+        return rhs.build(solution, reusableVariables, context, doClone);
     }
 
     private void match(CellCollection.Cell crntCell) {
@@ -357,8 +215,8 @@ public class KAbstractRewriteMachine {
         return rule.rhsOfWriteCell().get(cellLabel);
     }
 
-    private List<RHSInstruction> getWriteCellInstructions(CellLabel cellLabel) {
-        return rule.instructionsOfWriteCell().get(cellLabel);
+    private CompiledRHS getCompiledWriteCellRHS(CellLabel cellLabel) {
+        return rule.compiledWriteCells().get(cellLabel);
     }
 
     private static Collection<CellCollection.Cell> getSubCellsByLabel(Term content, CellLabel label) {
@@ -5,7 +5,7 @@ import org.kframework.backend.java.kil.*;
 import org.kframework.backend.java.kil.CellCollection.Cell;
 import org.kframework.backend.java.rewritemachine.KAbstractRewriteMachine;
 import org.kframework.backend.java.rewritemachine.MatchingInstruction;
-import org.kframework.backend.java.rewritemachine.RHSInstruction;
+import org.kframework.backend.java.rewritemachine.CompiledRHS;
 import org.kframework.backend.java.util.Profiler;
 
 import java.util.List;
@@ -193,10 +193,10 @@ public class AbstractKMachine {
                 if (selectedCell != null && !cell.equals(selectedCell.cells().values().iterator().next())) {
                     builder.put(cell.cellLabel(), cell.content());
                 } else if (isWriteCell(cell.cellLabel())) {
-                    List<RHSInstruction> instructions = getWriteCellInstructions(cell.cellLabel());
+                    CompiledRHS rhs = getCompiledWriteCellRHS(cell.cellLabel());
                     builder.put(
                             cell.cellLabel(),
-                            KAbstractRewriteMachine.construct(instructions, substitution, null, context, false));
+                            KAbstractRewriteMachine.construct(rhs, substitution, null, context, false));
                     changed = true;
                 } else if (cell.content() instanceof CellCollection) {
                     CellCollection transformedContent = transform((CellCollection) cell.content());
@@ -213,8 +213,8 @@ public class AbstractKMachine {
             return rule.rhsOfWriteCell().keySet().contains(cellLabel);
         }
 
-        private List<RHSInstruction> getWriteCellInstructions(CellLabel cellLabel) {
-            return rule.instructionsOfWriteCell().get(cellLabel);
+        private CompiledRHS getCompiledWriteCellRHS(CellLabel cellLabel) {
+            return rule.compiledWriteCells().get(cellLabel);
         }
     }
 
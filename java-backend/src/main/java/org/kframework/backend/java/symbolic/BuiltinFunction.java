@@ -17,9 +17,12 @@ import org.kframework.utils.inject.RequestScoped;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
-import java.lang.reflect.Method;
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.google.inject.Inject;
@@ -34,9 +37,32 @@ import com.google.inject.Provider;
 @RequestScoped
 public class BuiltinFunction {
 
+    /**
+     * The largest arity of the builtin operations that are invoked with {@link MethodHandle#invokeExact}.
+     */
+    private static final int MAX_EXACT_ARITY = 5;
+
+    /**
+     * {@code EXACT_TYPES[n]} is the type {@code (Term, ..., Term, TermContext)Term} with {@code n}
+     * {@code Term} parameters, to which the implementations of builtin operations of arity {@code n}
+     * are adapted.
+     */
+    private static final MethodType[] EXACT_TYPES = new MethodType[MAX_EXACT_ARITY + 1];
+
+    static {
+        for (int arity = 0; arity <= MAX_EXACT_ARITY; arity++) {
+            List<Class<?>> parameterTypes = new ArrayList<>(Collections.nCopies(arity, Term.class));
+            parameterTypes.add(TermContext.class);
+            EXACT_TYPES[arity] = MethodType.methodType(Term.class, parameterTypes);
+        }
+    }
+
     /**
      * Map of {@link KLabelConstant} representation of builtin (hooked) operations to
-     * {@link Method} representation of Java implementation of said operations.
+     * {@link MethodHandle} representation of Java implementation of said operations.
+     * Where possible, the handles are adapted to one of the {@link #EXACT_TYPES} when the
+     * definition is loaded, so that {@link #invoke} neither boxes the arguments into an array nor
+     * converts them on every call.
      */
     private final Map<KLabelConstant, MethodHandle> table = new HashMap<>();
 
@@ -82,11 +108,29 @@ public class BuiltinFunction {
                     continue;
                 }
 
-                table.put(KLabelConstant.of(entry.getKey(), definition), hookProvider.get(hookAttribute).get());
+                table.put(KLabelConstant.of(entry.getKey(), definition), exactInvoker(hookProvider.get(hookAttribute).get()));
             }
         }
     }
 
+    /**
+     * Adapts the given implementation of a builtin operation to the {@link #EXACT_TYPES exact type}
+     * of its arity. The casts of the arguments to the parameter types of the implementation are
+     * kept, so an argument of the wrong kind still results in a {@link ClassCastException}.
+     * Returns the handle unchanged if it cannot be adapted.
+     */
+    private static MethodHandle exactInvoker(MethodHandle handle) {
+        int arity = handle.type().parameterCount() - 1;
+        if (handle.isVarargsCollector() || arity < 0 || arity > MAX_EXACT_ARITY) {
+            return handle;
+        }
+        try {
+            return handle.asType(EXACT_TYPES[arity]);
+        } catch (WrongMethodTypeException e) {
+            return handle;
+        }
+    }
+
     private static Term throwImpureException(Object... args) {
         throw new ImpureFunctionException();
     }
@@ -108,12 +152,29 @@ public class BuiltinFunction {
     public Term invoke(TermContext context, KLabelConstant label, Term... arguments)
             throws Throwable {
     // ENABLE EXCEPTION CHECKSTYLE
+        MethodHandle handle = table.get(label);
+        if (arguments.length <= MAX_EXACT_ARITY && handle.type().equals(EXACT_TYPES[arguments.length])) {
+            switch (arguments.length) {
+            case 0:
+                return (Term) handle.invokeExact(context);
+            case 1:
+                return (Term) handle.invokeExact(arguments[0], context);
+            case 2:
+                return (Term) handle.invokeExact(arguments[0], arguments[1], context);
+            case 3:
+                return (Term) handle.invokeExact(arguments[0], arguments[1], arguments[2], context);
+            case 4:
+                return (Term) handle.invokeExact(arguments[0], arguments[1], arguments[2], arguments[3], context);
+            case 5:
+                return (Term) handle.invokeExact(arguments[0], arguments[1], arguments[2], arguments[3], arguments[4], context);
+            default:
+                break;
+            }
+        }
+
         Object[] args = Arrays.copyOf(arguments, arguments.length + 1, Object[].class);
         args[arguments.length] = context;
-        // TODO(YilongL): is reflection/exception really the best way to
-        // deal with builtin functions? builtin functions are supposed to be
-        // super-fast...
-        return (Term) table.get(label).invokeWithArguments(args);
+        return (Term) handle.invokeWithArguments(args);
     }
 
     /**
@@ -0,0 +1,364 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+
+package org.kframework.backend.java.symbolic;
+
+import org.kframework.backend.java.compile.KOREtoBackendKIL;
+import org.kframework.backend.java.kil.Definition;
+import org.kframework.backend.java.kil.InnerRHSRewrite;
+import org.kframework.backend.java.kil.KItem;
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.KList;
+import org.kframework.backend.java.kil.RuleAutomatonDisjunction;
+import org.kframework.backend.java.kil.Sort;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.Token;
+import org.kframework.backend.java.kil.Variable;
+import org.kframework.builtin.KLabels;
+import org.kframework.utils.BitSet;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * The merged pattern of the automaton rule of a definition (see {@link org.kframework.backend.java.kil.Definition#automaton}),
+ * compiled into a tree of nodes specialized to the shape of the pattern they match.
+ * <p>
+ * A {@link RuleAutomatonDisjunction} is compiled into a switch on the {@link KLabelConstant} ordinal and on the token
+ * value of the subject, and a {@link KItem} pattern into a node which knows its label, its arity and the compiled
+ * patterns of its children. All the decisions {@link FastRuleMatcher} takes by inspecting the pattern at each node
+ * (whether it is a rewrite, a KSeq, a thread cell bag or a "don't care" variable) are thus taken once, at compile time.
+ * Matching a compiled automaton computes the same substitutions and rewrites as interpreting the merged pattern.
+ */
+public abstract class CompiledRuleAutomaton {
+
+    /**
+     * Matches the subject against this pattern, for the rules in the given mask.
+     *
+     * @return the rules for which the subject matches; may be the given mask
+     */
+    abstract BitSet match(FastRuleMatcher matcher, Term subject, BitSet ruleMask);
+
+    public static CompiledRuleAutomaton compile(Term pattern, Definition definition) {
+        return new Compiler(definition).compile(pattern);
+    }
+
+    private static class Compiler {
+
+        private final Definition definition;
+        private final KLabelConstant kSeqLabel;
+        private final KLabelConstant threadCellBagLabel;
+
+        private Compiler(Definition definition) {
+            this.definition = definition;
+            kSeqLabel = KLabelConstant.of(KLabels.KSEQ, definition);
+            threadCellBagLabel = KLabelConstant.of("_ThreadCellBag_", definition);
+        }
+
+        private CompiledRuleAutomaton compile(Term pattern) {
+            if (pattern instanceof RuleAutomatonDisjunction) {
+                return compileDisjunction((RuleAutomatonDisjunction) pattern);
+            } else if (pattern instanceof Variable) {
+                return new VariableNode((Variable) pattern);
+            } else if (pattern instanceof KItem && ((KItem) pattern).kLabel().toString().equals(KLabels.KREWRITE)) {
+                KItem rewrite = (KItem) pattern;
+                return new RewriteNode(
+                        compile((Term) rewrite.klist().items().get(0)),
+                        ((InnerRHSRewrite) rewrite.klist().items().get(1)).theRHS);
+            } else if (pattern instanceof KItem
+                    && ((KItem) pattern).kLabel() instanceof KLabelConstant
+                    && ((KItem) pattern).kList() instanceof KList) {
+                return compileKItem((KItem) pattern);
+            } else if (pattern instanceof Token) {
+                return new TokenNode((Token) pattern);
+            } else {
+                return new InterpretedNode(pattern);
+            }
+        }
+
+        private CompiledRuleAutomaton compileDisjunction(RuleAutomatonDisjunction disjunction) {
+            CompiledRuleAutomaton[] kItemPatterns = new CompiledRuleAutomaton[disjunction.getKLabelMaxOrdinal()];
+            BitSet[] kItemRules = new BitSet[disjunction.getKLabelMaxOrdinal()];
+            for (Pair<Term, BitSet> pair : disjunction.disjunctions()) {
+                if (pair.getLeft() instanceof KItem) {
+                    int ordinal = ((KLabelConstant) ((KItem) pair.getLeft()).kLabel()).ordinal();
+                    kItemPatterns[ordinal] = compile(pair.getLeft());
+                    kItemRules[ordinal] = pair.getRight();
+                }
+            }
+
+            int sortCount = Sort.maxOrdinal.get();
+            Variable[][] variables = new Variable[sortCount][];
+            BitSet[][] variableRules = new BitSet[sortCount][];
+            for (Sort sort : definition.allSorts()) {
+                List<Pair<Variable, BitSet>> pairs = disjunction.getVariablesForSort(sort);
+                if (pairs != null && !pairs.isEmpty()) {
+                    variables[sort.ordinal()] = pairs.stream().map(Pair::getLeft).toArray(Variable[]::new);
+                    variableRules[sort.ordinal()] = pairs.stream().map(Pair::getRight).toArray(BitSet[]::new);
+                }
+            }
+
+            return new DisjunctionNode(
+                    kItemPatterns,
+                    kItemRules,
+                    variables,
+                    variableRules,
+                    new HashMap<>(disjunction.tokenDisjunctions),
+                    kSeqLabel,
+                    threadCellBagLabel.ordinal() < kItemPatterns.length ? threadCellBagLabel : null);
+        }
+
+        private CompiledRuleAutomaton compileKItem(KItem kItem) {
+            KList kList = (KList) kItem.kList();
+            CompiledRuleAutomaton[] children = new CompiledRuleAutomaton[kList.size()];
+            BitSet[] childrenDontCareRuleMask = new BitSet[kList.size()];
+            for (int i = 0; i < children.length; ++i) {
+                children[i] = compile(kList.get(i));
+                childrenDontCareRuleMask[i] = kItem.getChildrenDontCareRuleMaskForPosition(i);
+            }
+            return new KItemNode(
+                    (KLabelConstant) kItem.kLabel(),
+                    children,
+                    childrenDontCareRuleMask,
+                    AbstractUnifier.isKSeq(kItem),
+                    kItem.kLabel().equals(threadCellBagLabel));
+        }
+    }
+
+    private static class DisjunctionNode extends CompiledRuleAutomaton {
+
+        /**
+         * the compiled KItem patterns and the rules they appear in, indexed by the ordinal of their klabel
+         */
+        private final CompiledRuleAutomaton[] kItemPatterns;
+        private final BitSet[] kItemRules;
+        /**
+         * the variables and the rules they appear in, indexed by the ordinal of the sorts they match
+         */
+        private final Variable[][] variables;
+        private final BitSet[][] variableRules;
+        private final Map<Token, BitSet> tokenRules;
+
+        private final KLabelConstant kSeqLabel;
+        /**
+         * the thread cell bag label, or null if no KItem pattern of this disjunction may have it
+         */
+        private final KLabelConstant threadCellBagLabel;
+
+        DisjunctionNode(
+                CompiledRuleAutomaton[] kItemPatterns,
+                BitSet[] kItemRules,
+                Variable[][] variables,
+                BitSet[][] variableRules,
+                Map<Token, BitSet> tokenRules,
+                KLabelConstant kSeqLabel,
+                KLabelConstant threadCellBagLabel) {
+            this.kItemPatterns = kItemPatterns;
+            this.kItemRules = kItemRules;
+            this.variables = variables;
+            this.variableRules = variableRules;
+            this.tokenRules = tokenRules;
+            this.kSeqLabel = kSeqLabel;
+            this.threadCellBagLabel = threadCellBagLabel;
+        }
+
+        @Override
+        BitSet match(FastRuleMatcher matcher, Term subject, BitSet ruleMask) {
+            BitSet returnSet = matcher.acquireBitSet();
+
+            // handle variables in the disjunction
+            int sortOrdinal = subject.sort().ordinal();
+            if (sortOrdinal < variables.length && variables[sortOrdinal] != null) {
+                Variable[] sortVariables = variables[sortOrdinal];
+                BitSet[] sortVariableRules = variableRules[sortOrdinal];
+                for (int i = 0; i < sortVariables.length; ++i) {
+                    if (ruleMask.intersects(sortVariableRules[i])) {
+                        BitSet localRuleMask = matcher.copy(ruleMask);
+                        localRuleMask.and(sortVariableRules[i]);
+                        returnSet.or(matcher.add(sortVariables[i], subject, localRuleMask));
+                    }
+                }
+            }
+
+            KLabelConstant subjectKLabel = subject instanceof KItem ? (KLabelConstant) ((KItem) subject).kLabel() : null;
+
+            // try to match the subject as-if it is a singleton kseq, i.e. subject ~> .K
+            if (subjectKLabel != kSeqLabel) {
+                matchInside(matcher, subject, ruleMask, returnSet, kSeqLabel.ordinal());
+            }
+
+            // TODO: hack for threads to behave like the kseq above; remove once AC works
+            if (threadCellBagLabel != null && subjectKLabel != threadCellBagLabel) {
+                matchInside(matcher, subject, ruleMask, returnSet, threadCellBagLabel.ordinal());
+            }
+
+            if (subjectKLabel != null) {
+                // main match of KItems
+                matchInside(matcher, subject, ruleMask, returnSet, subjectKLabel.ordinal());
+            } else if (subject instanceof Token) {
+                // and matching Tokens
+                BitSet rules = tokenRules.get(subject);
+                if (rules != null) {
+                    BitSet localRuleMask = matcher.copy(ruleMask);
+                    localRuleMask.and(rules);
+                    returnSet.or(localRuleMask);
+                }
+            }
+
+            return returnSet;
+        }
+
+        private void matchInside(FastRuleMatcher matcher, Term subject, BitSet ruleMask, BitSet returnSet, int ordinal) {
+            if (ordinal < kItemPatterns.length && kItemPatterns[ordinal] != null && ruleMask.intersects(kItemRules[ordinal])) {
+                BitSet localRuleMask = matcher.copy(ruleMask);
+                localRuleMask.and(kItemRules[ordinal]);
+                returnSet.or(kItemPatterns[ordinal].match(matcher, subject, localRuleMask));
+            }
+        }
+    }
+
+    private static class VariableNode extends CompiledRuleAutomaton {
+
+        private final Variable variable;
+        /**
+         * whether the variable is the anonymous variable introduced for "don't care" positions
+         */
+        private final boolean isAnonymous;
+
+        VariableNode(Variable variable) {
+            this.variable = variable;
+            this.isAnonymous = variable.name().equals(KOREtoBackendKIL.THE_VARIABLE);
+        }
+
+        @Override
+        BitSet match(FastRuleMatcher matcher, Term subject, BitSet ruleMask) {
+            return isAnonymous ? ruleMask : matcher.add(variable, subject, ruleMask);
+        }
+    }
+
+    private static class RewriteNode extends CompiledRuleAutomaton {
+
+        private final CompiledRuleAutomaton leftHandSide;
+        /**
+         * the RHS terms indexed by their corresponding rules
+         */
+        private final Term[] theRHS;
+
+        RewriteNode(CompiledRuleAutomaton leftHandSide, Term[] theRHS) {
+            this.leftHandSide = leftHandSide;
+            this.theRHS = theRHS;
+        }
+
+        @Override
+        BitSet match(FastRuleMatcher matcher, Term subject, BitSet ruleMask) {
+            BitSet theNewMask = leftHandSide.match(matcher, subject, ruleMask);
+            matcher.addRewrites(this, theRHS, theNewMask);
+            return theNewMask;
+        }
+    }
+
+    private static class KItemNode extends CompiledRuleAutomaton {
+
+        private final KLabelConstant kLabel;
+        private final CompiledRuleAutomaton[] children;
+        private final BitSet[] childrenDontCareRuleMask;
+        private final boolean isKSeq;
+        private final boolean isThreadCellBag;
+
+        KItemNode(
+                KLabelConstant kLabel,
+                CompiledRuleAutomaton[] children,
+                BitSet[] childrenDontCareRuleMask,
+                boolean isKSeq,
+                boolean isThreadCellBag) {
+            this.kLabel = kLabel;
+            this.children = children;
+            this.childrenDontCareRuleMask = childrenDontCareRuleMask;
+            this.isKSeq = isKSeq;
+            this.isThreadCellBag = isThreadCellBag;
+        }
+
+        @Override
+        BitSet match(FastRuleMatcher matcher, Term subject, BitSet ruleMask) {
+            // normalize KSeq representations
+            if (isKSeq) {
+                subject = matcher.upKSeq(subject);
+            }
+
+            // TODO: remove the hack below once AC works
+            if (isThreadCellBag) {
+                subject = matcher.upThreadCellBag(subject);
+            }
+
+            if (subject instanceof KItem) {
+                if (((KItem) subject).kLabel() != kLabel) {
+                    return matcher.empty;
+                }
+
+                KList subjectKList = (KList) ((KItem) subject).kList();
+                if (subjectKList.size() != children.length) {
+                    return matcher.empty;
+                }
+
+                // main loop matching the klist
+                for (int i = 0; i < children.length; ++i) {
+                    // continue if the pattern under this position only contains "don't care" variables
+                    if (childrenDontCareRuleMask[i] != null && ruleMask.subset(childrenDontCareRuleMask[i])) {
+                        continue;
+                    }
+
+                    matcher.pushPath(i);
+                    ruleMask = children[i].match(matcher, subjectKList.get(i), ruleMask);
+                    matcher.popPath();
+                    if (ruleMask.isEmpty()) {
+                        return ruleMask;
+                    }
+                }
+                return ruleMask;
+            } else if (subject instanceof Token) {
+                return matcher.empty;
+            } else {
+                throw new AssertionError("unexpected class at matching: " + subject.getClass());
+            }
+        }
+    }
+
+    private static class TokenNode extends CompiledRuleAutomaton {
+
+        private final Token token;
+
+        TokenNode(Token token) {
+            this.token = token;
+        }
+
+        @Override
+        BitSet match(FastRuleMatcher matcher, Term subject, BitSet ruleMask) {
+            if (subject instanceof Token) {
+                return subject.equals(token) ? ruleMask : matcher.empty;
+            } else if (subject instanceof KItem) {
+                return matcher.empty;
+            } else {
+                throw new AssertionError("unexpected class at matching: " + subject.getClass());
+            }
+        }
+    }
+
+    /**
+     * A pattern which is not compiled, and is interpreted by {@link FastRuleMatcher} instead.
+     */
+    private static class InterpretedNode extends CompiledRuleAutomaton {
+
+        private final Term pattern;
+
+        InterpretedNode(Term pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        BitSet match(FastRuleMatcher matcher, Term subject, BitSet ruleMask) {
+            return matcher.match(subject, pattern, ruleMask);
+        }
+    }
+}
@@ -23,7 +23,10 @@ import org.kframework.utils.BitSet;
 import static org.kframework.Collections.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -35,28 +38,59 @@ import org.apache.commons.lang3.tuple.Pair;
  * disjunction between the bodies of all rules, and then pushing the disjunction down into the term by identifying
  * common structure. Information about the originating rule is retained via a predicate attached to each element of the
  * disjunction.
+ * <p>
+ * The matcher keeps its scratch state (substitutions, rewrites, rule masks and the current path) across calls to
+ * {@link #mainMatch}, so that a matching step allocates next to nothing. Consequently, a matcher must not be shared
+ * between threads, and the substitutions and rewrites it returns are only valid until its next call to
+ * {@link #mainMatch}.
  */
 public class FastRuleMatcher {
 
-    private Substitution<Variable, Term>[] substitutions;
-    private Map<scala.collection.immutable.List<Integer>, Term>[] rewrites;
+    private final Substitution<Variable, Term>[] substitutions;
+    private final Map<scala.collection.immutable.List<Integer>, Term>[] rewrites;
     private final int ruleCount;
 
+    /**
+     * The substitution and the rewrites of a rule are left over from a previous call to {@link #mainMatch}, and
+     * cleared on first use, unless their generation is the current one.
+     */
+    private final int[] substitutionGenerations;
+    private final int[] rewriteGenerations;
+    private int generation = 0;
+
+    /**
+     * Pool of the rule masks computed while matching, reclaimed as a whole at the beginning of each call
+     * to {@link #mainMatch}.
+     */
+    private final List<BitSet> bitSetPool = new ArrayList<>();
+    private int bitSetPoolSize = 0;
+
+    /**
+     * The path from the root of the subject to the term being matched.
+     */
+    private int[] path = new int[16];
+    private int pathLength = 0;
+
+    /**
+     * The last path, as expected by {@link #getRewrite}, at which each rewrite of the pattern was encountered.
+     */
+    private final Map<Object, scala.collection.immutable.List<Integer>> rewritePaths = new IdentityHashMap<>();
+
     /**
      * @return map from AST path to the corresponding rewrite RHS
      */
     public Map<scala.collection.immutable.List<Integer>, Term> getRewrite(int index) {
-        return rewrites[index];
+        return rewriteGenerations[index] == generation ? rewrites[index] : Collections.emptyMap();
     }
 
-    private BitSet empty;
+    final BitSet empty;
 
     private final GlobalContext global;
 
-    private final KLabelConstant kSeqLabel;
+    final KLabelConstant kSeqLabel;
     private final KItem kDot;
 
-    private final KLabelConstant threadCellBagLabel;
+    final KLabelConstant threadCellBagLabel;
     private final KItem dotThreadCellBag;
 
 
@@ -76,7 +110,10 @@ public class FastRuleMatcher {
             //substitutions[i] = new ArraySubstitution(variableCount);
             substitutions[i] = new HashMapSubstitution();
         }
-
+        rewrites = new Map[this.ruleCount];
+        substitutionGenerations = new int[this.ruleCount];
+        rewriteGenerations = new int[this.ruleCount];
+        empty = BitSet.apply(ruleCount);
     }
 
     /**
@@ -87,18 +124,41 @@ public class FastRuleMatcher {
     public List<Pair<Substitution<Variable, Term>, Integer>> mainMatch(Term subject, Term pattern, BitSet ruleMask, boolean computeOne, TermContext context) {
         assert subject.isGround() : subject;
 
-        ruleMask.stream().forEach(i -> substitutions[i].clear());
-        rewrites = new Map[ruleMask.length()];
-        ruleMask.stream().forEach(i -> rewrites[i] = new HashMap<>());
-        empty = BitSet.apply(ruleCount);
+        startMatch();
+        BitSet theMatchingRules = match(subject, pattern, copy(ruleMask));
+        return evaluateConditions(theMatchingRules, computeOne, context);
+    }
+
+    /**
+     * Match the subject against the merged pattern compiled into the given automaton.
+     *
+     * @return a list of substitutions tagged with the Integer identifier of the rule they belong to.
+     */
+    public List<Pair<Substitution<Variable, Term>, Integer>> mainMatch(Term subject, CompiledRuleAutomaton automaton, BitSet ruleMask, boolean computeOne, TermContext context) {
+        assert subject.isGround() : subject;
+
+        startMatch();
+        BitSet theMatchingRules = automaton.match(this, subject, copy(ruleMask));
+        return evaluateConditions(theMatchingRules, computeOne, context);
+    }
 
-        BitSet theMatchingRules = match(subject, pattern, ruleMask, List());
+    private void startMatch() {
+        if (++generation == 0) {
+            Arrays.fill(substitutionGenerations, -1);
+            Arrays.fill(rewriteGenerations, -1);
+        }
+        bitSetPoolSize = 0;
+        pathLength = 0;
+    }
+
+    private List<Pair<Substitution<Variable, Term>, Integer>> evaluateConditions(BitSet theMatchingRules, boolean computeOne, TermContext context) {
+        assert empty.isEmpty();
 
         List<Pair<Substitution<Variable, Term>, Integer>> theResult = new ArrayList<>();
 
         for (int i = theMatchingRules.nextSetBit(0); i >= 0; i = theMatchingRules.nextSetBit(i + 1)) {
             Rule rule = global.getDefinition().ruleTable.get(i);
-            Substitution<Variable, Term> subst = RewriteEngineUtils.evaluateConditions(rule, substitutions[i], context);
+            Substitution<Variable, Term> subst = RewriteEngineUtils.evaluateConditions(rule, substitution(i), context);
             if (subst != null) {
                 theResult.add(Pair.of(subst, i));
                 if (computeOne) {
@@ -109,17 +169,18 @@ public class FastRuleMatcher {
         return theResult;
     }
 
-    private BitSet match(Term subject, Term pattern, BitSet ruleMask, scala.collection.immutable.List<Integer> path) {
+    BitSet match(Term subject, Term pattern, BitSet ruleMask) {
         assert !ruleMask.isEmpty();
         if (pattern instanceof RuleAutomatonDisjunction) {
             RuleAutomatonDisjunction automatonDisjunction = (RuleAutomatonDisjunction) pattern;
-            BitSet returnSet = BitSet.apply(ruleCount);
+            BitSet returnSet = acquireBitSet();
 
             // handle variables in the disjunction
             List<Pair<Variable, BitSet>> pairs = automatonDisjunction.getVariablesForSort(subject.sort());
-            for (Pair<Variable, BitSet> p : pairs) {
+            for (int j = 0; j < pairs.size(); ++j) {
+                Pair<Variable, BitSet> p = pairs.get(j);
                 if (ruleMask.intersects(p.getRight())) {
-                    BitSet localRuleMask = ruleMask.clone();
+                    BitSet localRuleMask = copy(ruleMask);
                     localRuleMask.and(p.getRight());
                     returnSet.or(add(p.getLeft(), subject, localRuleMask));
                 }
@@ -127,22 +188,22 @@ public class FastRuleMatcher {
 
             // try to match the subject as-if it is a singleton kseq, i.e. subject ~> .K
             if (!(subject instanceof KItem && ((KItem) subject).kLabel() == kSeqLabel)) {
-                matchInside(subject, ruleMask, path, returnSet, automatonDisjunction.getKItemPatternForKLabel(kSeqLabel));
+                matchInside(subject, ruleMask, returnSet, automatonDisjunction.getKItemPatternForKLabel(kSeqLabel));
             }
 
             // TODO: hack for threads to behave like the kseq above; remove once AC works
             if (!(subject instanceof KItem && ((KItem) subject).kLabel() == threadCellBagLabel) && threadCellBagLabel.ordinal() < automatonDisjunction.getKLabelMaxOrdinal()) {
-                matchInside(subject, ruleMask, path, returnSet, automatonDisjunction.getKItemPatternForKLabel(threadCellBagLabel));
+                matchInside(subject, ruleMask, returnSet, automatonDisjunction.getKItemPatternForKLabel(threadCellBagLabel));
             }
 
             if (subject instanceof KItem) {
                 // main match of KItems
-                matchInside(subject, ruleMask, path, returnSet, automatonDisjunction.getKItemPatternForKLabel((KLabelConstant) ((KItem) subject).kLabel()));
+                matchInside(subject, ruleMask, returnSet, automatonDisjunction.getKItemPatternForKLabel((KLabelConstant) ((KItem) subject).kLabel()));
             } else if (subject instanceof Token) {
                 // and matching Tokens
                 BitSet rules = automatonDisjunction.tokenDisjunctions.get(subject);
                 if (rules != null) {
-                    BitSet localRuleMask = ruleMask.clone();
+                    BitSet localRuleMask = copy(ruleMask);
                     localRuleMask.and(rules);
                     returnSet.or(localRuleMask);
                 }
@@ -160,13 +221,9 @@ public class FastRuleMatcher {
         if (pattern instanceof KItem && ((KItem) pattern).kLabel().toString().equals(KLabels.KREWRITE)) {
             KApply rw = (KApply) pattern;
             InnerRHSRewrite innerRHSRewrite = (InnerRHSRewrite) rw.klist().items().get(1);
-            BitSet theNewMask = match(subject, (Term) rw.klist().items().get(0), ruleMask, path);
+            BitSet theNewMask = match(subject, (Term) rw.klist().items().get(0), ruleMask);
 
-            for (int i = theNewMask.nextSetBit(0); i >= 0; i = theNewMask.nextSetBit(i + 1)) {
-                if (innerRHSRewrite.theRHS[i] != null) {
-                    rewrites[i].put(path.reverse(), innerRHSRewrite.theRHS[i]);
-                }
-            }
+            addRewrites(pattern, innerRHSRewrite.theRHS, theNewMask);
             return theNewMask;
         }
 
@@ -176,10 +233,8 @@ public class FastRuleMatcher {
         }
 
         // TODO: remove the hack below once AC works
-        if (pattern instanceof KItem && ((KItem) pattern).kLabel().equals(threadCellBagLabel)
-                && !subject.sort().equals(Sort.of("ThreadCellBag")) &&
-                !((subject instanceof KItem) && ((KItem) subject).kLabel().equals(threadCellBagLabel))) {
-            subject = KItem.of(threadCellBagLabel, KList.concatenate(subject, dotThreadCellBag), global);
+        if (pattern instanceof KItem && ((KItem) pattern).kLabel().equals(threadCellBagLabel)) {
+            subject = upThreadCellBag(subject);
         }
 
         if (subject instanceof KItem && pattern instanceof KItem) {
@@ -207,7 +262,9 @@ public class FastRuleMatcher {
                     continue;
                 }
 
-                ruleMask = match(subjectKList.get(i), patternKList.get(i), ruleMask, path.$colon$colon(i));
+                pushPath(i);
+                ruleMask = match(subjectKList.get(i), patternKList.get(i), ruleMask);
+                popPath();
                 if (ruleMask.isEmpty()) {
                     return ruleMask;
                 }
@@ -223,18 +280,18 @@ public class FastRuleMatcher {
         }
     }
 
-    private void matchInside(Term subject, BitSet ruleMask, scala.collection.immutable.List<Integer> path, BitSet returnSet, Pair<KItem, BitSet> pSeq) {
+    private void matchInside(Term subject, BitSet ruleMask, BitSet returnSet, Pair<KItem, BitSet> pSeq) {
         if (pSeq != null) {
             if (ruleMask.intersects(pSeq.getRight())) {
-                BitSet localRuleMaskSeq = ((BitSet) ruleMask.clone());
+                BitSet localRuleMaskSeq = copy(ruleMask);
                 localRuleMaskSeq.and(pSeq.getRight());
-                localRuleMaskSeq = match(subject, pSeq.getLeft(), localRuleMaskSeq, path);
+                localRuleMaskSeq = match(subject, pSeq.getLeft(), localRuleMaskSeq);
                 returnSet.or(localRuleMaskSeq);
             }
         }
     }
 
-    private BitSet add(Variable variable, Term term, BitSet ruleMask) {
+    BitSet add(Variable variable, Term term, BitSet ruleMask) {
         if (variable.name().equals(KOREtoBackendKIL.THE_VARIABLE)) {
             return ruleMask;
         }
@@ -248,7 +305,7 @@ public class FastRuleMatcher {
         }
 
         for (int i = ruleMask.nextSetBit(0); i >= 0; i = ruleMask.nextSetBit(i + 1)) {
-            if (substitutions[i].plus(variable, term) == null) {
+            if (substitution(i).plus(variable, term) == null) {
                 ruleMask.clear(i);
             }
         }
@@ -256,11 +313,118 @@ public class FastRuleMatcher {
         return ruleMask;
     }
 
+    private Substitution<Variable, Term> substitution(int index) {
+        if (substitutionGenerations[index] != generation) {
+            substitutions[index].clear();
+            substitutionGenerations[index] = generation;
+        }
+        return substitutions[index];
+    }
 
-    private Term upKSeq(Term otherTerm) {
+    private Map<scala.collection.immutable.List<Integer>, Term> rewrites(int index) {
+        if (rewriteGenerations[index] != generation) {
+            if (rewrites[index] == null) {
+                rewrites[index] = new HashMap<>();
+            } else {
+                rewrites[index].clear();
+            }
+            rewriteGenerations[index] = generation;
+        }
+        return rewrites[index];
+    }
+
+    /**
+     * Registers the given RHSs of a rewrite at the current path, for the rules in the mask.
+     */
+    void addRewrites(Object rewrite, Term[] theRHS, BitSet ruleMask) {
+        if (ruleMask.isEmpty()) {
+            return;
+        }
+
+        scala.collection.immutable.List<Integer> rewritePath = rewritePath(rewrite);
+        for (int i = ruleMask.nextSetBit(0); i >= 0; i = ruleMask.nextSetBit(i + 1)) {
+            if (theRHS[i] != null) {
+                rewrites(i).put(rewritePath, theRHS[i]);
+            }
+        }
+    }
+
+    /**
+     * @return a cleared rule mask from the pool
+     */
+    BitSet acquireBitSet() {
+        BitSet bitSet;
+        if (bitSetPoolSize < bitSetPool.size()) {
+            bitSet = bitSetPool.get(bitSetPoolSize);
+            bitSet.clear();
+        } else {
+            bitSet = BitSet.apply(ruleCount);
+            bitSetPool.add(bitSet);
+        }
+        ++bitSetPoolSize;
+        return bitSet;
+    }
+
+    /**
+     * @return a copy of the given rule mask from the pool
+     */
+    BitSet copy(BitSet ruleMask) {
+        BitSet bitSet = acquireBitSet();
+        bitSet.or(ruleMask);
+        return bitSet;
+    }
+
+    void pushPath(int position) {
+        if (pathLength == path.length) {
+            path = Arrays.copyOf(path, 2 * pathLength);
+        }
+        path[pathLength++] = position;
+    }
+
+    void popPath() {
+        --pathLength;
+    }
+
+    /**
+     * Returns the current path as a root-first list, reusing the list built the last time the given rewrite was
+     * encountered at the same path.
+     */
+    private scala.collection.immutable.List<Integer> rewritePath(Object rewrite) {
+        scala.collection.immutable.List<Integer> rewritePath = rewritePaths.get(rewrite);
+        if (rewritePath != null && isCurrentPath(rewritePath)) {
+            return rewritePath;
+        }
+
+        rewritePath = List();
+        for (int i = pathLength - 1; i >= 0; --i) {
+            rewritePath = rewritePath.$colon$colon(path[i]);
+        }
+        rewritePaths.put(rewrite, rewritePath);
+        return rewritePath;
+    }
+
+    private boolean isCurrentPath(scala.collection.immutable.List<Integer> rewritePath) {
+        int i = 0;
+        for (; !rewritePath.isEmpty(); rewritePath = (scala.collection.immutable.List<Integer>) rewritePath.tail()) {
+            if (i == pathLength || rewritePath.head() != path[i]) {
+                return false;
+            }
+            ++i;
+        }
+        return i == pathLength;
+    }
+
+    Term upKSeq(Term otherTerm) {
         if (!AbstractUnifier.isKSeq(otherTerm) && !AbstractUnifier.isKSeqVar(otherTerm))
             otherTerm = KItem.of(kSeqLabel, KList.concatenate(otherTerm, kDot), global);
         return otherTerm;
     }
 
+    Term upThreadCellBag(Term otherTerm) {
+        if (!otherTerm.sort().equals(Sort.of("ThreadCellBag"))
+                && !((otherTerm instanceof KItem) && ((KItem) otherTerm).kLabel().equals(threadCellBagLabel)))
+            otherTerm = KItem.of(threadCellBagLabel, KList.concatenate(otherTerm, dotThreadCellBag), global);
+        return otherTerm;
+    }
+
 }
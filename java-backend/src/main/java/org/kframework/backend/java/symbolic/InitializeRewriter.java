@@ -91,7 +91,8 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
     public synchronized Rewriter apply(Module module) {
         TermContext initializingContext = TermContext.builder(new GlobalContext(fs, javaOptions, globalOptions, krunOptions, kem, smtOptions, hookProvider, files, Stage.INITIALIZING))
                 .freshCounter(0).build();
-        Definition evaluatedDef = initializeDefinition.invoke(module, kem, initializingContext.global());
+        Definition evaluatedDef = initializeDefinition.invoke(module, kem, initializingContext.global(), javaOptions.lazyRules);
+        initializingContext.global().close();
 
         GlobalContext rewritingContext = new GlobalContext(fs, javaOptions, globalOptions, krunOptions, kem, smtOptions, hookProvider, files, Stage.REWRITING);
         rewritingContext.setDefinition(evaluatedDef);
@@ -157,6 +158,11 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
             return Tuple2.apply(res, match(res.k(), rule));
         }
 
+        @Override
+        public void close() {
+            rewritingContext.close();
+        }
+
         @Override
         public List<K> prove(List<Rule> rules) {
             TermContext termContext = TermContext.builder(rewritingContext).freshCounter(initCounterValue).build();
@@ -174,6 +180,12 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
                     .flatMap(List::stream)
                     .collect(Collectors.toList());
 
+            SMTCache smtCache = rewritingContext.constraintOps.cache();
+            smtCache.save();
+            if (rewritingContext.krunOptions.experimental.statistics) {
+                System.err.println(smtCache);
+            }
+
             return proofResults.stream()
                     .map(ConstrainedTerm::term)
                     .map(t -> (KItem) t)
@@ -193,7 +205,7 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
             }
         };
 
-        public Definition invoke(Module module, KExceptionManager kem, GlobalContext global) {
+        public Definition invoke(Module module, KExceptionManager kem, GlobalContext global, boolean lazyRules) {
             if (cache.containsKey(module)) {
                 return cache.get(module);
             }
@@ -204,7 +216,7 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
             JavaConversions.setAsJavaSet(module.attributesFor().keySet()).stream()
                     .map(l -> KLabelConstant.of(l.name(), definition))
                     .forEach(definition::addKLabel);
-            definition.addKoreRules(module, global);
+            definition.addKoreRules(module, global, lazyRules);
 
             definition.setIndex(new IndexingTable(() -> definition, new IndexingTable.Data()));
             cache.put(module, definition);
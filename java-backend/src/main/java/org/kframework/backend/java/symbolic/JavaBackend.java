@@ -9,6 +9,7 @@ import org.kframework.compile.ConfigurationInfoFromModule;
 import org.kframework.definition.Constructors;
 import org.kframework.definition.Definition;
 import org.kframework.definition.DefinitionTransformer;
+import org.kframework.definition.ModuleTransformer;
 import org.kframework.definition.Rule;
 import org.kframework.definition.Sentence;
 import org.kframework.kompile.CompiledDefinition;
@@ -64,7 +65,7 @@ public class JavaBackend implements Backend {
      */
     @Override
     public Function<Definition, Definition> steps(Kompile kompile) {
-        DefinitionTransformer convertDataStructureToLookup = DefinitionTransformer.fromSentenceTransformer(func((m, s) -> new ConvertDataStructureToLookup(m, false).convert(s)), "convert data structures to lookups");
+        DefinitionTransformer convertDataStructureToLookup = kompile.cached(ModuleTransformer.fromSentenceTransformer(func((m, s) -> new ConvertDataStructureToLookup(m, false).convert(s)), "convert data structures to lookups"));
         ExpandMacrosDefinitionTransformer expandMacrosDefinitionTransformer = new ExpandMacrosDefinitionTransformer(kem, files, globalOptions, kompileOptions);
 
         if (kompile.kompileOptions.experimental.koreProve) {
@@ -74,14 +75,14 @@ public class JavaBackend implements Backend {
         }
 
         return d -> (func((Definition dd) -> kompile.defaultSteps().apply(dd)))
-                .andThen(DefinitionTransformer.fromRuleBodyTranformer(RewriteToTop::bubbleRewriteToTopInsideCells, "bubble out rewrites below cells"))
+                .andThen(kompile.cached(ModuleTransformer.fromRuleBodyTranformer(RewriteToTop::bubbleRewriteToTopInsideCells, "bubble out rewrites below cells")))
                 .andThen(func(dd -> expandMacrosDefinitionTransformer.apply(dd)))
                 .andThen(convertDataStructureToLookup)
-                .andThen(DefinitionTransformer.fromRuleBodyTranformer(JavaBackend::ADTKVariableToSortedVariable, "ADT.KVariable to SortedVariable"))
-                .andThen(DefinitionTransformer.fromRuleBodyTranformer(JavaBackend::convertKSeqToKApply, "kseq to kapply"))
-                .andThen(DefinitionTransformer.fromRuleBodyTranformer(NormalizeKSeq.self(), "normalize kseq"))
+                .andThen(kompile.cached(ModuleTransformer.fromRuleBodyTranformer(JavaBackend::ADTKVariableToSortedVariable, "ADT.KVariable to SortedVariable")))
+                .andThen(kompile.cached(ModuleTransformer.fromRuleBodyTranformer(JavaBackend::convertKSeqToKApply, "kseq to kapply")))
+                .andThen(kompile.cached(ModuleTransformer.fromRuleBodyTranformer(NormalizeKSeq.self(), "normalize kseq")))
                 .andThen(func(dd -> markRegularRules(dd)))
-                .andThen(DefinitionTransformer.fromSentenceTransformer(JavaBackend::markSingleVariables, "mark single variables"))
+                .andThen(kompile.cached(ModuleTransformer.fromSentenceTransformer(JavaBackend::markSingleVariables, "mark single variables")))
                 .andThen(new DefinitionTransformer(new MergeRules(KORE.c())))
                 .apply(d);
     }
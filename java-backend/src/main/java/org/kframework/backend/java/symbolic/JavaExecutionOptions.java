@@ -35,6 +35,24 @@ public final class JavaExecutionOptions {
             + "tagged with the value of --apply-tag, or fail with an error explaining why the rule did not apply.")
     public Integer auditingStep;
 
+    @Parameter(names="--search-threads", description="Number of threads used to expand each level of the "
+            + "state space during search. Solutions are reported in the same order regardless of this value.")
+    public int searchThreads = 1;
+
+    @Parameter(names="--hash-consing", description="Share structurally equal ground terms built during "
+            + "execution. Reduces the memory used by long executions at the cost of a table lookup "
+            + "each time such a term is built.")
+    public boolean hashConsing = false;
+
+    @Parameter(names="--lazy-rules", description="Convert the rules of each function the first time the function "
+            + "is evaluated rather than at startup. Reduces the startup time and memory use of programs which only "
+            + "use a fraction of the functions of the definition.")
+    public boolean lazyRules = false;
+
+    @Parameter(names="--memo-cache-size", description="The maximum number of results of functions tagged with "
+            + "'memo' to cache. 0 disables the cache.")
+    public int memoCacheSize = 10000;
+
     public static class RuleIndexConveter extends BaseEnumConverter<IndexingAlgorithm> {
 
         public RuleIndexConveter(String optionName) {
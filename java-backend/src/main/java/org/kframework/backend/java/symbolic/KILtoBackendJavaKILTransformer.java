@@ -606,6 +606,7 @@ public class KILtoBackendJavaKILTransformer extends CopyOnWriteTransformer {
             }
 
             definition.functionRules().clear();
+            definition.smtLemmas().clear();
             definition.anywhereRules().clear();
             definition.addRuleCollection(partiallyEvaluatedRules);
         }
@@ -43,6 +43,12 @@ import org.kframework.krun.KRunOptions;
 
 public class KILtoSMTLib extends CopyOnWriteTransformer {
 
+    /**
+     * The prefix of the variables abstracting the terms which cannot be translated. Neither user
+     * variables, anonymous variables, nor the canonical variables of {@link SMTCache} start with it.
+     */
+    private static final String ABSTRACTION_VARIABLE_PREFIX = "%a";
+
     public static final ImmutableSet<Sort> SMTLIB_BUILTIN_SORTS = ImmutableSet.of(
             Sort.BOOL,
             Sort.INT,
@@ -299,33 +305,31 @@ public class KILtoSMTLib extends CopyOnWriteTransformer {
 
     private String getAxioms() {
         StringBuilder sb = new StringBuilder();
-        for (Rule rule : definition.functionRules().values()) {
-            if (rule.containsAttribute(Attribute.SMT_LEMMA_KEY)) {
-                try {
-                    KILtoSMTLib kil2SMT = new KILtoSMTLib(false, definition, krunOptions);
-                    String leftExpression = kil2SMT.translate(rule.leftHandSide()).expression();
-                    String rightExpression = kil2SMT.translate(rule.rightHandSide()).expression();
-                    sb.append("(assert ");
-                    if (!kil2SMT.variables().isEmpty()) {
-                        sb.append("(forall (");
-                        sb.append(kil2SMT.getQuantifiedVariables(kil2SMT.variables()));
-                        sb.append(") ");
-                        //sb.append(") (! ");
-                    }
-                    sb.append("(= ");
-                    sb.append(leftExpression);
-                    sb.append(" ");
-                    sb.append(rightExpression);
+        for (Rule rule : definition.smtLemmas()) {
+            try {
+                KILtoSMTLib kil2SMT = new KILtoSMTLib(false, definition, krunOptions);
+                String leftExpression = kil2SMT.translate(rule.leftHandSide()).expression();
+                String rightExpression = kil2SMT.translate(rule.rightHandSide()).expression();
+                sb.append("(assert ");
+                if (!kil2SMT.variables().isEmpty()) {
+                    sb.append("(forall (");
+                    sb.append(kil2SMT.getQuantifiedVariables(kil2SMT.variables()));
+                    sb.append(") ");
+                    //sb.append(") (! ");
+                }
+                sb.append("(= ");
+                sb.append(leftExpression);
+                sb.append(" ");
+                sb.append(rightExpression);
+                sb.append(")");
+                //sb.append(" :pattern(");
+                //sb.append(leftExpression);
+                //sb.append(")");
+                if (!kil2SMT.variables().isEmpty()) {
                     sb.append(")");
-                    //sb.append(" :pattern(");
-                    //sb.append(leftExpression);
-                    //sb.append(")");
-                    if (!kil2SMT.variables().isEmpty()) {
-                        sb.append(")");
-                    }
-                    sb.append(")\n");
-                } catch (UnsupportedOperationException e) { }
-            }
+                }
+                sb.append(")\n");
+            } catch (UnsupportedOperationException e) { }
         }
         return sb.toString();
     }
@@ -452,6 +456,12 @@ public class KILtoSMTLib extends CopyOnWriteTransformer {
         return new SMTLibTerm(sb.toString());
     }
 
+    /**
+     * Translates the given term into SMTLib format. If the term cannot be translated and it is sound
+     * to skip it, it is abstracted into a variable. The abstraction variables are numbered per
+     * translation rather than drawn from the global counter of {@link Variable#getAnonVariable}, so
+     * that the text of a query does not depend on how many variables were created before it.
+     */
     public String translateTerm(Term term) {
         try {
             return translate(term).expression();
@@ -459,7 +469,11 @@ public class KILtoSMTLib extends CopyOnWriteTransformer {
             if (skipEqualities){
                 Variable variable = termAbstractionMap.get(term);
                 if (variable == null) {
-                    variable = Variable.getAnonVariable(term.sort());
+                    variable = new Variable(
+                            ABSTRACTION_VARIABLE_PREFIX + termAbstractionMap.size(),
+                            term.sort(),
+                            true,
+                            -1);
                     termAbstractionMap.put(term, variable);
                 }
                 return variable.name();
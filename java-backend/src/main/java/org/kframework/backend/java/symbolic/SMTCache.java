@@ -0,0 +1,187 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import org.apache.commons.lang3.tuple.Pair;
+import org.kframework.backend.java.kil.JavaSymbolicObject;
+import org.kframework.backend.java.kil.Variable;
+import org.kframework.utils.BinaryLoader;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.file.FileUtil;
+import org.kframework.utils.options.SMTOptions;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of the verdicts of SMT queries.
+ * <p>
+ * Verdicts are cached at two levels. The first level is keyed on the alpha-normalized formulas the
+ * query was built from (see {@link #canonicalRenaming}), and saves both the translation to SMT-LIB
+ * and the call to the solver. The second level is keyed on the SMT-LIB text of the normalized
+ * query, and is the part of the cache that is saved to the kompiled directory when
+ * {@code --smt-persistent-cache} is given. The variables of the normalized formulas have canonical
+ * names, and so have the terms the translation abstracts into variables (see
+ * {@link KILtoSMTLib#translateTerm}), so the text of a query does not depend on the order in which
+ * the queries of a run are built, and can be looked up by later runs.
+ * <p>
+ * Only the definitive verdicts of the solver, unsat and sat, are cached, per solver timeout. A query
+ * the solver could not decide, because it answered unknown, timed out or failed, is not cached.
+ */
+public class SMTCache {
+
+    private static final String CACHE_FILE = "smt-cache.bin";
+    /**
+     * The prefix of the canonical variable names. Neither user variables nor the anonymous
+     * variables of {@link Variable#getAnonVariable} can start with {@code %}, so a variable left
+     * out of a renaming never clashes with a canonical one.
+     */
+    private static final String CANONICAL_VARIABLE_PREFIX = "%c";
+
+    /**
+     * The serialized form of the query-level cache, together with the prelude the queries were
+     * checked against.
+     */
+    private static class Data implements Serializable {
+        private final String prelude;
+        private final HashMap<Pair<String, Integer>, Boolean> verdicts;
+
+        private Data(String prelude, HashMap<Pair<String, Integer>, Boolean> verdicts) {
+            this.prelude = prelude;
+            this.verdicts = verdicts;
+        }
+    }
+
+    private final Cache<Pair<List<Object>, Integer>, Boolean> formulaCache;
+    private final Cache<Pair<String, Integer>, Boolean> queryCache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final SMTOptions options;
+    private final FileUtil files;
+    private final KExceptionManager kem;
+    private final String prelude;
+
+    @Inject
+    public SMTCache(SMTOptions options, FileUtil files, KExceptionManager kem) {
+        this.options = options;
+        this.files = files;
+        this.kem = kem;
+        this.prelude = options.smtPrelude == null ? "" : files.loadFromWorkingDirectory(options.smtPrelude);
+        this.formulaCache = CacheBuilder.newBuilder().maximumSize(options.smtCacheSize).build();
+        this.queryCache = CacheBuilder.newBuilder().maximumSize(options.smtCacheSize).build();
+
+        if (isEnabled() && options.smtPersistentCache) {
+            try {
+                Data data = new BinaryLoader(kem).load(Data.class, cacheFile());
+                if (data.prelude.equals(prelude)) {
+                    queryCache.putAll(data.verdicts);
+                }
+            } catch (FileNotFoundException e) {
+            } catch (IOException | ClassNotFoundException e) {
+                kem.registerInternalHiddenWarning("Invalidating serialized SMT cache due to corruption.", e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return options.smtCacheSize > 0;
+    }
+
+    /**
+     * Returns the verdict cached for the normalized formulas in {@code key}, or {@code null} if
+     * there is none.
+     */
+    public Boolean get(List<Object> key, int timeout) {
+        Boolean verdict = formulaCache.getIfPresent(Pair.of(key, timeout));
+        if (verdict != null) {
+            hits.incrementAndGet();
+        }
+        return verdict;
+    }
+
+    /**
+     * Returns the verdict cached for the given SMT-LIB query, or {@code null} if there is none. A
+     * query found here is promoted to the formula-level cache under {@code key}.
+     */
+    public Boolean get(List<Object> key, String query, int timeout) {
+        Boolean verdict = queryCache.getIfPresent(Pair.of(query, timeout));
+        if (verdict != null) {
+            hits.incrementAndGet();
+            formulaCache.put(Pair.of(key, timeout), verdict);
+        }
+        return verdict;
+    }
+
+    /**
+     * Records the verdict the solver returned for a query that missed the cache. The verdict is
+     * {@code null} if the solver could not decide the query, in which case only the miss is
+     * recorded.
+     */
+    public void put(List<Object> key, String query, int timeout, Boolean verdict) {
+        misses.incrementAndGet();
+        if (verdict != null) {
+            formulaCache.put(Pair.of(key, timeout), verdict);
+            queryCache.put(Pair.of(query, timeout), verdict);
+        }
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    /**
+     * Saves the query-level cache to the kompiled directory if {@code --smt-persistent-cache} is
+     * given.
+     */
+    public void save() {
+        if (isEnabled() && options.smtPersistentCache) {
+            new BinaryLoader(kem).saveOrDie(cacheFile(), new Data(prelude, new HashMap<>(queryCache.asMap())));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[SMT cache: " + hits + " hits, " + misses + " misses]";
+    }
+
+    private File cacheFile() {
+        return files.resolveKompiled(CACHE_FILE);
+    }
+
+    /**
+     * Returns a renaming of the variables of the given objects to canonical names, numbered in the
+     * order in which the variables are first encountered. Formulas that are equal up to the names
+     * of their variables are thus (usually) renamed to equal formulas.
+     */
+    public static Map<Variable, Variable> canonicalRenaming(JavaSymbolicObject... objects) {
+        Map<Variable, Variable> renaming = new LinkedHashMap<>();
+        BottomUpVisitor collector = new BottomUpVisitor() {
+            @Override
+            public void visit(Variable variable) {
+                renaming.computeIfAbsent(variable, v -> {
+                    Variable canonicalVariable = new Variable(CANONICAL_VARIABLE_PREFIX + renaming.size(), v.sort());
+                    canonicalVariable.copyAttributesFrom(v);
+                    return canonicalVariable;
+                });
+            }
+        };
+        for (JavaSymbolicObject object : objects) {
+            object.accept(collector);
+        }
+        return renaming;
+    }
+}
@@ -7,8 +7,13 @@ import org.kframework.backend.java.util.Z3Wrapper;
 import org.kframework.utils.options.SMTOptions;
 import org.kframework.utils.options.SMTSolver;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 
@@ -16,14 +21,28 @@ public class SMTOperations {
 
     private final SMTOptions smtOptions;
     private final Z3Wrapper z3;
+    private final SMTCache cache;
 
     @Inject
     public SMTOperations(
             Provider<Definition> definitionProvider,
             SMTOptions smtOptions,
-            Z3Wrapper z3) {
+            Z3Wrapper z3,
+            SMTCache cache) {
         this.smtOptions = smtOptions;
         this.z3 = z3;
+        this.cache = cache;
+    }
+
+    public SMTCache cache() {
+        return cache;
+    }
+
+    /**
+     * Terminates the solver sessions started by these operations.
+     */
+    public void close() {
+        z3.close();
     }
 
     public boolean checkUnsat(ConjunctiveFormula constraint) {
@@ -37,10 +56,18 @@ public class SMTOperations {
 
         boolean result = false;
         try {
-            String query = KILtoSMTLib.translateConstraint(constraint);
-            result = z3.isUnsat(query, smtOptions.z3CnstrTimeout);
+            if (cache.isEnabled()) {
+                ConjunctiveFormula canonicalConstraint = (ConjunctiveFormula) constraint.substituteWithBinders(
+                        SMTCache.canonicalRenaming(constraint));
+                result = isUnsat(
+                        ImmutableList.<Object>of(canonicalConstraint),
+                        () -> KILtoSMTLib.translateConstraint(canonicalConstraint),
+                        smtOptions.z3CnstrTimeout);
+            } else {
+                result = z3.isUnsat(KILtoSMTLib.translateConstraint(constraint), smtOptions.z3CnstrTimeout);
+            }
             if (result && RuleAuditing.isAuditBegun()) {
-                System.err.println("SMT query returned unsat: " + query);
+                System.err.println("SMT query returned unsat: " + KILtoSMTLib.translateConstraint(constraint));
             }
         } catch (UnsupportedOperationException e) {
             e.printStackTrace();
@@ -57,9 +84,25 @@ public class SMTOperations {
             Set<Variable> rightOnlyVariables) {
         if (smtOptions.smt == SMTSolver.Z3) {
             try {
-                return z3.isUnsat(
-                        KILtoSMTLib.translateImplication(left, right, rightOnlyVariables),
-                        smtOptions.z3ImplTimeout);
+                if (cache.isEnabled()) {
+                    Map<Variable, Variable> renaming = SMTCache.canonicalRenaming(left, right);
+                    ConjunctiveFormula canonicalLeft = (ConjunctiveFormula) left.substituteWithBinders(renaming);
+                    ConjunctiveFormula canonicalRight = (ConjunctiveFormula) right.substituteWithBinders(renaming);
+                    Set<Variable> canonicalRightOnlyVariables = rightOnlyVariables.stream()
+                            .map(v -> renaming.getOrDefault(v, v))
+                            .collect(Collectors.toSet());
+                    return isUnsat(
+                            ImmutableList.<Object>of(canonicalLeft, canonicalRight, canonicalRightOnlyVariables),
+                            () -> KILtoSMTLib.translateImplication(
+                                    canonicalLeft,
+                                    canonicalRight,
+                                    canonicalRightOnlyVariables),
+                            smtOptions.z3ImplTimeout);
+                } else {
+                    return z3.isUnsat(
+                            KILtoSMTLib.translateImplication(left, right, rightOnlyVariables),
+                            smtOptions.z3ImplTimeout);
+                }
             } catch (UnsupportedOperationException e) {
                 e.printStackTrace();
             } catch (SMTTranslationFailure e) {
@@ -68,4 +111,22 @@ public class SMTOperations {
         }
         return false;
     }
+
+    /**
+     * Checks the query identified by the given alpha-normalized formulas, going to the solver only if
+     * its verdict is not cached yet. A query the solver cannot decide is treated as satisfiable, but
+     * is not cached, so that it is checked again the next time.
+     */
+    private boolean isUnsat(List<Object> key, Supplier<String> query, int timeout) {
+        Boolean result = cache.get(key, timeout);
+        if (result == null) {
+            String smtQuery = query.get();
+            result = cache.get(key, smtQuery, timeout);
+            if (result == null) {
+                result = z3.checkUnsat(smtQuery, timeout);
+                cache.put(key, smtQuery, timeout, result);
+            }
+        }
+        return Boolean.TRUE.equals(result);
+    }
 }
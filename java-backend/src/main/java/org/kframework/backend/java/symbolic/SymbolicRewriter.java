@@ -21,9 +21,10 @@ import org.kframework.utils.BitSet;
 import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.rewriter.SearchType;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
@@ -31,6 +32,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 /**
@@ -39,13 +43,15 @@ import java.util.stream.Collectors;
 public class SymbolicRewriter {
 
     private final JavaExecutionOptions javaOptions;
+    private final KompileOptions kompileOptions;
     private final TransitionCompositeStrategy strategy;
     private final Stopwatch stopwatch = Stopwatch.createUnstarted();
     private boolean transition;
     private final RuleIndex ruleIndex;
     private final KRunState.Counter counter;
-    private final Map<ConstrainedTerm, Set<Rule>> subject2DisabledRules = new HashMap<>();
+    private final Map<ConstrainedTerm, Set<Rule>> subject2DisabledRules;
     private final FastRuleMatcher theFastMatcher;
+    private final GlobalContext global;
     private final Definition definition;
     private final BitSet allRuleBits;
 
@@ -54,17 +60,39 @@ public class SymbolicRewriter {
     @Inject
     public SymbolicRewriter(GlobalContext global, KompileOptions kompileOptions, JavaExecutionOptions javaOptions,
                             KRunState.Counter counter) {
+        this.global = global;
         this.definition = global.getDefinition();
         this.allRuleBits = BitSet.apply(definition.ruleTable.size());
         this.allRuleBits.makeOnes(definition.ruleTable.size());
         this.javaOptions = javaOptions;
+        this.kompileOptions = kompileOptions;
         this.ruleIndex = definition.getIndex();
         this.counter = counter;
+        this.subject2DisabledRules = new ConcurrentHashMap<>();
         this.strategy = new TransitionCompositeStrategy(kompileOptions.transition);
         this.useFastRewriting = !kompileOptions.experimental.koreProve;
         this.theFastMatcher = new FastRuleMatcher(global, allRuleBits.length());
     }
 
+    /**
+     * Creates a rewriter that shares the immutable configuration and the disabled rules of the given
+     * rewriter, but owns its strategy and matcher state, so that it can compute rewrite steps on a
+     * different thread than its parent.
+     */
+    private SymbolicRewriter(SymbolicRewriter parent) {
+        this.global = parent.global;
+        this.definition = parent.definition;
+        this.allRuleBits = parent.allRuleBits.clone();
+        this.javaOptions = parent.javaOptions;
+        this.kompileOptions = parent.kompileOptions;
+        this.ruleIndex = parent.ruleIndex;
+        this.counter = parent.counter;
+        this.subject2DisabledRules = parent.subject2DisabledRules;
+        this.strategy = new TransitionCompositeStrategy(kompileOptions.transition);
+        this.useFastRewriting = parent.useFastRewriting;
+        this.theFastMatcher = new FastRuleMatcher(global, allRuleBits.length());
+    }
+
     public KRunState rewrite(ConstrainedTerm constrainedTerm, int bound) {
         stopwatch.start();
         int step = 0;
@@ -79,6 +107,12 @@ public class SymbolicRewriter {
         stopwatch.stop();
         if (constrainedTerm.termContext().global().krunOptions.experimental.statistics) {
             System.err.println("[" + step + ", " + stopwatch + " ]");
+            if (global.interner != null) {
+                System.err.println(global.interner);
+            }
+            if (global.kItemOps.memoTable() != null) {
+                System.err.println(global.kItemOps.memoTable());
+            }
         }
 
         return finalState;
@@ -161,12 +195,20 @@ public class SymbolicRewriter {
 
     private List<ConstrainedTerm> fastComputeRewriteStep(ConstrainedTerm subject, boolean computeOne) {
         List<ConstrainedTerm> results = new ArrayList<>();
-        List<Pair<Substitution<Variable, Term>, Integer>> matches = theFastMatcher.mainMatch(
-                subject.term(),
-                definition.automaton.leftHandSide(),
-                allRuleBits,
-                computeOne,
-                subject.termContext());
+        CompiledRuleAutomaton compiledAutomaton = definition.compiledAutomaton();
+        List<Pair<Substitution<Variable, Term>, Integer>> matches = compiledAutomaton != null
+                ? theFastMatcher.mainMatch(
+                        subject.term(),
+                        compiledAutomaton,
+                        allRuleBits,
+                        computeOne,
+                        subject.termContext())
+                : theFastMatcher.mainMatch(
+                        subject.term(),
+                        definition.automaton.leftHandSide(),
+                        allRuleBits,
+                        computeOne,
+                        subject.termContext());
         for (Pair<Substitution<Variable, Term>, Integer> pair : matches) {
             Substitution<Variable, Term> substitution = pair.getLeft();
             // start the optimized substitution
@@ -203,7 +245,7 @@ public class SymbolicRewriter {
      * goes down the path on the subject to find the rewrite place, does the substitution, and reconstructs the term
      * on its way up
      */
-    private Term buildRHS(Term subject, Substitution<Variable, Term> substitution, scala.collection.immutable.List<Integer> path, Term rhs, TermContext context) {
+    Term buildRHS(Term subject, Substitution<Variable, Term> substitution, scala.collection.immutable.List<Integer> path, Term rhs, TermContext context) {
         if (path.isEmpty()) {
             return rhs.substituteAndEvaluate(substitution, context);
         } else {
@@ -218,7 +260,7 @@ public class SymbolicRewriter {
      * goes down each of the the paths on the subject to find the rewrite place, does the substitution,
      * and reconstructs the term on its way up
      */
-    private Term buildRHS(Term subject, Substitution<Variable, Term> substitution, List<Pair<scala.collection.immutable.List<Integer>, Term>> rewrites, TermContext context) {
+    Term buildRHS(Term subject, Substitution<Variable, Term> substitution, List<Pair<scala.collection.immutable.List<Integer>, Term>> rewrites, TermContext context) {
         if (rewrites.size() == 1 && rewrites.get(0).getLeft().isEmpty()) {
             return rewrites.get(0).getRight().substituteAndEvaluate(substitution, context);
         }
@@ -412,58 +454,183 @@ public class SymbolicRewriter {
             }
         }
 
-        int step;
-    label:
-        for (step = 0; !queue.isEmpty(); ++step) {
-            for (Map.Entry<ConstrainedTerm, Integer> entry : queue.entrySet()) {
-                ConstrainedTerm term = entry.getKey();
-                Integer currentDepth = entry.getValue();
-
-                List<ConstrainedTerm> results = computeRewriteStep(term, step, false);
+        ForkJoinPool searchPool = javaOptions.searchThreads > 1 ? new ForkJoinPool(javaOptions.searchThreads) : null;
+        ThreadLocal<SymbolicRewriter> workers = ThreadLocal.withInitial(() -> new SymbolicRewriter(this));
 
-                if (results.isEmpty() && searchType == SearchType.FINAL) {
-                    if (addSearchResult(searchResults, term, pattern, bound)) {
-                        break label;
+        int step;
+        try {
+        label:
+            for (step = 0; !queue.isEmpty(); ++step) {
+                List<Pair<List<ConstrainedTerm>, Boolean>> levelResults = searchPool != null ?
+                        parallelComputeRewriteSteps(searchPool, workers, queue.keySet(), step) :
+                        null;
+                int index = 0;
+                for (Map.Entry<ConstrainedTerm, Integer> entry : queue.entrySet()) {
+                    ConstrainedTerm term = entry.getKey();
+                    Integer currentDepth = entry.getValue();
+
+                    List<ConstrainedTerm> results;
+                    boolean isTransition;
+                    if (levelResults != null) {
+                        results = levelResults.get(index).getLeft();
+                        isTransition = levelResults.get(index).getRight();
+                        index++;
+                    } else {
+                        results = computeRewriteStep(term, step, false);
+                        isTransition = transition;
                     }
-                }
 
-                for (ConstrainedTerm result : results) {
-                    if (!transition) {
-                        nextQueue.put(result, currentDepth);
-                        break;
-                    } else {
-                        // Continue searching if we haven't reached our target
-                        // depth and we haven't already visited this state.
-                        if (currentDepth + 1 != depth && visited.add(result)) {
-                            nextQueue.put(result, currentDepth + 1);
+                    if (results.isEmpty() && searchType == SearchType.FINAL) {
+                        if (addSearchResult(searchResults, term, pattern, bound)) {
+                            break label;
                         }
-                        // If we aren't searching for only final results, then
-                        // also add this as a result if it matches the pattern.
-                        if (searchType != SearchType.FINAL || currentDepth + 1 == depth) {
-                            if (addSearchResult(searchResults, result, pattern, bound)) {
-                                break label;
+                    }
+
+                    for (ConstrainedTerm result : results) {
+                        if (!isTransition) {
+                            nextQueue.put(result, currentDepth);
+                            break;
+                        } else {
+                            // Continue searching if we haven't reached our target
+                            // depth and we haven't already visited this state.
+                            if (currentDepth + 1 != depth && visited.add(result)) {
+                                nextQueue.put(result, currentDepth + 1);
+                            }
+                            // If we aren't searching for only final results, then
+                            // also add this as a result if it matches the pattern.
+                            if (searchType != SearchType.FINAL || currentDepth + 1 == depth) {
+                                if (addSearchResult(searchResults, result, pattern, bound)) {
+                                    break label;
+                                }
                             }
                         }
                     }
                 }
-            }
 
-            /* swap the queues */
-            Map<ConstrainedTerm, Integer> temp;
-            temp = queue;
-            queue = nextQueue;
-            nextQueue = temp;
-            nextQueue.clear();
+                /* swap the queues */
+                Map<ConstrainedTerm, Integer> temp;
+                temp = queue;
+                queue = nextQueue;
+                nextQueue = temp;
+                nextQueue.clear();
+            }
+        } finally {
+            if (searchPool != null) {
+                searchPool.shutdown();
+            }
         }
 
         stopwatch.stop();
         if (context.global().krunOptions.experimental.statistics) {
             System.err.println("[" + visited.size() + "states, " + step + "steps, " + stopwatch + "]");
+            if (global.kItemOps.memoTable() != null) {
+                System.err.println(global.kItemOps.memoTable());
+            }
         }
 
         return searchResults;
     }
 
+    /**
+     * Computes the successors of all the states of a search level on the given pool. Each state is
+     * rewritten by the {@link SymbolicRewriter} confined to the current worker thread, under a forked
+     * {@link TermContext}. The successors are returned in the iteration order of {@code terms},
+     * each paired with whether they were obtained by a transition, so that the caller can merge them
+     * exactly as the sequential search does.
+     * <p>
+     * The fresh counter of each fork starts at the value the shared counter would have when the
+     * sequential search reaches the state, so the fresh constants are the same for any number of
+     * threads. That value depends on the fresh constants generated for the previous states, so the
+     * states are first rewritten as if the previous states generated none, and those after a state
+     * which did are rewritten again from their actual starting value.
+     */
+    private List<Pair<List<ConstrainedTerm>, Boolean>> parallelComputeRewriteSteps(
+            ForkJoinPool pool,
+            ThreadLocal<SymbolicRewriter> workers,
+            Collection<ConstrainedTerm> terms,
+            int step) {
+        List<ConstrainedTerm> level = new ArrayList<>(terms);
+        TermContext context = level.get(0).termContext();
+        BigInteger base = context.hasFreshCounter() ? context.getCounterValue() : null;
+        List<SearchStep> steps = pool.invoke(ForkJoinTask.adapt(() -> level.parallelStream()
+                .map(term -> workers.get().computeSearchStep(term, base, step))
+                .collect(Collectors.toList())));
+
+        if (base != null) {
+            List<Integer> outdated = new ArrayList<>();
+            List<BigInteger> starts = new ArrayList<>();
+            BigInteger start = base;
+            for (int i = 0; i < level.size(); i++) {
+                if (!start.equals(base)) {
+                    outdated.add(i);
+                }
+                starts.add(start);
+                start = start.add(steps.get(i).freshConstants);
+            }
+            if (!outdated.isEmpty()) {
+                List<SearchStep> updatedSteps = pool.invoke(ForkJoinTask.adapt(() -> outdated.parallelStream()
+                        .map(i -> workers.get().computeSearchStep(level.get(i), starts.get(i), step))
+                        .collect(Collectors.toList())));
+                for (int i = 0; i < outdated.size(); i++) {
+                    steps.set(outdated.get(i), updatedSteps.get(i));
+                }
+            }
+
+            /* the number of fresh constants generated for a state may depend on the value of the
+             * counter, in which case the following states are rewritten again sequentially */
+            BigInteger counter = base;
+            for (int i = 0; i < level.size(); i++) {
+                if (!steps.get(i).start.equals(counter)) {
+                    steps.set(i, workers.get().computeSearchStep(level.get(i), counter, step));
+                }
+                counter = counter.add(steps.get(i).freshConstants);
+            }
+            context.setCounterValue(counter);
+        }
+
+        /* the successors share the context of the search, as in the sequential search */
+        return steps.stream()
+                .map(s -> Pair.of(
+                        s.results.stream()
+                                .map(r -> new ConstrainedTerm(r.term(), r.constraint(), context))
+                                .collect(Collectors.toList()),
+                        s.transition))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Computes the successors of a state under a fork of its {@link TermContext} whose fresh counter
+     * starts at the given value.
+     */
+    private SearchStep computeSearchStep(ConstrainedTerm term, BigInteger start, int step) {
+        TermContext context = term.termContext().fork(start);
+        List<ConstrainedTerm> results = computeRewriteStep(
+                new ConstrainedTerm(term.term(), term.constraint(), context),
+                step,
+                false);
+        BigInteger freshConstants = start != null ? context.getCounterValue().subtract(start) : BigInteger.ZERO;
+        return new SearchStep(results, transition, start, freshConstants);
+    }
+
+    /**
+     * The successors of a state of a search level, computed by {@link #computeSearchStep}.
+     */
+    private static class SearchStep {
+        final List<ConstrainedTerm> results;
+        final boolean transition;
+        /* the initial value of the fresh counter */
+        final BigInteger start;
+        /* the number of fresh constants generated */
+        final BigInteger freshConstants;
+
+        SearchStep(List<ConstrainedTerm> results, boolean transition, BigInteger start, BigInteger freshConstants) {
+            this.results = results;
+            this.transition = transition;
+            this.start = start;
+            this.freshConstants = freshConstants;
+        }
+    }
+
     public List<ConstrainedTerm> proveRule(
             ConstrainedTerm initialTerm,
             ConstrainedTerm targetTerm,
@@ -0,0 +1,289 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable list represented as a height-balanced binary tree, which supports indexed access,
+ * appending, splitting and concatenation in O(log n) time. The lists returned by {@link #plus},
+ * {@link #concat} and {@link #subList} share all but O(log n) of their nodes with their operands.
+ * <p>
+ * The tree is balanced the same way as an AVL tree, and splitting and concatenation are implemented
+ * in terms of an operation joining two trees of arbitrary heights.
+ * @param <E>
+ */
+public final class PersistentList<E> extends AbstractList<E> implements Serializable {
+
+    private static final class Node<E> implements Serializable {
+        private final Node<E> left;
+        private final E value;
+        private final Node<E> right;
+        private final int size;
+        private final int height;
+
+        Node(Node<E> left, E value, Node<E> right) {
+            this.left = left;
+            this.value = value;
+            this.right = right;
+            this.size = size(left) + 1 + size(right);
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentList EMPTY = new PersistentList<>(null);
+
+    private final Node<E> root;
+
+    private PersistentList(Node<E> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentList<E> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns a {@code PersistentList} with the elements of the given list, in O(1) time if the
+     * given list is a {@code PersistentList} and in O(n) time otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentList<E> from(List<? extends E> list) {
+        if (list instanceof PersistentList) {
+            return (PersistentList<E>) list;
+        }
+        if (list.isEmpty()) {
+            return empty();
+        }
+        Object[] elements = list.toArray();
+        return new PersistentList<>(build(elements, 0, elements.length));
+    }
+
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.value;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns this list with the given element appended.
+     */
+    public PersistentList<E> plus(E element) {
+        return new PersistentList<>(join(root, element, null));
+    }
+
+    /**
+     * Returns the concatenation of this list and the given list.
+     */
+    public PersistentList<E> concat(PersistentList<E> list) {
+        if (list.root == null) {
+            return this;
+        }
+        if (root == null) {
+            return list;
+        }
+        int size = size();
+        return new PersistentList<>(join(take(root, size - 1), get(size - 1), list.root));
+    }
+
+    @Override
+    public PersistentList<E> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex
+                    + ", Size: " + size());
+        }
+        return new PersistentList<>(take(drop(root, fromIndex), toIndex - fromIndex));
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            /* the nodes whose value and right subtree are yet to be visited */
+            private final Deque<Node<E>> stack = new ArrayDeque<>();
+
+            {
+                pushLeftSpine(root);
+            }
+
+            private void pushLeftSpine(Node<E> node) {
+                for (; node != null; node = node.left) {
+                    stack.push(node);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<E> node = stack.pop();
+                pushLeftSpine(node.right);
+                return node.value;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object instanceof PersistentList && root == ((PersistentList) object).root) {
+            return true;
+        }
+        if (!(object instanceof List) || size() != ((Collection) object).size()) {
+            return false;
+        }
+
+        Iterator<E> iterator = iterator();
+        for (Object element : (List) object) {
+            E value = iterator.next();
+            if (value == null ? element != null : !value.equals(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (E element : this) {
+            hashCode = 31 * hashCode + (element == null ? 0 : element.hashCode());
+        }
+        return hashCode;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Node<E> build(Object[] elements, int from, int to) {
+        if (from == to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Node<>(build(elements, from, middle), (E) elements[middle], build(elements, middle + 1, to));
+    }
+
+    /**
+     * Returns a balanced tree with the elements of {@code left}, followed by {@code value},
+     * followed by the elements of {@code right}, in time proportional to the difference of the
+     * heights of {@code left} and {@code right}.
+     */
+    private static <E> Node<E> join(Node<E> left, E value, Node<E> right) {
+        if (height(left) > height(right) + 1) {
+            return balance(left.left, left.value, join(left.right, value, right));
+        } else if (height(right) > height(left) + 1) {
+            return balance(join(left, value, right.left), right.value, right.right);
+        } else {
+            return new Node<>(left, value, right);
+        }
+    }
+
+    /**
+     * Returns a balanced tree with the elements of {@code left}, followed by {@code value},
+     * followed by the elements of {@code right}, where the heights of {@code left} and
+     * {@code right} differ by at most 2.
+     */
+    private static <E> Node<E> balance(Node<E> left, E value, Node<E> right) {
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.left, left.value, new Node<>(left.right, value, right));
+            } else {
+                return new Node<>(
+                        new Node<>(left.left, left.value, left.right.left),
+                        left.right.value,
+                        new Node<>(left.right.right, value, right));
+            }
+        } else if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(new Node<>(left, value, right.left), right.value, right.right);
+            } else {
+                return new Node<>(
+                        new Node<>(left, value, right.left.left),
+                        right.left.value,
+                        new Node<>(right.left.right, right.value, right.right));
+            }
+        } else {
+            return new Node<>(left, value, right);
+        }
+    }
+
+    /**
+     * Returns the tree of the first {@code count} elements of the given tree.
+     */
+    private static <E> Node<E> take(Node<E> node, int count) {
+        if (count <= 0) {
+            return null;
+        }
+        if (count >= size(node)) {
+            return node;
+        }
+        int leftSize = size(node.left);
+        if (count <= leftSize) {
+            return take(node.left, count);
+        } else {
+            return join(node.left, node.value, take(node.right, count - leftSize - 1));
+        }
+    }
+
+    /**
+     * Returns the tree of the elements of the given tree but the first {@code count}.
+     */
+    private static <E> Node<E> drop(Node<E> node, int count) {
+        if (count <= 0) {
+            return node;
+        }
+        if (count >= size(node)) {
+            return null;
+        }
+        int leftSize = size(node.left);
+        if (count <= leftSize) {
+            return join(drop(node.left, count), node.value, node.right);
+        } else {
+            return drop(node.right, count - leftSize - 1);
+        }
+    }
+}
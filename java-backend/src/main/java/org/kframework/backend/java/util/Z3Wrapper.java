@@ -3,12 +3,21 @@ package org.kframework.backend.java.util;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
+import com.microsoft.z3.ArraySort;
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Expr;
+import com.microsoft.z3.FuncDecl;
 import com.microsoft.z3.Params;
+import com.microsoft.z3.Quantifier;
 import com.microsoft.z3.Solver;
-import com.microsoft.z3.Status;
+import com.microsoft.z3.Sort;
+import com.microsoft.z3.Symbol;
 import com.microsoft.z3.Z3Exception;
+import com.microsoft.z3.enumerations.Z3_decl_kind;
+import com.microsoft.z3.enumerations.Z3_sort_kind;
 import org.kframework.main.GlobalOptions;
 import org.kframework.utils.OS;
+import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import org.kframework.utils.file.FileUtil;
 import org.kframework.utils.options.SMTOptions;
@@ -18,7 +27,17 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Traian
@@ -29,12 +48,34 @@ public class Z3Wrapper {
 
     private static final Set<String> Z3_QUERY_RESULTS = ImmutableSet.of("unknown", "sat", "unsat");
 
+    /**
+     * The wrappers which may hold solver sessions, closed by a shutdown hook if they are still
+     * open when the JVM exits.
+     */
+    private static final Set<Z3Wrapper> openWrappers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (Z3Wrapper z3 : openWrappers) {
+                z3.close();
+            }
+        }));
+    }
+
     public final String SMT_PRELUDE;
     private final SMTOptions options;
     private final GlobalOptions globalOptions;
     private final KExceptionManager kem;
     private final FileUtil files;
 
+    /**
+     * The solver slots that are not in use. A query takes a slot for its whole duration, so at
+     * most {@code --z3-pool-size} queries are checked concurrently, each by its own Z3 instance.
+     */
+    private final BlockingQueue<Slot> pool;
+
+    private volatile boolean closed = false;
+
     @Inject
     public Z3Wrapper(
             SMTOptions options,
@@ -47,27 +88,98 @@ public class Z3Wrapper {
         this.files = files;
 
         SMT_PRELUDE = options.smtPrelude == null ? "" : files.loadFromWorkingDirectory(options.smtPrelude);
+
+        if (options.z3PoolSize < 1) {
+            throw KEMException.criticalError("Expected a positive number of Z3 solver instances, got " + options.z3PoolSize);
+        }
+        pool = new ArrayBlockingQueue<>(options.z3PoolSize);
+        for (int i = 0; i < options.z3PoolSize; i++) {
+            pool.add(new Slot());
+        }
     }
 
-    public synchronized boolean isUnsat(String query, int timeout) {
-        if (options.z3Executable) {
-            return checkQueryWithExternalProcess(query, timeout);
-        } else {
-            return checkQueryWithLibrary(query, timeout);
+    /**
+     * The solver sessions of a slot of the pool. The library session is created lazily; external
+     * Z3 processes are keyed by their timeout, which is fixed when the process is started.
+     */
+    private final class Slot {
+        private Z3Session librarySession;
+        private final Map<Integer, Z3Process> externalSessions = new HashMap<>();
+
+        private void close() {
+            if (librarySession != null) {
+                librarySession.close();
+                librarySession = null;
+            }
+            externalSessions.values().forEach(Z3Process::destroy);
+            externalSessions.clear();
         }
     }
 
-    private boolean checkQueryWithLibrary(String query, int timeout) {
-        boolean result = false;
+    /**
+     * Terminates the solver sessions of this wrapper. A query checked after the wrapper is closed
+     * still succeeds, but its session is terminated as soon as the query is answered.
+     */
+    public void close() {
+        closed = true;
+        closeIdleSlots();
+        openWrappers.remove(this);
+    }
+
+    /**
+     * Closes the sessions of the slots which are not in use. A slot in use is closed by the query
+     * which holds it, when it gives the slot back to a closed wrapper.
+     */
+    private void closeIdleSlots() {
+        List<Slot> slots = new ArrayList<>();
+        pool.drainTo(slots);
+        slots.forEach(Slot::close);
+        pool.addAll(slots);
+    }
+
+    public boolean isUnsat(String query, int timeout) {
+        return Boolean.TRUE.equals(checkUnsat(query, timeout));
+    }
+
+    /**
+     * Checks whether the given query is unsatisfiable.
+     *
+     * @return {@code true} if Z3 proves the query unsat, {@code false} if it finds it sat, or
+     * {@code null} if it cannot decide the query because it answers unknown, times out, or fails
+     */
+    public Boolean checkUnsat(String query, int timeout) {
+        Slot slot;
         try {
-            com.microsoft.z3.Context context = new com.microsoft.z3.Context();
-            Solver solver = context.mkSolver();
-            Params params = context.mkParams();
-            params.add("timeout", timeout);
-            solver.setParameters(params);
-            solver.add(context.parseSMTLIB2String(SMT_PRELUDE + query, null, null, null, null));
-            result = solver.check() == Status.UNSATISFIABLE;
-            context.dispose();
+            slot = pool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw KEMException.criticalError("Interrupted while waiting for a Z3 solver instance", e);
+        }
+        try {
+            if (!closed) {
+                openWrappers.add(this);
+            }
+            if (options.z3Executable) {
+                return checkQueryWithExternalProcess(slot, query, timeout);
+            } else {
+                return checkQueryWithLibrary(slot, query, timeout);
+            }
+        } finally {
+            pool.add(slot);
+            if (closed) {
+                closeIdleSlots();
+                openWrappers.remove(this);
+            }
+        }
+    }
+
+    private Boolean checkQueryWithLibrary(Slot slot, String query, int timeout) {
+        Boolean result = null;
+        try {
+            if (slot.librarySession == null) {
+                slot.librarySession = new Z3Session();
+            }
+            result = slot.librarySession.isUnsat(query, timeout);
         } catch (Z3Exception e) {
             kem.registerCriticalWarning(
                     "failed to translate smtlib expression:\n" + SMT_PRELUDE + query);
@@ -78,32 +190,32 @@ public class Z3Wrapper {
         return result;
     }
 
-    private boolean checkQueryWithExternalProcess(String query, int timeout) {
+    private Boolean checkQueryWithExternalProcess(Slot slot, String query, int timeout) {
         String result = "";
+        Map<Integer, Z3Process> sessions = slot.externalSessions;
         try {
             for (int i = 0; i < Z3_RESTART_LIMIT; i++) {
-                ProcessBuilder pb = files.getProcessBuilder().command(
-                        OS.current().getNativeExecutable("z3"),
-                        "-in",
-                        "-smt2",
-                        "-t:" + timeout);
-                pb.redirectInput(ProcessBuilder.Redirect.PIPE);
-                pb.redirectOutput(ProcessBuilder.Redirect.PIPE);
-                Process z3Process = pb.start();
-                BufferedWriter input = new BufferedWriter(new OutputStreamWriter(
-                    z3Process.getOutputStream()));
-                BufferedReader output = new BufferedReader(new InputStreamReader(
-                    z3Process.getInputStream()));
-                input.write(SMT_PRELUDE + query + "(check-sat)\n");
-                input.flush();
-                result = output.readLine();
-                z3Process.destroy();
+                Z3Process z3Process = sessions.get(timeout);
+                if (z3Process == null) {
+                    z3Process = new Z3Process(timeout);
+                    sessions.put(timeout, z3Process);
+                }
+                result = z3Process.check(query);
 
+                if (result == null || !Z3_QUERY_RESULTS.contains(result)) {
+                    /* the process either crashed or is out of sync with our queries */
+                    sessions.remove(timeout);
+                    z3Process.destroy();
+                }
                 if (result != null) {
                     break;
                 }
             }
         } catch (IOException e) {
+            Z3Process z3Process = sessions.remove(timeout);
+            if (z3Process != null) {
+                z3Process.destroy();
+            }
             e.printStackTrace();
         }
         if (result == null) {
@@ -114,7 +226,156 @@ public class Z3Wrapper {
         } else if (globalOptions.debug && !Z3_QUERY_RESULTS.contains(result)) {
             System.err.println("Unexpected Z3 query result:\n" + result);
         }
-        return result.equals("unsat");
+        switch (result) {
+            case "unsat":
+                return true;
+            case "sat":
+                return false;
+            default:
+                return null;
+        }
     }
-}
 
+    /**
+     * A native Z3 context and solver reused across queries. The prelude is parsed and asserted
+     * once, when the session is created, and each query is parsed against the declarations of the
+     * prelude and checked inside its own push/pop scope.
+     */
+    private final class Z3Session {
+        private final com.microsoft.z3.Context context = new com.microsoft.z3.Context();
+        private final Solver solver = context.mkSolver();
+        private Symbol[] sortNames;
+        private Sort[] sorts;
+        private Symbol[] declNames;
+        private FuncDecl[] decls;
+
+        private Z3Session() {
+            try {
+                BoolExpr prelude = context.parseSMTLIB2String(SMT_PRELUDE, null, null, null, null);
+                solver.add(prelude);
+
+                /* the parser only returns the assertions of the prelude, so its declarations are
+                 * recovered from the symbols they use */
+                Map<String, Sort> sortMap = new LinkedHashMap<>();
+                Map<String, FuncDecl> declMap = new LinkedHashMap<>();
+                collectDeclarations(prelude, sortMap, declMap, new HashSet<>());
+                if (!sortMap.isEmpty()) {
+                    sortNames = sortMap.keySet().stream().map(context::mkSymbol).toArray(Symbol[]::new);
+                    sorts = sortMap.values().toArray(new Sort[sortMap.size()]);
+                }
+                if (!declMap.isEmpty()) {
+                    declNames = declMap.keySet().stream().map(context::mkSymbol).toArray(Symbol[]::new);
+                    decls = declMap.values().toArray(new FuncDecl[declMap.size()]);
+                }
+            } catch (Z3Exception e) {
+                context.dispose();
+                throw e;
+            }
+        }
+
+        private Boolean isUnsat(String query, int timeout) {
+            Params params = context.mkParams();
+            params.add("timeout", timeout);
+            solver.setParameters(params);
+            solver.push();
+            try {
+                solver.add(parse(query));
+                switch (solver.check()) {
+                    case UNSATISFIABLE:
+                        return true;
+                    case SATISFIABLE:
+                        return false;
+                    default:
+                        return null;
+                }
+            } finally {
+                solver.pop();
+            }
+        }
+
+        private BoolExpr parse(String query) {
+            try {
+                return context.parseSMTLIB2String(query, sortNames, sorts, declNames, decls);
+            } catch (Z3Exception e) {
+                /* the query uses a symbol of the prelude which none of its assertions use, or
+                 * which is defined by define-fun, so it is parsed together with the prelude */
+                return context.parseSMTLIB2String(SMT_PRELUDE + query, null, null, null, null);
+            }
+        }
+
+        private void collectDeclarations(Expr expr, Map<String, Sort> sortMap, Map<String, FuncDecl> declMap, Set<Expr> visited) {
+            if (!visited.add(expr)) {
+                return;
+            }
+            collectSort(expr.getSort(), sortMap);
+            if (expr.isApp()) {
+                FuncDecl decl = expr.getFuncDecl();
+                if (decl.getDeclKind() == Z3_decl_kind.Z3_OP_UNINTERPRETED) {
+                    declMap.put(decl.getName().toString(), decl);
+                    for (Sort sort : decl.getDomain()) {
+                        collectSort(sort, sortMap);
+                    }
+                }
+                for (Expr arg : expr.getArgs()) {
+                    collectDeclarations(arg, sortMap, declMap, visited);
+                }
+            } else if (expr instanceof Quantifier) {
+                for (Sort sort : ((Quantifier) expr).getBoundVariableSorts()) {
+                    collectSort(sort, sortMap);
+                }
+                collectDeclarations(((Quantifier) expr).getBody(), sortMap, declMap, visited);
+            }
+        }
+
+        private void collectSort(Sort sort, Map<String, Sort> sortMap) {
+            if (sort.getSortKind() == Z3_sort_kind.Z3_UNINTERPRETED_SORT) {
+                sortMap.put(sort.getName().toString(), sort);
+            } else if (sort instanceof ArraySort) {
+                collectSort(((ArraySort) sort).getDomain(), sortMap);
+                collectSort(((ArraySort) sort).getRange(), sortMap);
+            }
+        }
+
+        private void close() {
+            context.dispose();
+        }
+    }
+
+    /**
+     * A long-lived {@code z3 -in} process. The prelude is sent once when the process is started;
+     * each query is then sent over the pipe inside its own push/pop scope.
+     */
+    private final class Z3Process {
+        private final Process process;
+        private final BufferedWriter input;
+        private final BufferedReader output;
+
+        private Z3Process(int timeout) throws IOException {
+            ProcessBuilder pb = files.getProcessBuilder().command(
+                    OS.current().getNativeExecutable("z3"),
+                    "-in",
+                    "-smt2",
+                    "-t:" + timeout);
+            pb.redirectInput(ProcessBuilder.Redirect.PIPE);
+            pb.redirectOutput(ProcessBuilder.Redirect.PIPE);
+            process = pb.start();
+            input = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+            output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            input.write(SMT_PRELUDE + "\n");
+            input.flush();
+        }
+
+        /**
+         * @return the answer of Z3 to the query, or {@code null} if the process has terminated
+         */
+        private String check(String query) throws IOException {
+            input.write("(push)\n" + query + "(check-sat)\n(pop)\n");
+            input.flush();
+            return output.readLine();
+        }
+
+        private void destroy() {
+            process.destroy();
+        }
+    }
+}
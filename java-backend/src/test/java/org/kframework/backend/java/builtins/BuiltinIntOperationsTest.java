@@ -0,0 +1,63 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.builtins;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.kframework.backend.java.kil.TermContext;
+import org.mockito.Mock;
+
+import java.math.BigInteger;
+
+public class BuiltinIntOperationsTest {
+
+    @Mock
+    TermContext context;
+
+    private static final IntToken MAX = IntToken.of(Long.MAX_VALUE);
+    private static final IntToken MIN = IntToken.of(Long.MIN_VALUE);
+
+    @Test
+    public void testRepresentation() {
+        assertTrue(IntToken.of(BigInteger.valueOf(Long.MAX_VALUE)).isLong());
+        assertFalse(IntToken.of(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)).isLong());
+        assertEquals(MAX, IntToken.of(BigInteger.valueOf(Long.MAX_VALUE)));
+        assertEquals(MAX.hashCode(), IntToken.of(BigInteger.valueOf(Long.MAX_VALUE)).hashCode());
+        assertSame(IntToken.of(7), IntToken.of("7"));
+        assertEquals("-9223372036854775808", MIN.value());
+    }
+
+    @Test
+    public void testOverflow() {
+        assertEquals(IntToken.of(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)),
+                BuiltinIntOperations.add(MAX, IntToken.of(1), context));
+        assertEquals(IntToken.of(BigInteger.valueOf(Long.MIN_VALUE).subtract(BigInteger.ONE)),
+                BuiltinIntOperations.sub(MIN, IntToken.of(1), context));
+        assertEquals(IntToken.of(BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.valueOf(2))),
+                BuiltinIntOperations.mul(MAX, IntToken.of(2), context));
+        assertEquals(IntToken.of(BigInteger.valueOf(Long.MIN_VALUE).negate()),
+                BuiltinIntOperations.div(MIN, IntToken.of(-1), context));
+        assertEquals(IntToken.of(BigInteger.valueOf(Long.MIN_VALUE).negate()),
+                BuiltinIntOperations.abs(MIN, context));
+        assertTrue(BuiltinIntOperations.sub(BuiltinIntOperations.add(MAX, IntToken.of(1), context),
+                IntToken.of(1), context).isLong());
+    }
+
+    @Test
+    public void testDivision() {
+        assertEquals(IntToken.of(-2), BuiltinIntOperations.div(IntToken.of(-7), IntToken.of(3), context));
+        assertEquals(IntToken.of(-1), BuiltinIntOperations.rem(IntToken.of(-7), IntToken.of(3), context));
+        assertEquals(IntToken.of(2), BuiltinIntOperations.mod(IntToken.of(-7), IntToken.of(3), context));
+        assertNull(BuiltinIntOperations.div(IntToken.of(1), IntToken.of(0), context));
+        assertEquals(IntToken.of(-1), BuiltinIntOperations.shr(IntToken.of(-7), IntToken.of(100), context));
+    }
+
+    @Test
+    public void testComparison() {
+        IntToken big = IntToken.of(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE));
+        assertTrue(BuiltinIntOperations.lt(MAX, big, context).booleanValue());
+        assertTrue(BuiltinIntOperations.gt(MAX, MIN, context).booleanValue());
+        assertSame(MIN, BuiltinIntOperations.min(MIN, big, context));
+        assertSame(big, BuiltinIntOperations.max(MIN, big, context));
+    }
+}
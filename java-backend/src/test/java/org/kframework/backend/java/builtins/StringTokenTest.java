@@ -0,0 +1,40 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.builtins;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.kframework.backend.java.kil.TermContext;
+import org.mockito.Mock;
+
+public class StringTokenTest {
+
+    @Mock
+    TermContext context;
+
+    @Test
+    public void testAppend() {
+        StringToken appended = StringToken.of("");
+        StringToken prepended = StringToken.of("");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            String c = Character.toString((char) ('a' + i % 26));
+            appended = BuiltinStringOperations.add(appended, StringToken.of(c), context);
+            prepended = BuiltinStringOperations.add(StringToken.of(c), prepended, context);
+            sb.append(c);
+        }
+        String expected = sb.toString();
+        assertEquals(expected.hashCode(), appended.hashCode());
+        assertEquals(StringToken.of(expected), appended);
+        assertEquals(appended, StringToken.of(expected));
+        assertEquals(expected, appended.stringValue());
+        assertEquals(sb.reverse().toString(), prepended.stringValue());
+        assertEquals(prepended.hashCode(), StringToken.of(prepended.stringValue()).hashCode());
+    }
+
+    @Test
+    public void testInterning() {
+        assertSame(StringToken.of("abc"), BuiltinStringOperations.add(StringToken.of("a"), StringToken.of("bc"), context));
+        assertNotEquals(StringToken.of("abc"), StringToken.of("abd"));
+    }
+}
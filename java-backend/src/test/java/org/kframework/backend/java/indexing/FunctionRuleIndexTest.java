@@ -0,0 +1,150 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.indexing;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.backend.java.kil.BuiltinSet;
+import org.kframework.backend.java.kil.Definition;
+import org.kframework.backend.java.kil.KItem;
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.KList;
+import org.kframework.backend.java.kil.Rule;
+import org.kframework.backend.java.kil.Sort;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.Variable;
+import org.kframework.kil.Attributes;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FunctionRuleIndexTest {
+
+    @Mock
+    Definition definition;
+
+    @Before
+    public void setUp() {
+        when(definition.signaturesOf(anyString())).thenReturn(Collections.emptySet());
+        when(definition.allSorts()).thenReturn(Collections.singleton(Sort.of("Foo")));
+        when(definition.kLabelAttributesOf(anyString())).thenReturn(new Attributes());
+    }
+
+    private KItem app(String label, Term... arguments) {
+        return new KItem(KLabelConstant.of(label, definition), KList.concatenate(arguments), Sort.of("Foo"), true);
+    }
+
+    private static Variable var(String name) {
+        return new Variable(name, Sort.of("Foo"));
+    }
+
+    private static Rule rule(Term leftHandSide) {
+        Rule rule = mock(Rule.class);
+        when(rule.leftHandSide()).thenReturn(leftHandSide);
+        return rule;
+    }
+
+    private static Rule owiseRule(Term leftHandSide) {
+        Rule rule = rule(leftHandSide);
+        when(rule.containsAttribute("owise")).thenReturn(true);
+        return rule;
+    }
+
+    @Test
+    public void testDiscriminatingPosition() {
+        Rule r1 = rule(app("f", app("a"), IntToken.of(0)));
+        Rule r2 = rule(app("f", app("a"), IntToken.of(1)));
+        Rule r3 = rule(app("f", app("b"), IntToken.of(2)));
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(r1, r2, r3));
+
+        /* the second argument has three distinct tops and the first only two */
+        assertEquals(ImmutableList.of(r1), index.candidates(app("f", app("b"), IntToken.of(0))));
+        assertEquals(ImmutableList.of(r2), index.candidates(app("f", app("a"), IntToken.of(1))));
+        assertEquals(ImmutableList.of(r3), index.candidates(app("f", app("a"), IntToken.of(2))));
+        assertEquals(ImmutableList.of(), index.candidates(app("f", app("b"), IntToken.of(3))));
+    }
+
+    @Test
+    public void testKLabelTops() {
+        Rule r1 = rule(app("f", app("a", IntToken.of(0))));
+        Rule r2 = rule(app("f", app("b")));
+        Rule r3 = rule(app("f", app("a", var("X"))));
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(r1, r2, r3));
+
+        /* the index only discriminates on the label of an argument, not on its children */
+        assertEquals(ImmutableList.of(r1, r3), index.candidates(app("f", app("a", IntToken.of(1)))));
+        assertEquals(ImmutableList.of(r2), index.candidates(app("f", app("b"))));
+        assertEquals(ImmutableList.of(), index.candidates(app("f", app("c"))));
+    }
+
+    @Test
+    public void testTokenTops() {
+        Rule r1 = rule(app("f", IntToken.of(0)));
+        Rule r2 = rule(app("f", IntToken.of(1)));
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(r1, r2));
+
+        assertEquals(ImmutableList.of(r1), index.candidates(app("f", IntToken.of(0))));
+        assertEquals(ImmutableList.of(r2), index.candidates(app("f", IntToken.of(1))));
+        assertEquals(ImmutableList.of(), index.candidates(app("f", IntToken.of(2))));
+        assertEquals(ImmutableList.of(), index.candidates(app("f", app("a"))));
+    }
+
+    @Test
+    public void testVariableArgument() {
+        Rule r1 = rule(app("f", IntToken.of(0)));
+        Rule r2 = rule(app("f", var("X")));
+        Rule r3 = rule(app("f", IntToken.of(1)));
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(r1, r2, r3));
+
+        /* a rule with a variable at the position is a candidate for every top, in rule order */
+        assertEquals(ImmutableList.of(r1, r2), index.candidates(app("f", IntToken.of(0))));
+        assertEquals(ImmutableList.of(r2, r3), index.candidates(app("f", IntToken.of(1))));
+        assertEquals(ImmutableList.of(r2), index.candidates(app("f", IntToken.of(2))));
+        assertEquals(ImmutableList.of(r2), index.candidates(app("f", app("a"))));
+    }
+
+    @Test
+    public void testUnknownTop() {
+        Rule r1 = rule(app("f", IntToken.of(0)));
+        Rule r2 = rule(app("f", var("X")));
+        Rule r3 = rule(app("f", IntToken.of(1)));
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(r1, r2, r3));
+
+        /* an argument which may still become any of the tops falls back to all rules */
+        assertEquals(ImmutableList.of(r1, r2, r3), index.candidates(app("f", var("Y"))));
+        assertEquals(ImmutableList.of(r1, r2, r3), index.candidates(app("f", BuiltinSet.builder(null).build())));
+        assertEquals(ImmutableList.of(r1, r2, r3), index.candidates(app("f")));
+    }
+
+    @Test
+    public void testNoDiscriminatingPosition() {
+        Rule r1 = rule(app("f", var("X"), IntToken.of(0)));
+        Rule r2 = rule(app("f", var("Y"), IntToken.of(0)));
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(r1, r2));
+
+        assertEquals(ImmutableList.of(r1, r2), index.candidates(app("f", IntToken.of(1), IntToken.of(1))));
+        assertEquals(ImmutableList.of(r1, r2), index.candidates(app("f", IntToken.of(1), IntToken.of(0))));
+    }
+
+    @Test
+    public void testOwiseRulesLast() {
+        Rule r1 = owiseRule(app("f", var("X")));
+        Rule r2 = rule(app("f", IntToken.of(0)));
+        Rule r3 = rule(app("f", var("Y")));
+        Rule r4 = owiseRule(app("f", IntToken.of(1)));
+        Rule r5 = rule(app("f", IntToken.of(1)));
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(r1, r2, r3, r4, r5));
+
+        assertEquals(ImmutableList.of(r2, r3, r1), index.candidates(app("f", IntToken.of(0))));
+        assertEquals(ImmutableList.of(r3, r5, r1, r4), index.candidates(app("f", IntToken.of(1))));
+        assertEquals(ImmutableList.of(r3, r1), index.candidates(app("f", IntToken.of(2))));
+        assertEquals(ImmutableList.of(r2, r3, r5, r1, r4), index.candidates(app("f", var("Z"))));
+    }
+}
@@ -0,0 +1,252 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.indexing;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.backend.java.kil.BuiltinList;
+import org.kframework.backend.java.kil.CellCollection;
+import org.kframework.backend.java.kil.CellLabel;
+import org.kframework.backend.java.kil.Definition;
+import org.kframework.backend.java.kil.KItem;
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.KList;
+import org.kframework.backend.java.kil.Rule;
+import org.kframework.backend.java.kil.Sort;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.Variable;
+import org.kframework.backend.java.symbolic.ConjunctiveFormula;
+import org.kframework.backend.java.symbolic.Equality;
+import org.kframework.backend.java.symbolic.PersistentUniqueList;
+import org.kframework.compile.utils.ConfigurationStructure;
+import org.kframework.compile.utils.ConfigurationStructureMap;
+import org.kframework.kil.Attribute;
+import org.kframework.kil.Attributes;
+import org.kframework.kil.Cell;
+import org.kframework.kil.loader.Constants;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IndexingTableTest {
+
+    private static final CellLabel IN = CellLabel.of("in");
+    private static final CellLabel OUT = CellLabel.of("out");
+
+    @Mock
+    Definition definition;
+
+    private final IndexingTable.Data data = new IndexingTable.Data();
+    private final List<Rule> rules = new ArrayList<>();
+    private KLabelConstant a;
+    private KLabelConstant b;
+    private Rule instreamRule1;
+    private Rule instreamRule3;
+    private Rule outstreamRule2;
+
+    @Before
+    public void setUp() throws ReflectiveOperationException {
+        /* the indexing data is a final field, which the mock does not initialize */
+        Field indexingData = Definition.class.getDeclaredField("indexingData");
+        indexingData.setAccessible(true);
+        indexingData.set(definition, data);
+
+        when(definition.signaturesOf(anyString())).thenReturn(Collections.emptySet());
+        when(definition.allSorts()).thenReturn(Collections.singleton(Sort.of("Foo")));
+        when(definition.kLabelAttributesOf(anyString())).thenReturn(new Attributes());
+        a = KLabelConstant.of("a", definition);
+        b = KLabelConstant.of("b", definition);
+
+        rules.add(kRule(new KLabelIndex(a)));
+        rules.add(kRule(new KLabelIndex(b)));
+        rules.add(kRule(data.TOP_INDEX));
+        rules.add(rule(data.TOP_INDEX, data.TOP_INDEX));
+        instreamRule1 = streamRule(Constants.STDIN, 1);
+        instreamRule3 = streamRule(Constants.STDIN, 3);
+        outstreamRule2 = streamRule(Constants.STDOUT, 2);
+        rules.add(instreamRule1);
+        rules.add(instreamRule3);
+        rules.add(outstreamRule2);
+
+        when(definition.rules()).thenReturn(rules);
+        when(definition.kLabels()).thenReturn(ImmutableSet.of(a, b));
+        when(definition.builtinSorts()).thenReturn(ImmutableSet.of(Sort.INT));
+
+        ConfigurationStructureMap configurationStructureMap = new ConfigurationStructureMap();
+        configurationStructureMap.put(CellLabel.K.name(), cell(null));
+        configurationStructureMap.put(IN.name(), cell(Constants.STDIN));
+        configurationStructureMap.put(OUT.name(), cell(Constants.STDOUT));
+        when(definition.getConfigurationStructureMap()).thenReturn(configurationStructureMap);
+    }
+
+    private static ConfigurationStructure cell(String stream) {
+        ConfigurationStructure structure = new ConfigurationStructure();
+        structure.cell = new Cell();
+        if (stream != null) {
+            structure.cell.getCellAttributes().put(Attribute.STREAM_KEY, stream);
+        }
+        return structure;
+    }
+
+    private static Rule rule(Index first, Index second) {
+        Rule rule = mock(Rule.class);
+        when(rule.indexingPair()).thenReturn(new IndexingPair(first, second));
+        return rule;
+    }
+
+    private Rule kRule(Index index) {
+        Rule rule = rule(index, data.TOP_INDEX);
+        when(rule.containsKCell()).thenReturn(true);
+        return rule;
+    }
+
+    /**
+     * Returns a rule on the given stream cell which matches any buffer with at least the given
+     * number of elements.
+     */
+    private Rule streamRule(String stream, int lookups) {
+        Rule rule = rule(data.TOP_INDEX, data.TOP_INDEX);
+        when(rule.containsAttribute(stream)).thenReturn(true);
+        PersistentUniqueList<Equality> equalities = PersistentUniqueList.empty();
+        for (int i = 0; i < lookups; i++) {
+            equalities = equalities.plus(mock(Equality.class));
+        }
+        ConjunctiveFormula formula = mock(ConjunctiveFormula.class);
+        when(formula.equalities()).thenReturn(equalities);
+        when(rule.lookups()).thenReturn(formula);
+        return rule;
+    }
+
+    private static Term buffer(int size, boolean frame) {
+        BuiltinList.Builder builder = BuiltinList.builder(null);
+        for (int i = 0; i < size; i++) {
+            builder.addItem(IntToken.of(i));
+        }
+        if (frame) {
+            builder.concatenate(new Variable("L", Sort.LIST));
+        }
+        return builder.build();
+    }
+
+    private static List<CellCollection.Cell> configuration(Term k, Term in, Term out) {
+        return ImmutableList.of(
+                new CellCollection.Cell(CellLabel.K, k),
+                new CellCollection.Cell(IN, in),
+                new CellCollection.Cell(OUT, out));
+    }
+
+    private IndexingTable table() {
+        return new IndexingTable(() -> definition, data);
+    }
+
+    private List<Term> kContents() {
+        return ImmutableList.of(
+                new KItem(a, KList.EMPTY, Sort.of("Foo"), true),
+                new KItem(b, KList.EMPTY, Sort.of("Foo"), true),
+                new KItem(KLabelConstant.of("c", definition), KList.EMPTY, Sort.of("Foo"), true),
+                IntToken.of(0),
+                new Variable("K", Sort.KITEM));
+    }
+
+    @Test
+    public void testCachedLookups() {
+        IndexingTable cachedTable = table();
+        List<List<CellCollection.Cell>> configurations = new ArrayList<>();
+        for (Term k : kContents()) {
+            for (int inSize = 0; inSize <= 5; inSize++) {
+                for (int outSize = 0; outSize <= 4; outSize++) {
+                    configurations.add(configuration(k, buffer(inSize, outSize % 2 == 0), buffer(outSize, false)));
+                }
+            }
+        }
+
+        /* the second pass hits the rules cache, as well as the indices of the cells whose content
+         * did not change since the previous lookup */
+        for (int pass = 0; pass < 2; pass++) {
+            for (List<CellCollection.Cell> configuration : configurations) {
+                assertEquals(table().getRules(configuration), cachedTable.getRules(configuration));
+            }
+        }
+    }
+
+    @Test
+    public void testBufferLengthCap() {
+        IndexingTable table = table();
+        Term k = new KItem(a, KList.EMPTY, Sort.of("Foo"), true);
+        List<Rule> rules0 = table.getRules(configuration(k, buffer(0, false), buffer(0, false)));
+        List<Rule> rules2 = table.getRules(configuration(k, buffer(2, false), buffer(2, false)));
+        List<Rule> rules3 = table.getRules(configuration(k, buffer(3, false), buffer(3, false)));
+        List<Rule> rules5 = table.getRules(configuration(k, buffer(5, false), buffer(5, false)));
+
+        assertFalse(rules0.contains(instreamRule1));
+        assertFalse(rules0.contains(outstreamRule2));
+        assertTrue(rules2.contains(instreamRule1));
+        assertFalse(rules2.contains(instreamRule3));
+        assertTrue(rules2.contains(outstreamRule2));
+        assertTrue(rules3.contains(instreamRule3));
+
+        /* buffers longer than the lookups of every stream rule share the index of the longest lookup */
+        assertEquals(rules3, rules5);
+        assertEquals(table().getRules(configuration(k, buffer(5, false), buffer(5, false))), rules5);
+        assertEquals(table().getRules(configuration(k, buffer(2, false), buffer(2, false))), rules2);
+    }
+
+    @Test
+    public void testCellContentChange() {
+        IndexingTable table = table();
+        Term in = buffer(3, false);
+        Term out = buffer(0, false);
+        List<Rule> aRules = table.getRules(configuration(new KItem(a, KList.EMPTY, Sort.of("Foo"), true), in, out));
+        List<Rule> bRules = table.getRules(configuration(new KItem(b, KList.EMPTY, Sort.of("Foo"), true), in, out));
+
+        assertNotEquals(aRules, bRules);
+        assertTrue(aRules.contains(rules.get(0)));
+        assertFalse(aRules.contains(rules.get(1)));
+        assertTrue(bRules.contains(rules.get(1)));
+        assertEquals(aRules, table.getRules(configuration(new KItem(a, KList.EMPTY, Sort.of("Foo"), true), in, out)));
+    }
+
+    @Test
+    public void testCacheOverflow() {
+        /* more distinct configuration indices than the cache holds */
+        List<KLabelConstant> kLabels = new ArrayList<>();
+        for (int i = 0; i < 1100; i++) {
+            kLabels.add(KLabelConstant.of("l" + i, definition));
+        }
+        Set<KLabelConstant> allKLabels = ImmutableSet.<KLabelConstant>builder().add(a, b).addAll(kLabels).build();
+        when(definition.kLabels()).thenReturn(allKLabels);
+        for (KLabelConstant kLabel : kLabels.subList(0, 10)) {
+            rules.add(kRule(new KLabelIndex(kLabel)));
+        }
+
+        IndexingTable cachedTable = table();
+        IndexingTable uncachedTable = table();
+        List<List<Rule>> firstPass = new ArrayList<>();
+        for (KLabelConstant kLabel : kLabels) {
+            firstPass.add(cachedTable.getRules(configuration(
+                    new KItem(kLabel, KList.EMPTY, Sort.of("Foo"), true), buffer(0, false), buffer(0, false))));
+        }
+        for (int i = 0; i < kLabels.size(); i++) {
+            List<CellCollection.Cell> configuration = configuration(
+                    new KItem(kLabels.get(i), KList.EMPTY, Sort.of("Foo"), true), buffer(0, false), buffer(0, false));
+            assertEquals(firstPass.get(i), cachedTable.getRules(configuration));
+            if (i % 100 == 0 || i < 10) {
+                assertEquals(uncachedTable.getRules(configuration), firstPass.get(i));
+                uncachedTable = table();
+            }
+        }
+        assertNotEquals(firstPass.get(0), firstPass.get(10));
+    }
+}
@@ -2,14 +2,23 @@
 
 package org.kframework.backend.java.kil;
 
+import com.google.common.collect.Lists;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.kframework.backend.java.builtins.BuiltinMapOperations;
 import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.utils.errorsystem.KEMException;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
 @RunWith(MockitoJUnitRunner.class)
 public class BuiltinMapTest {
 
@@ -91,4 +100,92 @@ public class BuiltinMapTest {
         Assert.assertEquals(null, resultMap);
     }
 
+    private BuiltinMap map(int... keys) {
+        BuiltinMap.Builder builder = BuiltinMap.builder(termContext.global());
+        for (int key : keys) {
+            builder.put(IntToken.of(key), IntToken.of(-key));
+        }
+        return (BuiltinMap) builder.build();
+    }
+
+    private static Map<Term, Term> hashMap(int... keys) {
+        Map<Term, Term> map = new HashMap<>();
+        for (int key : keys) {
+            map.put(IntToken.of(key), IntToken.of(-key));
+        }
+        return map;
+    }
+
+    @Test
+    public void testBuilder() throws Exception {
+        BuiltinMap.Builder builder = BuiltinMap.builder(termContext.global());
+        builder.put(IntToken.of(0), IntToken.of(1));
+        builder.put(IntToken.of(1), IntToken.of(-1));
+        builder.put(IntToken.of(2), IntToken.of(-2));
+        builder.put(IntToken.of(0), IntToken.of(0));
+        Assert.assertEquals(IntToken.of(-2), builder.remove(IntToken.of(2)));
+        Assert.assertNull(builder.remove(IntToken.of(2)));
+        BuiltinMap builtinMap = (BuiltinMap) builder.build();
+
+        Assert.assertEquals(hashMap(0, 1), builtinMap.getEntries());
+        Assert.assertEquals(map(1, 0), builtinMap);
+        Assert.assertEquals(map(1, 0).hashCode(), builtinMap.hashCode());
+        Assert.assertNotEquals(map(0, 1, 2), builtinMap);
+    }
+
+    @Test
+    public void testConcatenate() throws Exception {
+        BuiltinMap builtinMap = (BuiltinMap) BuiltinMap.concatenate(termContext.global(), map(0, 1), map(2, 3, 4));
+        Assert.assertEquals(hashMap(0, 1, 2, 3, 4), builtinMap.getEntries());
+        Assert.assertEquals(map(0, 1, 2, 3, 4), builtinMap);
+        Assert.assertEquals(map(0, 1, 2, 3, 4).hashCode(), builtinMap.hashCode());
+
+        BuiltinMap.Builder builder = BuiltinMap.builder(termContext.global());
+        builder.concatenate(map(0, 1, 2));
+        builder.update(map(2, 3));
+        Assert.assertEquals(map(0, 1, 2, 3), builder.build());
+
+        try {
+            BuiltinMap.concatenate(termContext.global(), map(0, 1), map(1, 2));
+            Assert.fail();
+        } catch (KEMException e) {
+        }
+    }
+
+    @Test
+    public void testIterationOrder() throws Exception {
+        int[] keys = new int[100];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i * 31;
+        }
+        BuiltinMap.Builder builder = BuiltinMap.builder(termContext.global());
+        builder.concatenate(map(keys));
+        builder.put(IntToken.of(-1), IntToken.of(1));
+        Map<Term, Term> entries = ((BuiltinMap) builder.build()).getEntries();
+
+        /* the entries are iterated in the order of a HashMap, which copying them into another HashMap preserves */
+        Assert.assertEquals(
+                Lists.newArrayList(new HashMap<>(entries).keySet()),
+                Lists.newArrayList(entries.keySet()));
+        Assert.assertEquals(101, entries.size());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        BuiltinMap builtinMap = map(0, 1, 2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(builtinMap);
+        }
+        BuiltinMap deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = (BuiltinMap) in.readObject();
+        }
+
+        Assert.assertEquals(builtinMap, deserialized);
+        Assert.assertEquals(builtinMap.hashCode(), deserialized.hashCode());
+        Assert.assertEquals(hashMap(0, 1, 2), deserialized.getEntries());
+        Assert.assertEquals(map(0, 1, 2, 3), BuiltinMap.concatenate(termContext.global(), deserialized, map(3)));
+    }
+
 }
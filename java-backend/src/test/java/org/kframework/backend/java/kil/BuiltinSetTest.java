@@ -0,0 +1,103 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+
+package org.kframework.backend.java.kil;
+
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kframework.backend.java.builtins.IntToken;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BuiltinSetTest {
+
+    @Mock
+    TermContext termContext;
+
+    private BuiltinSet set(int... elements) {
+        BuiltinSet.Builder builder = BuiltinSet.builder(termContext.global());
+        for (int element : elements) {
+            builder.add(IntToken.of(element));
+        }
+        return (BuiltinSet) builder.build();
+    }
+
+    private static Set<Term> hashSet(int... elements) {
+        Set<Term> set = new HashSet<>();
+        for (int element : elements) {
+            set.add(IntToken.of(element));
+        }
+        return set;
+    }
+
+    @Test
+    public void testBuilder() throws Exception {
+        BuiltinSet.Builder builder = BuiltinSet.builder(termContext.global());
+        Assert.assertTrue(builder.add(IntToken.of(0)));
+        Assert.assertFalse(builder.add(IntToken.of(0)));
+        Assert.assertTrue(builder.addAll(hashSet(1, 2)));
+        Assert.assertTrue(builder.remove(IntToken.of(2)));
+        Assert.assertFalse(builder.remove(IntToken.of(2)));
+        BuiltinSet builtinSet = (BuiltinSet) builder.build();
+
+        Assert.assertEquals(hashSet(0, 1), builtinSet.elements());
+        Assert.assertEquals(set(1, 0), builtinSet);
+        Assert.assertEquals(set(1, 0).hashCode(), builtinSet.hashCode());
+        Assert.assertNotEquals(set(0, 1, 2), builtinSet);
+    }
+
+    @Test
+    public void testConcatenate() throws Exception {
+        BuiltinSet builtinSet = (BuiltinSet) BuiltinSet.concatenate(termContext.global(), set(0, 1), set(1, 2, 3, 4));
+        Assert.assertEquals(hashSet(0, 1, 2, 3, 4), builtinSet.elements());
+        Assert.assertEquals(set(0, 1, 2, 3, 4), builtinSet);
+        Assert.assertEquals(set(0, 1, 2, 3, 4).hashCode(), builtinSet.hashCode());
+
+        BuiltinSet.Builder builder = BuiltinSet.builder(termContext.global());
+        builder.concatenate(set(0, 1, 2, 3));
+        builder.concatenate(set(5));
+        Assert.assertEquals(set(0, 1, 2, 3, 5), builder.build());
+    }
+
+    @Test
+    public void testIterationOrder() throws Exception {
+        BuiltinSet.Builder builder = BuiltinSet.builder(termContext.global());
+        for (int i = 0; i < 100; i++) {
+            builder.add(IntToken.of(i * 31));
+        }
+        Set<Term> elements = ((BuiltinSet) BuiltinSet.concatenate(termContext.global(), builder.build(), set(-1))).elements();
+
+        /* the elements are iterated in the order of a HashSet, which copying them into another HashSet preserves */
+        Assert.assertEquals(
+                Lists.newArrayList(new HashSet<>(elements)),
+                Lists.newArrayList(elements));
+        Assert.assertEquals(101, elements.size());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        BuiltinSet builtinSet = set(0, 1, 2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(builtinSet);
+        }
+        BuiltinSet deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = (BuiltinSet) in.readObject();
+        }
+
+        Assert.assertEquals(builtinSet, deserialized);
+        Assert.assertEquals(builtinSet.hashCode(), deserialized.hashCode());
+        Assert.assertEquals(hashSet(0, 1, 2), deserialized.elements());
+        Assert.assertEquals(set(0, 1, 2, 3), BuiltinSet.concatenate(termContext.global(), deserialized, set(3)));
+    }
+}
@@ -0,0 +1,188 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.kil;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.backend.java.symbolic.BuiltinFunction;
+import org.kframework.backend.java.symbolic.JavaExecutionOptions;
+import org.kframework.backend.java.symbolic.Stage;
+import org.kframework.kil.Attribute;
+import org.kframework.kil.Attributes;
+import org.kframework.krun.KRunOptions;
+import org.kframework.main.GlobalOptions;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.file.FileUtil;
+import org.kframework.utils.options.SMTOptions;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.kframework.kore.KORE.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FunctionMemoTableTest {
+
+    @Mock
+    Definition definition;
+
+    @Mock
+    TermContext context;
+
+    @Mock
+    BuiltinFunction builtins;
+
+    @Mock
+    FileUtil files;
+
+    @Mock
+    Rule rule;
+
+    private final JavaExecutionOptions javaOptions = new JavaExecutionOptions();
+    private final KExceptionManager kem = new KExceptionManager(new GlobalOptions());
+    private GlobalContext global;
+    private KLabelConstant memoLabel;
+    private KLabelConstant plainLabel;
+
+    @Before
+    public void setUp() {
+        Attributes memoAttributes = new Attributes();
+        memoAttributes.add(Attribute.of(Attribute.MEMO_KEY, ""));
+        when(definition.signaturesOf(anyString())).thenReturn(Collections.emptySet());
+        when(definition.allSorts()).thenReturn(Collections.singleton(Sort.of("Foo")));
+        when(definition.kLabelAttributesOf(anyString())).thenReturn(new Attributes());
+        when(definition.kLabelAttributesOf("memoFunction")).thenReturn(memoAttributes);
+        memoLabel = KLabelConstant.of("memoFunction", definition);
+        plainLabel = KLabelConstant.of("plainFunction", definition);
+        assertTrue(memoLabel.isMemo());
+        assertFalse(plainLabel.isMemo());
+
+        /* both functions are evaluable, and evaluated by a builtin hook */
+        when(definition.functionRulesOn(any(KLabelConstant.class))).thenReturn(ImmutableList.of(rule));
+        when(builtins.isBuiltinKLabel(any(KLabelConstant.class))).thenReturn(true);
+        when(context.definition()).thenReturn(definition);
+
+        global = new GlobalContext(null, javaOptions, new GlobalOptions(), new KRunOptions(), kem, new SMTOptions(),
+                Collections.emptyMap(), files, Stage.REWRITING);
+        global.setDefinition(definition);
+    }
+
+    private KItem.KItemOperations kItemOps() {
+        return new KItem.KItemOperations(Stage.REWRITING, javaOptions, kem, () -> builtins, new GlobalOptions());
+    }
+
+    private KItem app(KLabelConstant label, Term... arguments) {
+        return KItem.of(label, KList.concatenate(arguments), global);
+    }
+
+    /* the builtin hook evaluating the functions is declared to throw Throwable */
+    // DISABLE EXCEPTION CHECKSTYLE
+    @Test
+    public void testGroundResultReused() throws Throwable {
+        KItem.KItemOperations ops = kItemOps();
+        when(builtins.invoke(context, memoLabel, IntToken.of(1))).thenReturn(IntToken.of(2));
+
+        assertEquals(IntToken.of(2), ops.evaluateFunction(app(memoLabel, IntToken.of(1)), false, context));
+        assertEquals(IntToken.of(2), ops.evaluateFunction(app(memoLabel, IntToken.of(1)), false, context));
+        assertEquals(IntToken.of(2), ops.evaluateFunction(app(memoLabel, IntToken.of(1)), false, context));
+
+        verify(builtins, times(1)).invoke(context, memoLabel, IntToken.of(1));
+        assertEquals("[memo: 2 hits, 1 misses, 1 entries]", ops.memoTable().toString());
+    }
+
+    @Test
+    public void testFunctionWithoutMemo() throws Throwable {
+        KItem.KItemOperations ops = kItemOps();
+        when(builtins.invoke(context, plainLabel, IntToken.of(1))).thenReturn(IntToken.of(2));
+
+        assertEquals(IntToken.of(2), ops.evaluateFunction(app(plainLabel, IntToken.of(1)), false, context));
+        assertEquals(IntToken.of(2), ops.evaluateFunction(app(plainLabel, IntToken.of(1)), false, context));
+
+        verify(builtins, times(2)).invoke(context, plainLabel, IntToken.of(1));
+        assertEquals("[memo: 0 hits, 0 misses, 0 entries]", ops.memoTable().toString());
+    }
+
+    @Test
+    public void testNonGroundArgument() throws Throwable {
+        KItem.KItemOperations ops = kItemOps();
+        Variable x = new Variable("X", Sort.INT);
+        when(builtins.invoke(context, memoLabel, x)).thenReturn(IntToken.of(2));
+
+        ops.evaluateFunction(app(memoLabel, x), false, context);
+        ops.evaluateFunction(app(memoLabel, x), false, context);
+
+        verify(builtins, times(2)).invoke(context, memoLabel, x);
+        assertEquals("[memo: 0 hits, 0 misses, 0 entries]", ops.memoTable().toString());
+    }
+
+    @Test
+    public void testMutableArgument() throws Throwable {
+        KItem.KItemOperations ops = kItemOps();
+        CellCollection cells = CellCollection.empty(Sort("BagCellSort"), definition);
+        assertTrue(cells.isMutable());
+        when(builtins.invoke(context, memoLabel, cells)).thenReturn(IntToken.of(2));
+
+        ops.evaluateFunction(app(memoLabel, cells), false, context);
+        ops.evaluateFunction(app(memoLabel, cells), false, context);
+
+        verify(builtins, times(2)).invoke(context, memoLabel, cells);
+        assertEquals("[memo: 0 hits, 0 misses, 0 entries]", ops.memoTable().toString());
+    }
+
+    @Test
+    public void testNonGroundResult() throws Throwable {
+        KItem.KItemOperations ops = kItemOps();
+        Variable x = new Variable("X", Sort.INT);
+        when(builtins.invoke(context, memoLabel, IntToken.of(1))).thenReturn(x);
+
+        assertEquals(x, ops.evaluateFunction(app(memoLabel, IntToken.of(1)), false, context));
+        assertEquals(x, ops.evaluateFunction(app(memoLabel, IntToken.of(1)), false, context));
+
+        verify(builtins, times(2)).invoke(context, memoLabel, IntToken.of(1));
+        assertEquals("[memo: 0 hits, 2 misses, 0 entries]", ops.memoTable().toString());
+    }
+
+    @Test
+    public void testMutableResult() {
+        FunctionMemoTable table = new FunctionMemoTable(10);
+        KItem kItem = app(memoLabel, IntToken.of(1));
+        table.put(kItem, CellCollection.empty(Sort("BagCellSort"), definition));
+        assertNull(table.get(kItem));
+
+        /* an application which could not be evaluated is not recorded either */
+        table.put(kItem, kItem);
+        assertNull(table.get(kItem));
+        assertEquals("[memo: 0 hits, 2 misses, 0 entries]", table.toString());
+    }
+
+    @Test
+    public void testDisabled() throws Throwable {
+        javaOptions.memoCacheSize = 0;
+        KItem.KItemOperations ops = kItemOps();
+        assertNull(ops.memoTable());
+        when(builtins.invoke(context, memoLabel, IntToken.of(1))).thenReturn(IntToken.of(2));
+
+        assertEquals(IntToken.of(2), ops.evaluateFunction(app(memoLabel, IntToken.of(1)), false, context));
+        assertEquals(IntToken.of(2), ops.evaluateFunction(app(memoLabel, IntToken.of(1)), false, context));
+
+        verify(builtins, times(2)).invoke(context, memoLabel, IntToken.of(1));
+    }
+    // ENABLE EXCEPTION CHECKSTYLE
+
+    @Test
+    public void testEviction() {
+        FunctionMemoTable table = new FunctionMemoTable(1);
+        KItem first = app(memoLabel, IntToken.of(1));
+        KItem second = app(memoLabel, IntToken.of(2));
+        table.put(first, IntToken.of(2));
+        table.put(second, IntToken.of(3));
+
+        assertNull(table.get(first));
+        assertEquals(IntToken.of(3), table.get(second));
+    }
+}
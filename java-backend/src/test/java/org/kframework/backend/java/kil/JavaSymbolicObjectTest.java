@@ -34,14 +34,14 @@ public class JavaSymbolicObjectTest extends BaseTestCase {
         KItem k1 = new KItem(KLabelConstant.of("foo", definition), KList.EMPTY, Sort.of("bar"), true);
         assertEquals(Collections.emptySet(), k1.variableSet());
         assertEquals(Collections.emptySet(), k1.variableSet);
-        assertEquals(Collections.emptySet(), k1.kLabel().variableSet);
-        assertEquals(Collections.emptySet(), k1.kList().variableSet);
+        assertEquals(Collections.emptySet(), k1.kLabel().variableSet());
+        assertEquals(Collections.emptySet(), k1.kList().variableSet());
 
         Variable v2 = new Variable("bar", Sort.of("baz"));
         KItem k2 = new KItem(KLabelConstant.of("foo", definition), v2, Sort.of("bar"), true);
         assertEquals(Collections.singleton(v2), k2.variableSet());
         assertEquals(Collections.singleton(v2), k2.variableSet);
-        assertEquals(Collections.emptySet(), k2.kLabel().variableSet);
+        assertEquals(Collections.emptySet(), k2.kLabel().variableSet());
         assertEquals(Collections.singleton(v2), k2.kList().variableSet);
 
         Variable v3 = new Variable("baz", Sort.of("baz"));
@@ -49,14 +49,14 @@ public class JavaSymbolicObjectTest extends BaseTestCase {
         KItem k3 = new KItem(KLabelConstant.of("foo", definition), list, Sort.of("bar"), true);
         assertEquals(Sets.newHashSet(v2, v3), k3.variableSet());
         assertEquals(Sets.newHashSet(v2, v3), k3.variableSet);
-        assertEquals(Collections.emptySet(), k3.kLabel().variableSet);
+        assertEquals(Collections.emptySet(), k3.kLabel().variableSet());
         assertSame(list, k3.kList());
         assertEquals(Sets.newHashSet(v2, v3), list.variableSet);
         assertSame(v3, list.get(0));
         assertSame(k2, list.get(1));
         assertEquals(Collections.singleton(v3), v3.variableSet);
         assertEquals(Collections.singleton(v2), k2.variableSet);
-        assertEquals(Collections.emptySet(), k2.kLabel().variableSet);
+        assertEquals(Collections.emptySet(), k2.kLabel().variableSet());
         assertEquals(Collections.singleton(v2), k2.kList().variableSet);
     }
 
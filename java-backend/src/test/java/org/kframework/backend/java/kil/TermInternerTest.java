@@ -0,0 +1,143 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.kil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kframework.attributes.Location;
+import org.kframework.attributes.Source;
+import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.backend.java.symbolic.JavaExecutionOptions;
+import org.kframework.backend.java.symbolic.Stage;
+import org.kframework.kil.Attributes;
+import org.kframework.krun.KRunOptions;
+import org.kframework.main.GlobalOptions;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.file.FileUtil;
+import org.kframework.utils.options.SMTOptions;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.BitSet;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TermInternerTest {
+
+    @Mock
+    Definition definition;
+
+    @Mock
+    FileUtil files;
+
+    private KLabelConstant f;
+    private KLabelConstant g;
+
+    @Before
+    public void setUp() {
+        when(definition.signaturesOf(anyString())).thenReturn(Collections.emptySet());
+        when(definition.allSorts()).thenReturn(Collections.singleton(Sort.of("Foo")));
+        when(definition.kLabelAttributesOf(anyString())).thenReturn(new Attributes());
+        f = KLabelConstant.of("f", definition);
+        g = KLabelConstant.of("g", definition);
+    }
+
+    private GlobalContext global(boolean hashConsing) {
+        JavaExecutionOptions javaOptions = new JavaExecutionOptions();
+        javaOptions.hashConsing = hashConsing;
+        KExceptionManager kem = new KExceptionManager(new GlobalOptions());
+        GlobalContext global = new GlobalContext(null, javaOptions, new GlobalOptions(), new KRunOptions(), kem,
+                new SMTOptions(), Collections.emptyMap(), files, Stage.REWRITING);
+        global.setDefinition(definition);
+        return global;
+    }
+
+    /**
+     * Builds {@code f(1, g(2), child)}.
+     */
+    private KItem term(GlobalContext global, Term child) {
+        return KItem.of(f, KList.concatenate(IntToken.of(1), KItem.of(g, IntToken.of(2), global), child), global);
+    }
+
+    private static void assertConsistent(Term interned, Term term) {
+        assertEquals(interned, term);
+        assertEquals(term, interned);
+        assertEquals(interned.hashCode(), term.hashCode());
+    }
+
+    @Test
+    public void testGroundTermsShared() {
+        GlobalContext global = global(true);
+        KItem first = term(global, IntToken.of(3));
+        KItem second = term(global, IntToken.of(3));
+
+        assertSame(first, second);
+        assertSame(first.kList(), second.kList());
+        assertSame(((KList) first.kList()).get(1), ((KList) second.kList()).get(1));
+        assertNotEquals(first, term(global, IntToken.of(4)));
+        assertNotSame(first, term(global, IntToken.of(4)));
+    }
+
+    @Test
+    public void testHashConsingDisabled() {
+        GlobalContext global = global(false);
+        assertNull(global.interner);
+        KItem first = term(global, IntToken.of(3));
+        KItem second = term(global, IntToken.of(3));
+
+        assertNotSame(first, second);
+        assertConsistent(first, second);
+    }
+
+    @Test
+    public void testNonGroundTermNotShared() {
+        GlobalContext global = global(true);
+        Variable x = new Variable("X", Sort.of("Foo"));
+        KItem first = term(global, x);
+        KItem second = term(global, x);
+
+        assertNotSame(first, second);
+        assertConsistent(first, second);
+    }
+
+    @Test
+    public void testLocatedTermNotInterned() {
+        GlobalContext global = global(true);
+        KItem interned = term(global, IntToken.of(3));
+        KItem located = KItem.of(f, interned.kList(), global, Source.apply("test"), new Location(1, 1, 1, 2));
+
+        assertNotSame(interned, located);
+        assertConsistent(interned, located);
+
+        /* a term with a child which is not interned is not interned either */
+        KItem parent = KItem.of(g, located, global);
+        assertNotSame(parent, KItem.of(g, interned, global));
+        assertConsistent(KItem.of(g, interned, global), parent);
+    }
+
+    @Test
+    public void testDontCareMaskNotInterned() {
+        GlobalContext global = global(true);
+        KItem interned = term(global, IntToken.of(3));
+        KItem masked = KItem.of(f, (KList) interned.kList(), global, new BitSet[] {new BitSet(), new BitSet(), new BitSet()});
+
+        assertNotSame(interned, masked);
+        assertConsistent(interned, masked);
+        assertSame(interned, term(global, IntToken.of(3)));
+    }
+
+    @Test
+    public void testTermsOfDistinctTables() {
+        KItem first = term(global(true), IntToken.of(3));
+        KItem second = term(global(true), IntToken.of(3));
+        KItem plain = term(global(false), IntToken.of(3));
+
+        /* each table shares its own terms, which stay equal to the terms of the other tables */
+        assertNotSame(first, second);
+        assertConsistent(first, second);
+        assertConsistent(first, plain);
+    }
+}
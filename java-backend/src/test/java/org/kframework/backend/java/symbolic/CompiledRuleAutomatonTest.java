@@ -0,0 +1,260 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.backend.java.compile.KOREtoBackendKIL;
+import org.kframework.backend.java.kil.Definition;
+import org.kframework.backend.java.kil.GlobalContext;
+import org.kframework.backend.java.kil.InnerRHSRewrite;
+import org.kframework.backend.java.kil.KCollection;
+import org.kframework.backend.java.kil.KItem;
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.KList;
+import org.kframework.backend.java.kil.Kind;
+import org.kframework.backend.java.kil.Rule;
+import org.kframework.backend.java.kil.RuleAutomatonDisjunction;
+import org.kframework.backend.java.kil.Sort;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.TermContext;
+import org.kframework.backend.java.kil.Variable;
+import org.kframework.backend.java.util.Subsorts;
+import org.kframework.builtin.KLabels;
+import org.kframework.kil.Attributes;
+import org.kframework.krun.KRunOptions;
+import org.kframework.main.GlobalOptions;
+import org.kframework.utils.BitSet;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.file.FileUtil;
+import org.kframework.utils.options.SMTOptions;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CompiledRuleAutomatonTest {
+
+    private static final int RULE_COUNT = 6;
+    private static final Sort FOO = Sort.of("Foo");
+
+    @Mock
+    Definition definition;
+
+    @Mock
+    Subsorts subsorts;
+
+    @Mock
+    TermContext context;
+
+    @Mock
+    FileUtil files;
+
+    private GlobalContext global;
+    private KLabelConstant f;
+    private KLabelConstant g;
+    private KLabelConstant h;
+    private Term pattern;
+
+    @Before
+    public void setUp() throws ReflectiveOperationException {
+        when(definition.signaturesOf(anyString())).thenReturn(Collections.emptySet());
+        when(definition.allSorts()).thenReturn(ImmutableSet.of(FOO, Sort.INT));
+        when(definition.kLabelAttributesOf(anyString())).thenReturn(new Attributes());
+        when(definition.subsorts()).thenReturn(subsorts);
+        when(subsorts.isSubsortedEq(FOO, FOO)).thenReturn(true);
+        when(subsorts.isSubsortedEq(Sort.INT, Sort.INT)).thenReturn(true);
+
+        /* the rules have no side conditions, so every match is a solution; the rule table is a
+         * final field, which the mock does not initialize */
+        Map<Integer, Rule> ruleTable = new HashMap<>();
+        for (int i = 0; i < RULE_COUNT; ++i) {
+            ruleTable.put(i, rule());
+        }
+        Field ruleTableField = Definition.class.getDeclaredField("ruleTable");
+        ruleTableField.setAccessible(true);
+        ruleTableField.set(definition, ruleTable);
+
+        global = new GlobalContext(null, new JavaExecutionOptions(), new GlobalOptions(), new KRunOptions(),
+                new KExceptionManager(new GlobalOptions()), new SMTOptions(), Collections.emptyMap(), files,
+                Stage.REWRITING);
+        global.setDefinition(definition);
+
+        f = KLabelConstant.of("f", definition);
+        g = KLabelConstant.of("g", definition);
+        h = KLabelConstant.of("h", definition);
+        pattern = pattern();
+    }
+
+    private static Rule rule() {
+        Rule rule = mock(Rule.class);
+        ConjunctiveFormula lookups = mock(ConjunctiveFormula.class);
+        when(lookups.equalities()).thenReturn(PersistentUniqueList.empty());
+        when(rule.lookups()).thenReturn(lookups);
+        when(rule.requires()).thenReturn(ImmutableList.of());
+        when(rule.freshConstants()).thenReturn(ImmutableSet.of());
+        return rule;
+    }
+
+    /**
+     * Merges the left-hand sides of the following rules:
+     * <ol start="0">
+     * <li>{@code f(X:Int, g(1) => h(X))}</li>
+     * <li>{@code f(Y:Int, g(Y) => h(Y))}</li>
+     * <li>{@code 5}</li>
+     * <li>{@code W:Foo}</li>
+     * <li>{@code V:Foo ~> _}</li>
+     * <li>{@code f(_:Int, _:Foo)}</li>
+     * </ol>
+     */
+    private Term pattern() {
+        Variable x = new Variable("X", Sort.INT);
+        Variable y = new Variable("Y", Sort.INT);
+
+        Term[] rhs = new Term[RULE_COUNT];
+        rhs[0] = app(h, x);
+        rhs[1] = app(h, y);
+        Term rewrite = app(
+                KLabelConstant.of(KLabels.KREWRITE, definition),
+                disjunction(
+                        Pair.of(app(g, disjunction(Pair.of(IntToken.of(1), rules(0)), Pair.of(y, rules(1)))), rules(0, 1)),
+                        Pair.of(new Variable(KOREtoBackendKIL.THE_VARIABLE, FOO), rules(5))),
+                new InnerRHSRewrite(rhs));
+        Term fPattern = KItem.of(
+                f,
+                (KList) KCollection.upKind(KList.concatenate(
+                        disjunction(
+                                Pair.of(x, rules(0)),
+                                Pair.of(y, rules(1)),
+                                Pair.of(new Variable(KOREtoBackendKIL.THE_VARIABLE, Sort.INT), rules(5))),
+                        rewrite), Kind.KLIST),
+                global,
+                new BitSet[] {rules(5), rules(5)});
+        Term kSeqPattern = app(
+                KLabelConstant.of(KLabels.KSEQ, definition),
+                new Variable("V", FOO),
+                new Variable(KOREtoBackendKIL.THE_VARIABLE, Sort.KSEQUENCE));
+
+        return disjunction(
+                Pair.of(fPattern, rules(0, 1, 5)),
+                Pair.of(IntToken.of(5), rules(2)),
+                Pair.of(new Variable("W", FOO), rules(3)),
+                Pair.of(kSeqPattern, rules(4)));
+    }
+
+    private static BitSet rules(int... indices) {
+        BitSet bitSet = BitSet.apply(RULE_COUNT);
+        for (int i : indices) {
+            bitSet.set(i);
+        }
+        return bitSet;
+    }
+
+    @SafeVarargs
+    private final RuleAutomatonDisjunction disjunction(Pair<Term, BitSet>... children) {
+        return new RuleAutomatonDisjunction(ImmutableList.copyOf(children), global);
+    }
+
+    private static KItem app(KLabelConstant kLabel, Term... children) {
+        return new KItem(kLabel, KCollection.upKind(KList.concatenate(children), Kind.KLIST), FOO, true);
+    }
+
+    /**
+     * Asserts that the compiled automaton computes the same matches, substitutions and rewrites as
+     * the interpreted one.
+     */
+    private void assertEquivalent(Term subject, BitSet ruleMask, int... expectedRules) {
+        FastRuleMatcher interpreter = new FastRuleMatcher(global, RULE_COUNT);
+        FastRuleMatcher matcher = new FastRuleMatcher(global, RULE_COUNT);
+        CompiledRuleAutomaton automaton = CompiledRuleAutomaton.compile(pattern, definition);
+
+        List<Pair<Substitution<Variable, Term>, Integer>> expected = interpreter.mainMatch(subject, pattern, ruleMask, false, context);
+        List<Pair<Substitution<Variable, Term>, Integer>> actual = matcher.mainMatch(subject, automaton, ruleMask, false, context);
+
+        assertEquals(expected, actual);
+        assertArrayEquals(expectedRules, actual.stream().mapToInt(Pair::getRight).toArray());
+        for (int i = 0; i < RULE_COUNT; ++i) {
+            assertEquals(interpreter.getRewrite(i), matcher.getRewrite(i));
+        }
+    }
+
+    private void assertEquivalent(Term subject, int... expectedRules) {
+        assertEquivalent(subject, rules(0, 1, 2, 3, 4, 5), expectedRules);
+    }
+
+    @Test
+    public void testKItems() {
+        assertEquivalent(app(f, IntToken.of(1), app(g, IntToken.of(1))), 0, 1, 3, 4, 5);
+        assertEquivalent(app(f, IntToken.of(3), app(g, IntToken.of(1))), 0, 3, 4, 5);
+        assertEquivalent(app(f, IntToken.of(3), app(g, IntToken.of(2))), 3, 4, 5);
+        assertEquivalent(app(f, IntToken.of(3), app(h, IntToken.of(1))), 3, 4, 5);
+        assertEquivalent(app(f, IntToken.of(3)), 3, 4);
+        assertEquivalent(app(h, IntToken.of(3)), 3, 4);
+    }
+
+    @Test
+    public void testRewrites() {
+        FastRuleMatcher matcher = new FastRuleMatcher(global, RULE_COUNT);
+        CompiledRuleAutomaton automaton = CompiledRuleAutomaton.compile(pattern, definition);
+        matcher.mainMatch(app(f, IntToken.of(3), app(g, IntToken.of(1))), automaton, rules(0, 1, 2, 3, 4, 5), false, context);
+
+        assertEquals(
+                Collections.singletonMap(org.kframework.Collections.List(1), app(h, new Variable("X", Sort.INT))),
+                matcher.getRewrite(0));
+        assertEquals(Collections.emptyMap(), matcher.getRewrite(1));
+        assertEquals(Collections.emptyMap(), matcher.getRewrite(5));
+    }
+
+    @Test
+    public void testTokens() {
+        assertEquivalent(IntToken.of(5), 2);
+        assertEquivalent(IntToken.of(6));
+    }
+
+    @Test
+    public void testRuleMask() {
+        Term subject = app(f, IntToken.of(1), app(g, IntToken.of(1)));
+        assertEquivalent(subject, rules(1, 2), 1);
+        assertEquivalent(subject, rules(2));
+
+        /* both children of f only match "don't care" variables in rule 5 */
+        assertEquivalent(subject, rules(5), 5);
+        assertEquivalent(app(f, IntToken.of(3), app(h, IntToken.of(1))), rules(0, 5), 5);
+    }
+
+    @Test
+    public void testReusedMatcher() {
+        FastRuleMatcher interpreter = new FastRuleMatcher(global, RULE_COUNT);
+        FastRuleMatcher matcher = new FastRuleMatcher(global, RULE_COUNT);
+        CompiledRuleAutomaton automaton = CompiledRuleAutomaton.compile(pattern, definition);
+        Term[] subjects = {
+                app(f, IntToken.of(1), app(g, IntToken.of(1))),
+                IntToken.of(5),
+                app(f, IntToken.of(3), app(g, IntToken.of(1))),
+                app(f, IntToken.of(3), app(g, IntToken.of(3)))};
+
+        /* the state left over from the previous matches must not leak into the next ones */
+        for (int pass = 0; pass < 2; ++pass) {
+            for (Term subject : subjects) {
+                assertEquals(
+                        interpreter.mainMatch(subject, pattern, rules(0, 1, 2, 3, 4, 5), false, context),
+                        matcher.mainMatch(subject, automaton, rules(0, 1, 2, 3, 4, 5), false, context));
+                for (int i = 0; i < RULE_COUNT; ++i) {
+                    assertEquals(interpreter.getRewrite(i), matcher.getRewrite(i));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.backend.java.kil.KList;
+import org.kframework.backend.java.kil.Sort;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.Variable;
+import org.kframework.main.GlobalOptions;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.file.FileUtil;
+import org.kframework.utils.options.SMTOptions;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SMTCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    FileUtil files;
+
+    private final SMTOptions options = new SMTOptions();
+    private final KExceptionManager kem = new KExceptionManager(new GlobalOptions());
+
+    private SMTCache cache() {
+        return new SMTCache(options, files, kem);
+    }
+
+    private static List<Object> key(Object... formulas) {
+        return ImmutableList.copyOf(formulas);
+    }
+
+    private static Term canonical(Term term) {
+        return term.substituteWithBinders(SMTCache.canonicalRenaming(term));
+    }
+
+    @Test
+    public void testCanonicalRenaming() {
+        Variable x = new Variable("X", Sort.INT);
+        Variable y = new Variable("Y", Sort.INT);
+        Variable z = new Variable("Z", Sort.INT);
+        Term xy = KList.concatenate(x, IntToken.of(1), y, x);
+        Term zx = KList.concatenate(z, IntToken.of(1), x, z);
+        Term xx = KList.concatenate(x, IntToken.of(1), x, x);
+
+        assertNotEquals(xy, zx);
+        assertEquals(canonical(xy), canonical(zx));
+        assertEquals(canonical(xy).hashCode(), canonical(zx).hashCode());
+        assertNotEquals(canonical(xy), canonical(xx));
+        assertEquals(2, SMTCache.canonicalRenaming(xy).size());
+        assertFalse(canonical(xy).variableSet().contains(x));
+    }
+
+    @Test
+    public void testCanonicalRenamingAcrossObjects() {
+        Variable x = new Variable("X", Sort.INT);
+        Variable y = new Variable("Y", Sort.INT);
+        Variable z = new Variable("Z", Sort.INT);
+
+        /* the variables shared by the objects are renamed consistently */
+        assertEquals(SMTCache.canonicalRenaming(x, y).get(y), SMTCache.canonicalRenaming(z, x).get(x));
+        assertEquals(SMTCache.canonicalRenaming(x, y).get(x), SMTCache.canonicalRenaming(z, x).get(z));
+    }
+
+    @Test
+    public void testFormulaLevelHit() {
+        SMTCache cache = cache();
+        assertNull(cache.get(key("a"), 10));
+        cache.put(key("a"), "(assert a)", 10, true);
+
+        assertEquals(Boolean.TRUE, cache.get(key("a"), 10));
+        assertNull(cache.get(key("a"), 20));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void testQueryLevelHit() {
+        SMTCache cache = cache();
+        cache.put(key("a"), "(assert a)", 10, false);
+
+        /* different formulas translated to the same query */
+        assertNull(cache.get(key("b"), 10));
+        assertEquals(Boolean.FALSE, cache.get(key("b"), "(assert a)", 10));
+        assertNull(cache.get(key("b"), "(assert b)", 10));
+        assertEquals(1, cache.hitCount());
+
+        /* the query-level hit is promoted to the formula level */
+        assertEquals(Boolean.FALSE, cache.get(key("b"), 10));
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void testUndecidedQuery() {
+        SMTCache cache = cache();
+        cache.put(key("a"), "(assert a)", 10, null);
+
+        assertNull(cache.get(key("a"), 10));
+        assertNull(cache.get(key("a"), "(assert a)", 10));
+        assertEquals(0, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void testPersistentCache() throws Exception {
+        File cacheFile = new File(folder.getRoot(), "smt-cache.bin");
+        when(files.resolveKompiled("smt-cache.bin")).thenReturn(cacheFile);
+        options.smtPersistentCache = true;
+
+        SMTCache cache = cache();
+        cache.put(key("a"), "(assert a)", 10, true);
+        cache.put(key("b"), "(assert b)", 10, null);
+        cache.save();
+
+        cache = cache();
+        assertNull(cache.get(key("a"), 10));
+        assertEquals(Boolean.TRUE, cache.get(key("a"), "(assert a)", 10));
+        assertNull(cache.get(key("a"), "(assert a)", 20));
+        assertNull(cache.get(key("b"), "(assert b)", 10));
+    }
+}
@@ -0,0 +1,75 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import static org.junit.Assert.*;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PersistentListTest {
+
+    @Test
+    public void testPlusAndGet() {
+        PersistentList<Integer> list = PersistentList.empty();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list = list.plus(i);
+            expected.add(i);
+        }
+        assertEquals(expected, list);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), list.get(i));
+        }
+        assertEquals(expected.hashCode(), list.hashCode());
+    }
+
+    @Test
+    public void testConcatAndSubList() {
+        Random random = new Random(0);
+        List<PersistentList<Integer>> lists = new ArrayList<>();
+        List<List<Integer>> expectedLists = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            List<Integer> expected = new ArrayList<>();
+            int size = random.nextInt(100);
+            for (int j = 0; j < size; j++) {
+                expected.add(random.nextInt());
+            }
+            lists.add(PersistentList.from(expected));
+            expectedLists.add(expected);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            int first = random.nextInt(lists.size());
+            int second = random.nextInt(lists.size());
+            PersistentList<Integer> list = lists.get(first).concat(lists.get(second));
+            List<Integer> expected = new ArrayList<>(expectedLists.get(first));
+            expected.addAll(expectedLists.get(second));
+            assertEquals(expected, list);
+
+            int fromIndex = random.nextInt(expected.size() + 1);
+            int toIndex = fromIndex + random.nextInt(expected.size() - fromIndex + 1);
+            lists.add(list.subList(fromIndex, toIndex));
+            expectedLists.add(new ArrayList<>(expected.subList(fromIndex, toIndex)));
+            assertEquals(expectedLists.get(expectedLists.size() - 1), lists.get(lists.size() - 1));
+        }
+    }
+
+    @Test
+    public void testEquals() {
+        PersistentList<String> list = PersistentList.from(ImmutableList.of("a", "b", "c"));
+        assertEquals(ImmutableList.of("a", "b", "c"), list);
+        assertEquals(list, ImmutableList.of("a", "b", "c"));
+        assertEquals(list, PersistentList.<String>empty().plus("a").plus("b").plus("c"));
+        assertNotEquals(list, list.subList(0, 2));
+        assertEquals(PersistentList.empty(), list.subList(1, 1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        PersistentList.from(ImmutableList.of(1, 2)).get(2);
+    }
+}
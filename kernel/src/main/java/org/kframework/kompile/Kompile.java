@@ -18,6 +18,7 @@ import org.kframework.definition.Context;
 import org.kframework.definition.Definition;
 import org.kframework.definition.DefinitionTransformer;
 import org.kframework.definition.Module;
+import org.kframework.definition.ModuleTransformer;
 import org.kframework.definition.Rule;
 import org.kframework.definition.Sentence;
 import org.kframework.kore.K;
@@ -28,6 +29,7 @@ import org.kframework.main.GlobalOptions;
 import org.kframework.parser.TreeNodesToKORE;
 import org.kframework.parser.concrete2kore.ParseCache;
 import org.kframework.parser.concrete2kore.ParseCache.ParsedSentence;
+import org.kframework.parser.concrete2kore.ParseCacheStore;
 import org.kframework.parser.concrete2kore.ParseInModule;
 import org.kframework.parser.concrete2kore.ParserUtils;
 import org.kframework.parser.concrete2kore.generator.RuleGrammarGenerator;
@@ -51,6 +53,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -85,6 +88,19 @@ public class Kompile {
     private final AtomicInteger parsedBubbles = new AtomicInteger(0);
     private final AtomicInteger cachedBubbles = new AtomicInteger(0);
 
+    /**
+     * The modules produced by the cached stages of the pipeline, by stage and by the digest of the module given to
+     * the stage, in the previous kompile of the definition and in the current one; see
+     * {@link #cached(ModuleTransformer, String)}. Stages are named after the build of K which ran them, so the modules
+     * produced by another build are never reused.
+     */
+    private Map<String, Map<String, Module>> previousStages = new HashMap<>();
+    private final Map<String, Map<String, Module>> stages = new ConcurrentHashMap<>();
+    private final ModuleDigest digests = new ModuleDigest();
+    private final Optional<String> buildStamp = JarInfo.getBuildStamp();
+    private final AtomicInteger transformedModules = new AtomicInteger(0);
+    private final AtomicInteger cachedModules = new AtomicInteger(0);
+
     public Kompile(KompileOptions kompileOptions, FileUtil files, KExceptionManager kem, Stopwatch sw, boolean cacheParses) {
         this(kompileOptions, kompileOptions.global, files, kem, sw, cacheParses);
     }
@@ -129,9 +145,23 @@ public class Kompile {
     public CompiledDefinition run(File definitionFile, String mainModuleName, String mainProgramsModuleName, Sort programStartSymbol, Function<Definition, Definition> pipeline) {
         Definition parsedDef = parseDefinition(definitionFile, mainModuleName, mainProgramsModuleName, true);
         sw.printIntermediate("Parse definition [" + parsedBubbles.get() + "/" + (parsedBubbles.get() + cachedBubbles.get()) + " rules]");
+        new CheckMemoFunctions().check(parsedDef.mainModule());
+
+        if (cacheParses && buildStamp.isPresent()) {
+            try {
+                previousStages = loader.load(Map.class, files.resolveKompiled("stages.bin"));
+            } catch (FileNotFoundException e) {
+            } catch (IOException | ClassNotFoundException e) {
+                kem.registerInternalHiddenWarning("Invalidating serialized cache due to corruption.", e);
+            }
+        }
 
         Definition kompiledDefinition = pipeline.apply(parsedDef);
-        sw.printIntermediate("Apply compile pipeline");
+        sw.printIntermediate("Apply compile pipeline [" + transformedModules.get() + "/" + (transformedModules.get() + cachedModules.get()) + " modules]");
+
+        if (cacheParses && buildStamp.isPresent()) {
+            loader.saveOrDie(files.resolveKompiled("stages.bin"), new HashMap<>(stages));
+        }
 
         ConfigurationInfoFromModule configInfo = new ConfigurationInfoFromModule(kompiledDefinition.mainModule());
 
@@ -139,13 +169,14 @@ public class Kompile {
     }
 
     public Function<Definition, Definition> defaultSteps() {
-        DefinitionTransformer resolveStrict = DefinitionTransformer.from(new ResolveStrict(kompileOptions)::resolve, "resolving strict and seqstrict attributes");
+        DefinitionTransformer resolveStrict = cached(ModuleTransformer.from(new ResolveStrict(kompileOptions)::resolve, "resolving strict and seqstrict attributes"), "strict=" + kompileOptions.strict());
         DefinitionTransformer resolveContexts = DefinitionTransformer.from(new ResolveContexts(kompileOptions)::resolve, "resolving context sentences");
-        DefinitionTransformer resolveHeatCoolAttribute = DefinitionTransformer.fromSentenceTransformer(new ResolveHeatCoolAttribute()::resolve, "resolving heat and cool attributes");
-        DefinitionTransformer resolveAnonVars = DefinitionTransformer.fromSentenceTransformer(new ResolveAnonVar()::resolve, "resolving \"_\" vars");
+        DefinitionTransformer resolveHeatCoolAttribute = cached(ModuleTransformer.fromSentenceTransformer(new ResolveHeatCoolAttribute()::resolve, "resolving heat and cool attributes"));
+        DefinitionTransformer resolveAnonVars = cached(ModuleTransformer.fromSentenceTransformer(new ResolveAnonVar()::resolve, "resolving \"_\" vars"));
+        boolean skipSortPredicates = kompileOptions.backend.equals(Backends.JAVA);
         DefinitionTransformer resolveSemanticCasts =
-                DefinitionTransformer.fromSentenceTransformer(new ResolveSemanticCasts(kompileOptions.backend.equals(Backends.JAVA))::resolve, "resolving semantic casts");
-        DefinitionTransformer generateSortPredicateSyntax = DefinitionTransformer.from(new GenerateSortPredicateSyntax()::gen, "adding sort predicate productions");
+                cached(ModuleTransformer.fromSentenceTransformer(new ResolveSemanticCasts(skipSortPredicates)::resolve, "resolving semantic casts"), "skipSortPredicates=" + skipSortPredicates);
+        DefinitionTransformer generateSortPredicateSyntax = cached(ModuleTransformer.from(new GenerateSortPredicateSyntax()::gen, "adding sort predicate productions"));
 
         return def -> func(this::resolveIOStreams)
                 .andThen(resolveStrict)
@@ -162,6 +193,38 @@ public class Kompile {
                 .apply(def);
     }
 
+    public DefinitionTransformer cached(ModuleTransformer transformer) {
+        return cached(transformer, "");
+    }
+
+    /**
+     * Returns the given transformer, reusing the modules it produced in the previous kompile of the definition.
+     * The result of the transformer on a module must only depend on that module, which includes its imports, and on
+     * the given key. Then, after an edit, only the edited module and the modules importing it are transformed again.
+     * Modules are looked up by their {@link ModuleDigest digest}, which unlike module equality covers attributes, so
+     * e.g. changing the sort of a variable is an edit. Nothing is reused in an internal build of K, since the
+     * transformer itself may have changed since the previous kompile.
+     */
+    public DefinitionTransformer cached(ModuleTransformer transformer, String key) {
+        if (!cacheParses || !buildStamp.isPresent()) {
+            return new DefinitionTransformer(transformer);
+        }
+        String stage = buildStamp.get() + ": " + (key.isEmpty() ? transformer.name() : transformer.name() + " [" + key + "]");
+        Map<String, Module> stageModules = stages.computeIfAbsent(stage, s -> new ConcurrentHashMap<>());
+        return new DefinitionTransformer(transformer.cached(func((Module input, scala.Function1<Module, Module> f) -> {
+            String digest = digests.digest(input);
+            Module output = previousStages.getOrDefault(stage, java.util.Collections.emptyMap()).get(digest);
+            if (output == null) {
+                output = f.apply(input);
+                transformedModules.incrementAndGet();
+            } else {
+                cachedModules.incrementAndGet();
+            }
+            stageModules.put(digest, output);
+            return output;
+        })));
+    }
+
     public Definition resolveIOStreams(Definition d) {
         return DefinitionTransformer.from(new ResolveIOStreams(d)::resolve, "resolving io streams").apply(d);
     }
@@ -221,26 +284,22 @@ public class Kompile {
         Module module = modules.iterator().next();
 
         errors = java.util.Collections.synchronizedSet(Sets.newHashSet());
-        caches = new HashMap<>();
-
-        if (cacheParses) {
-            try {
-                caches = loader.load(Map.class, files.resolveKompiled("cache.bin"));
-            } catch (FileNotFoundException e) {
-            } catch (IOException | ClassNotFoundException e) {
-                kem.registerInternalHiddenWarning("Invalidating serialized cache due to corruption.", e);
+        caches = new ParseCacheStore(cacheParses ? files.resolveKompiled("parse-cache") : null, kem);
+
+        Module parsedMod = null;
+        try {
+            gen = new RuleGrammarGenerator(definition.getParsedDefinition(), kompileOptions.strict());
+            Module modWithConfig = resolveConfig(module, definition.getParsedDefinition());
+
+            gen = new RuleGrammarGenerator(definition.getParsedDefinition(), kompileOptions.strict());
+            parsedMod = resolveBubbles(modWithConfig);
+        } finally {
+            if (parsedMod == null) {
+                caches.release();
+            } else {
+                caches.close(false);
             }
         }
-
-        gen = new RuleGrammarGenerator(definition.getParsedDefinition(), kompileOptions.strict());
-        Module modWithConfig = resolveConfig(module, definition.getParsedDefinition());
-
-        gen = new RuleGrammarGenerator(definition.getParsedDefinition(), kompileOptions.strict());
-        Module parsedMod = resolveBubbles(modWithConfig);
-
-        if (cacheParses) {
-            loader.saveOrDie(files.resolveKompiled("cache.bin"), caches);
-        }
         if (!errors.isEmpty()) {
             kem.addAllKException(errors.stream().map(e -> e.getKException()).collect(Collectors.toList()));
             throw KEMException.compilerError("Had " + errors.size() + " parsing errors.");
@@ -284,26 +343,22 @@ public class Kompile {
         }
 
         errors = java.util.Collections.synchronizedSet(Sets.newHashSet());
-        caches = new HashMap<>();
-
-        if (cacheParses) {
-            try {
-                caches = loader.load(Map.class, files.resolveKompiled("cache.bin"));
-            } catch (FileNotFoundException e) {
-            } catch (IOException | ClassNotFoundException e) {
-                kem.registerInternalHiddenWarning("Invalidating serialized cache due to corruption.", e);
+        caches = new ParseCacheStore(cacheParses ? files.resolveKompiled("parse-cache") : null, kem);
+
+        Definition parsedDef = null;
+        try {
+            gen = new RuleGrammarGenerator(definitionWithConfigBubble, kompileOptions.strict());
+            Definition defWithConfig = DefinitionTransformer.from(m -> resolveConfig(m, definitionWithConfigBubble), "parsing configurations").apply(definitionWithConfigBubble);
+
+            gen = new RuleGrammarGenerator(defWithConfig, kompileOptions.strict());
+            parsedDef = DefinitionTransformer.from(this::resolveBubbles, "parsing rules").apply(defWithConfig);
+        } finally {
+            if (parsedDef == null) {
+                caches.release();
+            } else {
+                caches.close(true);
             }
         }
-
-        gen = new RuleGrammarGenerator(definitionWithConfigBubble, kompileOptions.strict());
-        Definition defWithConfig = DefinitionTransformer.from(m -> resolveConfig(m, definitionWithConfigBubble), "parsing configurations").apply(definitionWithConfigBubble);
-
-        gen = new RuleGrammarGenerator(defWithConfig, kompileOptions.strict());
-        Definition parsedDef = DefinitionTransformer.from(this::resolveBubbles, "parsing rules").apply(defWithConfig);
-
-        if (cacheParses) {
-            loader.saveOrDie(files.resolveKompiled("cache.bin"), caches);
-        }
         if (!errors.isEmpty()) {
             kem.addAllKException(errors.stream().map(e -> e.getKException()).collect(Collectors.toList()));
             throw KEMException.compilerError("Had " + errors.size() + " parsing errors.");
@@ -311,7 +366,7 @@ public class Kompile {
         return parsedDef;
     }
 
-    Map<String, ParseCache> caches;
+    ParseCacheStore caches;
     java.util.Set<ParseFailedException> errors;
     RuleGrammarGenerator gen;
 
@@ -331,7 +386,7 @@ public class Kompile {
                 .filter(s -> s instanceof Bubble)
                 .map(b -> (Bubble) b)
                 .filter(b -> b.sentenceType().equals("config"))
-                .flatMap(b -> performParse(cache.getCache(), parser, b))
+                .flatMap(b -> performParse(cache, parser, b))
                 .map(contents -> {
                     KApply configContents = (KApply) contents;
                     List<K> items = configContents.klist().items();
@@ -373,7 +428,7 @@ public class Kompile {
                 .filter(s -> s instanceof Bubble)
                 .map(b -> (Bubble) b)
                 .filter(b -> b.sentenceType().equals("rule"))
-                .flatMap(b -> performParse(cache.getCache(), parser, b))
+                .flatMap(b -> performParse(cache, parser, b))
                 .map(this::upRule)
                 .collect(Collections.toSet());
 
@@ -382,7 +437,7 @@ public class Kompile {
                 .filter(s -> s instanceof Bubble)
                 .map(b -> (Bubble) b)
                 .filter(b -> b.sentenceType().equals("context"))
-                .flatMap(b -> performParse(cache.getCache(), parser, b))
+                .flatMap(b -> performParse(cache, parser, b))
                 .map(this::upContext)
                 .collect(Collections.toSet());
 
@@ -393,7 +448,8 @@ public class Kompile {
     public Rule parseRule(CompiledDefinition compiledDef, String contents, Source source) {
         errors = java.util.Collections.synchronizedSet(Sets.newHashSet());
         gen = new RuleGrammarGenerator(compiledDef.kompiledDefinition, kompileOptions.strict());
-        java.util.Set<K> res = performParse(new HashMap<>(), gen.getCombinedGrammar(gen.getRuleGrammar(compiledDef.executionModule())),
+        Module ruleGrammar = gen.getRuleGrammar(compiledDef.executionModule());
+        java.util.Set<K> res = performParse(new ParseCache(ruleGrammar, kompileOptions.strict()), gen.getCombinedGrammar(ruleGrammar),
                 new Bubble("rule", contents, Att().add("contentStartLine", 1).add("contentStartColumn", 1).add("Source", source.source())))
                 .collect(Collectors.toSet());
         if (!errors.isEmpty()) {
@@ -445,12 +501,7 @@ public class Kompile {
     }
 
     private ParseCache loadCache(Module parser) {
-        ParseCache cachedParser = caches.get(parser.name());
-        if (cachedParser == null || !equalsSyntax(cachedParser.getModule(), parser) || cachedParser.isStrict() != kompileOptions.strict()) {
-            cachedParser = new ParseCache(parser, kompileOptions.strict(), java.util.Collections.synchronizedMap(new HashMap<>()));
-            caches.put(parser.name(), cachedParser);
-        }
-        return cachedParser;
+        return caches.get(parser, kompileOptions.strict(), this::equalsSyntax);
     }
 
     private boolean equalsSyntax(Module _this, Module that) {
@@ -461,13 +512,13 @@ public class Kompile {
         return _this.sortDeclarations().equals(that.sortDeclarations());
     }
 
-    private Stream<? extends K> performParse(Map<String, ParsedSentence> cache, ParseInModule parser, Bubble b) {
+    private Stream<? extends K> performParse(ParseCache cache, ParseInModule parser, Bubble b) {
         int startLine = b.att().<Integer>get("contentStartLine").get();
         int startColumn = b.att().<Integer>get("contentStartColumn").get();
         String source = b.att().<String>get("Source").get();
         Tuple2<Either<java.util.Set<ParseFailedException>, K>, java.util.Set<ParseFailedException>> result;
-        if (cache.containsKey(b.contents())) {
-            ParsedSentence parse = cache.get(b.contents());
+        ParsedSentence parse = cache.get(b.contents());
+        if (parse != null) {
             cachedBubbles.getAndIncrement();
             kem.addAllKException(parse.getWarnings().stream().map(e -> e.getKException()).collect(Collectors.toList()));
             return Stream.of(parse.getParse());
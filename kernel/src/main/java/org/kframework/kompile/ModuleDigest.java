@@ -0,0 +1,93 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.kompile;
+
+import org.kframework.definition.Module;
+import org.kframework.definition.Sentence;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.kframework.Collections.*;
+
+/**
+ * Computes digests of the content of modules, which identify a module across runs.
+ *
+ * Unlike {@link Module#equals(Object)}, which ignores attributes, the digest covers the attributes of the module, of
+ * its sentences, and of the terms in them (e.g. the sorts of variables), as well as its imports. Two modules with
+ * the same digest can thus be used interchangeably by a compilation stage. Digests are memoized by identity, since
+ * a stage leaves most sentences and imported modules untouched.
+ */
+public class ModuleDigest {
+
+    private final Map<Module, String> modules = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<Sentence, String> sentences = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    public String digest(Module module) {
+        String digest = modules.get(module);
+        if (digest == null) {
+            MessageDigest md = newDigest();
+            md.update(module.name().getBytes(StandardCharsets.UTF_8));
+            md.update(serialize(module.att()));
+            update(md, stream(module.localSentences()).map(this::digest));
+            update(md, stream(module.imports()).map(this::digest));
+            digest = hex(md.digest());
+            modules.put(module, digest);
+        }
+        return digest;
+    }
+
+    private String digest(Sentence sentence) {
+        String digest = sentences.get(sentence);
+        if (digest == null) {
+            MessageDigest md = newDigest();
+            md.update(serialize(sentence));
+            digest = hex(md.digest());
+            sentences.put(sentence, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Adds the given digests in sorted order, so that the digest of a module does not depend on the iteration order
+     * of its sets of sentences and imports.
+     */
+    private static void update(MessageDigest md, Stream<String> digests) {
+        digests.sorted().forEachOrdered(d -> md.update(d.getBytes(StandardCharsets.UTF_8)));
+        md.update((byte) 0);
+    }
+
+    private static byte[] serialize(Object o) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        } catch (IOException e) {
+            throw KEMException.internalError("Could not serialize " + o + " to compute its digest.", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw KEMException.internalError("SHA-256 is not available.", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,148 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.kore.compile;
+
+import org.kframework.definition.Module;
+import org.kframework.definition.Production;
+import org.kframework.definition.Rule;
+import org.kframework.kil.Attribute;
+import org.kframework.kore.K;
+import org.kframework.kore.KApply;
+import org.kframework.kore.KLabel;
+import org.kframework.kore.KVariable;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.kframework.Collections.*;
+
+/**
+ * Checks that the productions tagged with "memo" are pure functions, so that the backend can
+ * reuse the result of a ground application of one of them each time it is evaluated again.
+ * <p>
+ * A memo production must be a function which is not tagged with "impure", and its rules must
+ * neither introduce fresh constants nor call an impure function. A function is impure if it is
+ * tagged with "impure", or if one of its rules introduces a fresh constant or calls an impure
+ * function, so the check follows the calls of the rules transitively.
+ */
+public class CheckMemoFunctions {
+
+    private final Set<KLabel> memoLabels = new HashSet<>();
+    private final Set<KLabel> impureLabels = new HashSet<>();
+    private final Set<KLabel> functionLabels = new HashSet<>();
+    /**
+     * the functions which are impure because of one of their rules, with the rule and the reason
+     */
+    private final Map<KLabel, Impurity> impurities = new HashMap<>();
+
+    private static class Impurity {
+        final Rule rule;
+        /* why the rule is impure, e.g. "introduces the fresh constant !X" */
+        final String reason;
+
+        Impurity(Rule rule, String reason) {
+            this.rule = rule;
+            this.reason = reason;
+        }
+    }
+
+    public void check(Module module) {
+        for (Production prod : iterable(module.productions())) {
+            if (prod.att().contains(Attribute.IMPURE_KEY) && prod.klabel().isDefined()) {
+                impureLabels.add(prod.klabel().get());
+            }
+            if ((prod.att().contains(Attribute.FUNCTION_KEY) || prod.att().contains(Attribute.PREDICATE_KEY))
+                    && prod.klabel().isDefined()) {
+                functionLabels.add(prod.klabel().get());
+            }
+            if (!prod.att().contains(Attribute.MEMO_KEY)) {
+                continue;
+            }
+            if (!prod.att().contains(Attribute.FUNCTION_KEY) && !prod.att().contains(Attribute.PREDICATE_KEY)) {
+                throw KEMException.compilerError("Only functions can be tagged with memo.", prod);
+            }
+            if (prod.att().contains(Attribute.IMPURE_KEY)) {
+                throw KEMException.compilerError("Impure functions cannot be tagged with memo.", prod);
+            }
+            if (prod.klabel().isDefined()) {
+                memoLabels.add(prod.klabel().get());
+            }
+        }
+        if (memoLabels.isEmpty()) {
+            return;
+        }
+
+        Map<KLabel, List<Rule>> functionRules = new HashMap<>();
+        for (Rule rule : iterable(module.rules())) {
+            K left = RewriteToTop.toLeft(rule.body());
+            if (left instanceof KApply && functionLabels.contains(((KApply) left).klabel())) {
+                functionRules.computeIfAbsent(((KApply) left).klabel(), l -> new ArrayList<>()).add(rule);
+            }
+        }
+
+        /* iterate until a fixpoint is reached, as a function is impure if it calls an impure function */
+        boolean change = true;
+        while (change) {
+            change = false;
+            for (Map.Entry<KLabel, List<Rule>> entry : functionRules.entrySet()) {
+                if (impurities.containsKey(entry.getKey())) {
+                    continue;
+                }
+                for (Rule rule : entry.getValue()) {
+                    String reason = impurity(rule);
+                    if (reason != null) {
+                        impurities.put(entry.getKey(), new Impurity(rule, reason));
+                        change = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        for (KLabel function : memoLabels) {
+            Impurity impurity = impurities.get(function);
+            if (impurity != null) {
+                throw KEMException.compilerError("Function " + function.name() + " is tagged with memo, "
+                        + "but its rule " + impurity.reason + ".", impurity.rule);
+            }
+        }
+    }
+
+    /**
+     * Returns why the given rule is impure given the functions known to be impure so far, or null
+     * if it is not.
+     */
+    private String impurity(Rule rule) {
+        String[] reason = new String[1];
+        VisitKORE visitor = new VisitKORE() {
+            @Override
+            public Void apply(KApply k) {
+                if (reason[0] == null) {
+                    if (impureLabels.contains(k.klabel())) {
+                        reason[0] = "calls the impure function " + k.klabel().name();
+                    } else if (impurities.containsKey(k.klabel())) {
+                        reason[0] = "calls the function " + k.klabel().name() + ", which "
+                                + impurities.get(k.klabel()).reason;
+                    }
+                }
+                return super.apply(k);
+            }
+
+            @Override
+            public Void apply(KVariable k) {
+                if (reason[0] == null && k.name().startsWith("!")) {
+                    reason[0] = "introduces the fresh constant " + k.name();
+                }
+                return super.apply(k);
+            }
+        };
+        visitor.apply(rule.body());
+        visitor.apply(rule.requires());
+        visitor.apply(rule.ensures());
+        return reason[0];
+    }
+}
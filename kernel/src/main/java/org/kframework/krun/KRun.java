@@ -72,35 +72,38 @@ public class KRun {
 
 
         Rewriter rewriter = rewriterGenerator.apply(compiledDef.executionModule());
+        try {
+            Object result = executionMode.execute(program, rewriter, compiledDef);
 
-        Object result = executionMode.execute(program, rewriter, compiledDef);
-
-        if (result instanceof K) {
-            prettyPrint(compiledDef, options.output, s -> outputFile(s, options), (K) result);
-            if (options.exitCodePattern != null) {
-                Rule exitCodePattern = compilePattern(files, kem, options.exitCodePattern, options, compiledDef, Source.apply("<command line: --exit-code>"));
-                List<? extends Map<? extends KVariable, ? extends K>> res = rewriter.match((K) result, exitCodePattern);
-                return getExitCode(kem, res);
-            }
-        } else if (result instanceof Tuple2) {
-            Tuple2<?, ?> tuple = (Tuple2<?, ?>) result;
-            if (tuple._1() instanceof K && tuple._2() instanceof Integer) {
-                prettyPrint(compiledDef, options.output, s -> outputFile(s, options), (K) tuple._1());
-                return (Integer) tuple._2();
-            }
-            if (tuple._1() instanceof SearchResult && tuple._2() instanceof Integer) {
-                printSearchResult((SearchResult) tuple._1(), options, compiledDef);
-                return (Integer) tuple._2();
+            if (result instanceof K) {
+                prettyPrint(compiledDef, options.output, s -> outputFile(s, options), (K) result);
+                if (options.exitCodePattern != null) {
+                    Rule exitCodePattern = compilePattern(files, kem, options.exitCodePattern, options, compiledDef, Source.apply("<command line: --exit-code>"));
+                    List<? extends Map<? extends KVariable, ? extends K>> res = rewriter.match((K) result, exitCodePattern);
+                    return getExitCode(kem, res);
+                }
+            } else if (result instanceof Tuple2) {
+                Tuple2<?, ?> tuple = (Tuple2<?, ?>) result;
+                if (tuple._1() instanceof K && tuple._2() instanceof Integer) {
+                    prettyPrint(compiledDef, options.output, s -> outputFile(s, options), (K) tuple._1());
+                    return (Integer) tuple._2();
+                }
+                if (tuple._1() instanceof SearchResult && tuple._2() instanceof Integer) {
+                    printSearchResult((SearchResult) tuple._1(), options, compiledDef);
+                    return (Integer) tuple._2();
+                }
+            } else if (result instanceof SearchResult) {
+                printSearchResult((SearchResult) result, options, compiledDef);
+                return 0;
+            } else if (options.experimental.prove != null) {
+                if (((List) result).isEmpty()) {
+                    System.out.println("true");
+                }
             }
-        } else if (result instanceof SearchResult) {
-            printSearchResult((SearchResult) result, options, compiledDef);
             return 0;
-        } else if (options.experimental.prove != null) {
-            if (((List) result).isEmpty()) {
-                System.out.println("true");
-            }
+        } finally {
+            rewriter.close();
         }
-        return 0;
     }
 
     private void printSearchResult(SearchResult result, KRunOptions options, CompiledDefinition compiledDef) {
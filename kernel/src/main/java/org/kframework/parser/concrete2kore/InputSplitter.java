@@ -0,0 +1,216 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.BasicAutomata;
+import dk.brics.automaton.RegExp;
+import org.kframework.definition.Module;
+import org.kframework.definition.Production;
+import org.kframework.definition.ProductionItem;
+import org.kframework.definition.RegexTerminal;
+import org.kframework.definition.Terminal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.kframework.Collections.*;
+
+/**
+ * Cuts a program into pieces which can be parsed independently, at the top-level separators of a user list.
+ * <p>
+ * A position is at top level if it is outside of comments, of string literals, and of (), [] and {} brackets.
+ * Comments are the layout of {@link org.kframework.parser.concrete2kore.kernel.Grammar#addWhiteSpace()}, and the
+ * splitter skips them the same way. A list is cut at top-level occurrences of its separator, which belong to neither
+ * piece. Such an occurrence is a token of the program only if no other token of the grammar can contain the
+ * characters the splitter relies on, which {@link #canSplit(Module, String)} checks for the grammar once.
+ * Then, since the pieces are lists, their concatenation is a parse of the whole program.
+ */
+public class InputSplitter {
+
+    /**
+     * String literals, whose extent the splitter follows: a quote, characters other than quotes and backslashes,
+     * or escaped characters, and a quote.
+     */
+    private static final Automaton STRINGS = BasicAutomata.makeChar('"')
+            .concatenate(BasicAutomata.makeAnyChar().minus(BasicAutomata.makeCharSet("\"\\"))
+                    .union(BasicAutomata.makeChar('\\').concatenate(BasicAutomata.makeAnyChar()))
+                    .repeat())
+            .concatenate(BasicAutomata.makeChar('"'));
+
+    /**
+     * The delimiters of the comments and string literals the splitter skips.
+     */
+    private static final String[] DELIMITERS = {"\"", "//", "/*", "*/"};
+
+    /**
+     * Returns whether the programs of a list with the given separator can be cut by {@link #split} in the given
+     * grammar. That is the case when the separator is not empty, and when no token of the grammar other than a
+     * string literal contains the separator, a quote or a comment delimiter, so that the splitter sees the same
+     * comments and strings as the parser, and a top-level occurrence of the separator is never inside a token.
+     * A list without a separator cannot be cut, since an unindented line may continue the previous element, and
+     * neither can a list whose separator may be part of a comment delimiter.
+     */
+    public static boolean canSplit(Module grammar, String separator) {
+        if (separator.isEmpty() || separator.matches(".*[\"/*].*")) {
+            return false;
+        }
+        for (Production prod : iterable(grammar.productions())) {
+            for (ProductionItem item : iterable(prod.items())) {
+                if (item instanceof Terminal) {
+                    String value = ((Terminal) item).value();
+                    if (!value.equals(separator) && (value.contains(separator) || containsDelimiter(value))) {
+                        return false;
+                    }
+                } else if (item instanceof RegexTerminal) {
+                    Automaton token = new RegExp(((RegexTerminal) item).regex()).toAutomaton().minus(STRINGS);
+                    if (canContain(token, separator)) {
+                        return false;
+                    }
+                    for (String delimiter : DELIMITERS) {
+                        if (canContain(token, delimiter)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean canContain(Automaton token, String s) {
+        Automaton containing = BasicAutomata.makeAnyString()
+                .concatenate(BasicAutomata.makeString(s))
+                .concatenate(BasicAutomata.makeAnyString());
+        return !token.intersection(containing).isEmpty();
+    }
+
+    private static boolean containsDelimiter(String value) {
+        for (String delimiter : DELIMITERS) {
+            if (value.contains(delimiter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A piece of the input, with the line and column of its first character.
+     */
+    public static class Segment {
+        public final String text;
+        public final int startLine;
+        public final int startColumn;
+
+        public Segment(String text, int startLine, int startColumn) {
+            this.text = text;
+            this.startLine = startLine;
+            this.startColumn = startColumn;
+        }
+    }
+
+    /**
+     * Cuts the input into at most the given number of pieces of about equal length.
+     * @param input        the program.
+     * @param separator    the separator of the list, for which {@link #canSplit} holds.
+     * @param startLine    the line of the first character of the input.
+     * @param startColumn  the column of the first character of the input.
+     * @param pieces       the number of pieces wanted.
+     * @return the pieces, in order. A single piece, the whole input, if it could not be cut.
+     */
+    public static List<Segment> split(String input, String separator, int startLine, int startColumn, int pieces) {
+        List<Segment> segments = new ArrayList<>();
+        if (separator.isEmpty()) {
+            segments.add(new Segment(input, startLine, startColumn));
+            return segments;
+        }
+        int target = input.length() / Math.max(pieces, 1);
+        int begin = 0, beginLine = startLine, beginColumn = startColumn;
+        int line = startLine, column = startColumn;
+        int depth = 0;
+        boolean inString = false, inLineComment = false, inBlockComment = false;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (!inString && !inLineComment && !inBlockComment && depth == 0 && i - begin >= target
+                    && segments.size() < pieces - 1 && input.startsWith(separator, i)) {
+                segments.add(new Segment(input.substring(begin, i), beginLine, beginColumn));
+                for (int j = 0; j < separator.length(); j++) {
+                    line = nextLine(input, i + j, line);
+                    column = nextColumn(input, i + j, column);
+                }
+                i += separator.length() - 1;
+                begin = i + 1;
+                beginLine = line;
+                beginColumn = column;
+                continue;
+            }
+            boolean skipNext = false;
+            if (inLineComment) {
+                inLineComment = c != '\n' && c != '\r';
+            } else if (inBlockComment) {
+                if (c == '*' && input.startsWith("/", i + 1)) {
+                    inBlockComment = false;
+                    skipNext = true;
+                }
+            } else if (inString) {
+                if (c == '\\') {
+                    skipNext = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (input.startsWith("//", i)) {
+                inLineComment = true;
+                skipNext = true;
+            } else if (input.startsWith("/*", i)) {
+                inBlockComment = true;
+                skipNext = true;
+            } else if (c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if (c == ')' || c == ']' || c == '}') {
+                if (--depth < 0) {
+                    // unbalanced brackets, we do not know where the top level is anymore
+                    break;
+                }
+            }
+            if (skipNext) {
+                line = nextLine(input, i, line);
+                column = nextColumn(input, i, column);
+                i++;
+                if (i == input.length()) {
+                    break;
+                }
+            }
+            line = nextLine(input, i, line);
+            column = nextColumn(input, i, column);
+        }
+        segments.add(new Segment(input.substring(begin), beginLine, beginColumn));
+        return segments;
+    }
+
+    // the line and column after the character at position i, following the conventions of the parser
+    private static int nextLine(String input, int i, int line) {
+        return isNewLine(input, i) ? line + 1 : line;
+    }
+
+    private static int nextColumn(String input, int i, int column) {
+        return isNewLine(input, i) ? 1 : column + 1;
+    }
+
+    private static boolean isNewLine(String input, int i) {
+        switch (input.charAt(i)) {
+            case '\r':
+                // \r\n counts as a single new line, at the \n
+                return i + 1 == input.length() || input.charAt(i + 1) != '\n';
+            case '\n':
+            case '\u000B':
+            case '\u000C':
+            case '\u0085':
+            case '\u2028':
+            case '\u2029':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
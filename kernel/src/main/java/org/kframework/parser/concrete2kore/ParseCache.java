@@ -8,23 +8,35 @@ import org.kframework.utils.errorsystem.ParseFailedException;
 import java.io.Serializable;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * The parses of the sentences of a module, together with the grammar they were parsed with.
+ * Sentences may be looked up and added concurrently.
+ * <p>
  * Created by dwightguth on 4/20/15.
+ *
+ * @see ParseCacheStore
  */
-public class ParseCache implements Serializable {
+public class ParseCache {
     private final Module module;
     private final boolean strict;
-    private final Map<String, ParsedSentence> cache;
+    private final Map<String, ParsedSentence> cache = new ConcurrentHashMap<>();
 
-    public ParseCache(Module module, boolean strict, Map<String, ParsedSentence> cache) {
+    public ParseCache(Module module, boolean strict) {
         this.module = module;
         this.strict = strict;
-        this.cache = cache;
     }
 
-    public Map<String, ParsedSentence> getCache() {
-        return cache;
+    /**
+     * Returns the parse of the given sentence, or null if it is not in the cache.
+     */
+    public ParsedSentence get(String sentence) {
+        return cache.get(sentence);
+    }
+
+    public void put(String sentence, ParsedSentence parse) {
+        cache.put(sentence, parse);
     }
 
     public Module getModule() {
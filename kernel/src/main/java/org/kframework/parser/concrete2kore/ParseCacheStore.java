@@ -0,0 +1,467 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore;
+
+import org.kframework.definition.Module;
+import org.kframework.utils.ByteBufferInputStream;
+import org.kframework.utils.errorsystem.KEMException;
+import org.kframework.utils.errorsystem.KExceptionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * The parse caches of the modules of a definition, saved in a directory with one file, or shard, per module.
+ * <p>
+ * A shard starts with the grammar its sentences were parsed with, followed by a log of records, each holding a
+ * sentence and its parse. Records are checksummed and only ever appended, so that a kompile interrupted while
+ * writing a shard loses at most the record it was writing. Shards are memory-mapped, and a parse is only
+ * deserialized when its sentence is looked up.
+ * <p>
+ * When the store is closed, the records of the sentences which were neither looked up nor added are dead. A shard
+ * with more dead records than live ones is compacted, by writing its live records to a new file which then
+ * replaces the shard. A shard is always unmapped and closed before its file is replaced, since an open or mapped
+ * file cannot be replaced on every platform.
+ */
+public class ParseCacheStore {
+
+    private static final int MAGIC = 0x4B504152; // "KPAR"
+    private static final int FORMAT_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final File directory;
+    private final KExceptionManager kem;
+    private final Map<String, ParseCache> caches = new HashMap<>();
+
+    /**
+     * @param directory the directory of the shards, or null to keep the parses in memory only
+     */
+    public ParseCacheStore(File directory, KExceptionManager kem) {
+        this.directory = directory;
+        this.kem = kem;
+    }
+
+    /**
+     * Returns the parse cache of the given grammar, which is empty unless the cache of the module of the same name
+     * was built with the same syntax and strictness.
+     */
+    public synchronized ParseCache get(Module grammar, boolean strict, BiPredicate<Module, Module> equalsSyntax) {
+        ParseCache cache = caches.get(grammar.name());
+        if (cache == null && directory != null) {
+            cache = Shard.open(shardFile(grammar.name()), kem);
+        }
+        if (cache == null || cache.isStrict() != strict || !equalsSyntax.test(cache.getModule(), grammar)) {
+            if (cache instanceof Shard) {
+                ((Shard) cache).release();
+            }
+            cache = directory == null ? new ParseCache(grammar, strict) : Shard.create(shardFile(grammar.name()), grammar, strict, kem);
+        }
+        caches.put(grammar.name(), cache);
+        return cache;
+    }
+
+    /**
+     * Compacts the shards used since the store was opened.
+     *
+     * @param removeUnused whether to also delete the shards of the modules whose cache was not requested
+     */
+    public synchronized void close(boolean removeUnused) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            for (ParseCache cache : caches.values()) {
+                ((Shard) cache).close();
+            }
+        } finally {
+            release();
+        }
+        if (removeUnused) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!caches.keySet().stream().anyMatch(name -> shardFile(name).equals(file))) {
+                        file.delete();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the shards used since the store was opened, without compacting them, e.g. after a failed kompile
+     * which did not look up all the sentences it will need.
+     */
+    public synchronized void release() {
+        for (ParseCache cache : caches.values()) {
+            if (cache instanceof Shard) {
+                ((Shard) cache).release();
+            }
+        }
+    }
+
+    File shardFile(String moduleName) {
+        return new File(directory, moduleName.replaceAll("[^A-Za-z0-9_-]", "_")
+                + "-" + Integer.toHexString(moduleName.hashCode()) + ".bin");
+    }
+
+    /**
+     * The grammar and strictness at the start of a shard.
+     */
+    private static class Header implements Serializable {
+        private final Module module;
+        private final boolean strict;
+
+        Header(Module module, boolean strict) {
+            this.module = module;
+            this.strict = strict;
+        }
+    }
+
+    private static class Shard extends ParseCache {
+        private final File file;
+        private final FileChannel channel;
+        private final KExceptionManager kem;
+
+        /**
+         * The records written by the previous kompiles, and the offsets of the records by their sentence.
+         */
+        private final ByteBuffer records;
+        private final Map<String, Integer> offsets;
+        private final Set<String> live = ConcurrentHashMap.newKeySet();
+        /**
+         * Held to read the records, and to unmap them once the shard is closed.
+         */
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile boolean closed = false;
+
+        private Shard(File file, FileChannel channel, Header header, ByteBuffer records, Map<String, Integer> offsets,
+                      KExceptionManager kem) {
+            super(header.module, header.strict);
+            this.file = file;
+            this.channel = channel;
+            this.records = records;
+            this.offsets = offsets;
+            this.kem = kem;
+        }
+
+        /**
+         * Opens an existing shard, discarding the records after the first one which is incomplete or corrupted.
+         * Returns null if there is no shard, or if its header cannot be read.
+         */
+        static Shard open(File file, KExceptionManager kem) {
+            if (!file.exists()) {
+                return null;
+            }
+            FileChannel channel = null;
+            ByteBuffer buffer = null;
+            try {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.remaining() < FILE_HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                    throw new IOException("Unknown parse cache format in " + file);
+                }
+                int headerOffset = buffer.position();
+                if (!skipRecord(buffer)) {
+                    throw new IOException("Corrupted parse cache header in " + file);
+                }
+                Header header = (Header) readValue(buffer, headerOffset);
+
+                Map<String, Integer> offsets = new HashMap<>();
+                int offset = buffer.position();
+                while (skipRecord(buffer)) {
+                    offsets.put(readKey(buffer, offset), offset);
+                    offset = buffer.position();
+                }
+                if (offset < channel.size()) {
+                    unmap(buffer);
+                    buffer = null;
+                    channel.truncate(offset);
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, offset);
+                }
+                buffer.limit(offset);
+                return new Shard(file, channel, header, buffer, offsets, kem);
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                kem.registerInternalHiddenWarning("Invalidating serialized cache due to corruption.", e);
+                unmap(buffer);
+                closeQuietly(channel);
+                return null;
+            }
+        }
+
+        /**
+         * Creates an empty shard, replacing the existing one, which must have been released.
+         */
+        static Shard create(File file, Module module, boolean strict, KExceptionManager kem) {
+            Header header = new Header(module, strict);
+            try {
+                file.getParentFile().mkdirs();
+                File tempFile = new File(file.getPath() + ".tmp");
+                try (FileChannel channel = FileChannel.open(tempFile.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    writeFully(channel, fileHeader());
+                    writeFully(channel, record("", header));
+                }
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                return new Shard(file, channel, header, ByteBuffer.allocate(0), new HashMap<>(), kem);
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write to " + file, e);
+            }
+        }
+
+        @Override
+        public ParsedSentence get(String sentence) {
+            ParsedSentence parse = super.get(sentence);
+            if (parse != null) {
+                return parse;
+            }
+            Integer offset = offsets.get(sentence);
+            if (offset == null) {
+                return null;
+            }
+            lock.readLock().lock();
+            try {
+                if (closed) {
+                    return null;
+                }
+                parse = (ParsedSentence) readValue(records.duplicate(), offset);
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                kem.registerInternalHiddenWarning("Invalidating serialized cache due to corruption.", e);
+                return null;
+            } finally {
+                lock.readLock().unlock();
+            }
+            live.add(sentence);
+            return parse;
+        }
+
+        @Override
+        public void put(String sentence, ParsedSentence parse) {
+            ByteBuffer record;
+            try {
+                record = record(sentence, parse);
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write to " + file, e);
+            }
+            synchronized (this) {
+                try {
+                    channel.position(channel.size());
+                    writeFully(channel, record);
+                } catch (IOException e) {
+                    throw KEMException.criticalError("Could not write to " + file, e);
+                }
+            }
+            super.put(sentence, parse);
+        }
+
+        /**
+         * Closes the shard, compacting it if more than half of its records are dead.
+         */
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            File compacted = null;
+            try {
+                int deadSize = 0;
+                List<Integer> liveOffsets = new ArrayList<>();
+                for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+                    if (live.contains(entry.getKey())) {
+                        liveOffsets.add(entry.getValue());
+                    } else {
+                        deadSize += recordSize(records, entry.getValue());
+                    }
+                }
+                if (deadSize > channel.size() / 2) {
+                    compacted = compact(liveOffsets);
+                }
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write to " + file, e);
+            } finally {
+                release();
+            }
+            if (compacted != null) {
+                try {
+                    Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    throw KEMException.criticalError("Could not write to " + file, e);
+                }
+            }
+        }
+
+        /**
+         * Unmaps and closes the shard, leaving its file as it is.
+         */
+        synchronized void release() {
+            lock.writeLock().lock();
+            try {
+                if (!closed) {
+                    closed = true;
+                    unmap(records);
+                    closeQuietly(channel);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Writes a file with the header of the shard, the given records written by the previous kompiles, and the
+         * records written by this one, which is to replace the shard once it is closed.
+         */
+        private File compact(List<Integer> liveOffsets) throws IOException {
+            File tempFile = new File(file.getPath() + ".tmp");
+            try (FileChannel compacted = FileChannel.open(tempFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(compacted, fileHeader());
+                int headerOffset = FILE_HEADER_SIZE;
+                writeFully(compacted, slice(records, headerOffset, recordSize(records, headerOffset)));
+                for (int offset : liveOffsets) {
+                    writeFully(compacted, slice(records, offset, recordSize(records, offset)));
+                }
+                channel.transferTo(records.limit(), channel.size() - records.limit(), compacted);
+            }
+            return tempFile;
+        }
+    }
+
+    private static ByteBuffer fileHeader() {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+        return header;
+    }
+
+    /**
+     * Returns a record made of the length and checksum of its contents, followed by its contents: the given key,
+     * and the serialization of the given value.
+     */
+    private static ByteBuffer record(String key, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(keyBytes.length);
+        out.write(keyBytes);
+        try (ObjectOutputStream serializer = new ObjectOutputStream(out)) {
+            serializer.writeObject(value);
+        }
+
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, record.capacity() - RECORD_HEADER_SIZE);
+        record.putInt(0, record.capacity() - RECORD_HEADER_SIZE);
+        record.putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Moves the buffer past the record at its position, if that record is complete and its checksum is correct.
+     */
+    private static boolean skipRecord(ByteBuffer buffer) {
+        int offset = buffer.position();
+        if (buffer.remaining() < RECORD_HEADER_SIZE) {
+            return false;
+        }
+        int length = buffer.getInt(offset);
+        int checksum = buffer.getInt(offset + 4);
+        if (length < 4 || length > buffer.remaining() - RECORD_HEADER_SIZE) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(slice(buffer, offset + RECORD_HEADER_SIZE, length));
+        if ((int) crc.getValue() != checksum) {
+            return false;
+        }
+        buffer.position(offset + RECORD_HEADER_SIZE + length);
+        return true;
+    }
+
+    private static int recordSize(ByteBuffer buffer, int offset) {
+        return RECORD_HEADER_SIZE + buffer.getInt(offset);
+    }
+
+    private static String readKey(ByteBuffer buffer, int offset) {
+        int keyLength = buffer.getInt(offset + RECORD_HEADER_SIZE);
+        byte[] key = new byte[keyLength];
+        ByteBuffer keyBuffer = slice(buffer, offset + RECORD_HEADER_SIZE + 4, keyLength);
+        keyBuffer.get(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private static Object readValue(ByteBuffer buffer, int offset) throws IOException, ClassNotFoundException {
+        int keyLength = buffer.getInt(offset + RECORD_HEADER_SIZE);
+        int valueOffset = offset + RECORD_HEADER_SIZE + 4 + keyLength;
+        int valueLength = recordSize(buffer, offset) - (valueOffset - offset);
+        try (ObjectInputStream deserializer = new ObjectInputStream(
+                new ByteBufferInputStream(slice(buffer, valueOffset, valueLength)))) {
+            return deserializer.readObject();
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length).position(offset);
+        return slice;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Unmaps the given buffer if it is mapped, rather than waiting for it to be garbage collected, so that its file
+     * can be replaced. The buffer must not be accessed afterwards.
+     */
+    private static void unmap(ByteBuffer buffer) {
+        if (!(buffer instanceof MappedByteBuffer)) {
+            return;
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the mapping is released when the buffer is garbage collected
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // the shard was already written
+            }
+        }
+    }
+}
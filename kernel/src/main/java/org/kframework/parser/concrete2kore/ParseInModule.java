@@ -5,10 +5,12 @@ import com.google.common.collect.Sets;
 import org.kframework.attributes.Source;
 import org.kframework.definition.Module;
 import org.kframework.kore.K;
+import org.kframework.kore.KApply;
 import org.kframework.kore.Sort;
 import org.kframework.parser.Term;
 import org.kframework.parser.TreeNodesToKORE;
 import org.kframework.parser.concrete2kore.disambiguation.*;
+import org.kframework.parser.concrete2kore.generator.UserList;
 import org.kframework.parser.concrete2kore.kernel.Grammar;
 import org.kframework.parser.concrete2kore.kernel.KSyntax2GrammarStatesFilter;
 import org.kframework.parser.concrete2kore.kernel.Parser;
@@ -20,8 +22,15 @@ import scala.util.Left;
 import scala.util.Right;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.kframework.Collections.*;
+import static org.kframework.kore.KORE.*;
 
 /**
  * A wrapper that takes a module and one can call the parser
@@ -45,7 +54,19 @@ public class ParseInModule implements Serializable {
      */
     private final Module parsingModule;
     private volatile Grammar grammar = null;
+    /**
+     * The user lists of the disambiguation module with the {@code split} attribute, by sort, whose separator
+     * {@link InputSplitter#canSplit} finds safe to cut at in the parsing module.
+     * Large programs of these sorts are cut at their top-level separators by {@link InputSplitter},
+     * and the pieces are parsed in parallel.
+     */
+    private transient volatile Map<String, UserList> splitLists = null;
     private final boolean strict;
+
+    /**
+     * The smallest piece of a program that is worth parsing on its own thread.
+     */
+    private static final int MIN_SPLIT_LENGTH = 1 << 14;
     ParseInModule(Module seedModule) {
         this(seedModule, seedModule, seedModule, seedModule, true);
     }
@@ -95,8 +116,85 @@ public class ParseInModule implements Serializable {
         }
     }
 
+    private Map<String, UserList> getSplitLists() {
+        Map<String, UserList> lists = splitLists;
+        if (lists == null) {
+            lists = UserList.getLists(mutable(disambModule.sentences())).stream()
+                    .filter(ul -> ul.attrs.contains("split") && InputSplitter.canSplit(parsingModule, ul.separator))
+                    .collect(Collectors.toMap(ul -> ul.sort, ul -> ul));
+            splitLists = lists;
+        }
+        return lists;
+    }
+
     public Tuple2<Either<Set<ParseFailedException>, K>, Set<ParseFailedException>>
         parseString(String input, Sort startSymbol, Source source, int startLine, int startColumn) {
+        UserList list = getSplitLists().get(startSymbol.name());
+        int pieces = Math.min(4 * Runtime.getRuntime().availableProcessors(), input.length() / MIN_SPLIT_LENGTH);
+        if (list != null && pieces > 1 && Runtime.getRuntime().availableProcessors() > 1) {
+            Tuple2<Either<Set<ParseFailedException>, K>, Set<ParseFailedException>> result
+                    = parseSplit(input, list, startSymbol, source, startLine, startColumn, pieces);
+            if (result != null) {
+                return result;
+            }
+        }
+        return parseWhole(input, startSymbol, source, startLine, startColumn);
+    }
+
+    /**
+     * Parses the pieces of a program of a list sort in parallel, and concatenates the lists they parse to.
+     * @return the parse of the whole program, or null if it could not be cut or one of the pieces failed to parse,
+     * in which case the program should be parsed as a whole, to get the parse or the errors right.
+     */
+    private Tuple2<Either<Set<ParseFailedException>, K>, Set<ParseFailedException>>
+        parseSplit(String input, UserList list, Sort startSymbol, Source source, int startLine, int startColumn, int pieces) {
+        List<InputSplitter.Segment> segments = InputSplitter.split(input, list.separator, startLine, startColumn, pieces);
+        if (segments.size() < 2) {
+            return null;
+        }
+        List<Tuple2<Either<Set<ParseFailedException>, K>, Set<ParseFailedException>>> results = segments.parallelStream()
+                .map(seg -> parseWhole(seg.text, startSymbol, source, seg.startLine, seg.startColumn))
+                .collect(Collectors.toList());
+        if (results.stream().anyMatch(r -> r._1().isLeft())) {
+            return null;
+        }
+        K concatenated = concatenate(results.stream().map(r -> r._1().right().get()).collect(Collectors.toList()), list);
+        if (concatenated == null) {
+            return null;
+        }
+        Set<ParseFailedException> warn = Sets.newHashSet();
+        results.forEach(r -> warn.addAll(r._2()));
+        return new Tuple2<>(Right.apply(concatenated), warn);
+    }
+
+    /**
+     * Concatenates the given lists by replacing the terminator of each of them with the next one.
+     * The conses of a list keep their locations, so they end where their piece ends.
+     * @return the concatenation, or null if one of the terms is not a list of the expected shape.
+     */
+    private static K concatenate(List<K> lists, UserList list) {
+        List<KApply> conses = new ArrayList<>();
+        K terminator = null;
+        for (K k : lists) {
+            while (k instanceof KApply && ((KApply) k).klabel().name().equals(list.klabel) && ((KApply) k).klist().size() == 2) {
+                conses.add((KApply) k);
+                k = ((KApply) k).klist().items().get(1);
+            }
+            if (!(k instanceof KApply && ((KApply) k).klabel().name().equals(list.terminatorKLabel))) {
+                return null;
+            }
+            terminator = k;
+        }
+        K result = terminator;
+        for (int i = conses.size() - 1; i >= 0; i--) {
+            KApply cons = conses.get(i);
+            result = KApply(cons.klabel(), KList(cons.klist().items().get(0), result), cons.att());
+        }
+        return result;
+    }
+
+    private Tuple2<Either<Set<ParseFailedException>, K>, Set<ParseFailedException>>
+        parseWhole(String input, Sort startSymbol, Source source, int startLine, int startColumn) {
         final Tuple2<Either<Set<ParseFailedException>, Term>, Set<ParseFailedException>> result
                 = parseStringTerm(input, startSymbol, source, startLine, startColumn);
         Either<Set<ParseFailedException>, K> parseInfo;
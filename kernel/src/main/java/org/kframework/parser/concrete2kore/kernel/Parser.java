@@ -18,14 +18,16 @@ import org.kframework.parser.concrete2kore.kernel.Grammar.PrimitiveState;
 import org.kframework.parser.concrete2kore.kernel.Grammar.RegExState;
 import org.kframework.parser.concrete2kore.kernel.Grammar.RuleState;
 import org.kframework.parser.concrete2kore.kernel.Grammar.State;
-import org.kframework.utils.algorithms.AutoVivifyingBiMap;
+import org.kframework.utils.algorithms.LongHashMap;
 import org.kframework.utils.errorsystem.KException;
 import org.kframework.utils.errorsystem.KException.ExceptionType;
 import org.kframework.utils.errorsystem.KException.KExceptionGroup;
 import org.kframework.utils.errorsystem.ParseFailedException;
 import org.pcollections.ConsPStack;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -37,12 +39,15 @@ import java.util.TreeSet;
  * ----------------
  *
  * The parser operates by maintaining tables of {@link NonTerminalCall},
- * {@link StateCall} and {@link StateReturn} records. These tables are stored
- * in ParseState and are keyed by {@link NonTerminalCall.Key},
- * {@link StateCall.Key} and {@link StateReturn.Key}. For any given Key, there is
- * a single value that can be looked up in an {@link AutoVivifyingBiMap}.
- * If no value exists for a given Key, then the {@link AutoVivifyingBiMap}
- * will create one.
+ * {@link StateCall} and {@link StateReturn} records. For any given
+ * {@link NonTerminalCall.Key}, {@link StateCall.Key} or {@link StateReturn.Key}
+ * there is a single record, which is created the first time it is looked up.
+ * To avoid allocating and hashing a Key object on every lookup, the tables are
+ * {@link LongHashMap}s keyed on the positions and state ids packed into longs.
+ * The NonTerminalCalls are stored in ParseState, keyed on the entry state of
+ * the non-terminal and the start position. Each NonTerminalCall stores its
+ * StateCalls, keyed on the state and the start position, and each StateCall
+ * stores its StateReturns, keyed on the end position.
  *
  * In addition to these tables, a work queue of {@link StateReturn}s
  * to be processed is kept in {@link StateReturnWorkList}.
@@ -100,8 +105,10 @@ public class Parser {
     private static class StateCall {
         /** The {@link Function} storing the AST parsed so far */
         final Function function = Function.empty();
+        /** The {@link StateReturn}s of this StateCall by end position, allocated with the first one */
+        LongHashMap<StateReturn> stateReturns = null;
 
-        private static class Key implements AutoVivifyingBiMap.Create<StateCall> {
+        private static class Key {
             /** The {@link NonTerminalCall} containing this StateCall */
             final NonTerminalCall ntCall;
             /** The start position of this StateCall */
@@ -118,8 +125,6 @@ public class Parser {
                 this.hashCode = computeHash();
             }
 
-            public StateCall create() { return new StateCall(this); }
-
             @Override
             public boolean equals(Object o) {
                 if (this == o) return true;
@@ -172,6 +177,8 @@ public class Parser {
         final Function function = Function.empty();
 
         private final int[] orderingInfo = new int[5];
+        /** Whether this StateReturn is in the {@link StateReturnWorkList} */
+        boolean queued = false;
 
         public int compareTo(StateReturn that) {
             // The following idiom is a short-circuiting, integer "and
@@ -204,7 +211,7 @@ public class Parser {
             return 0;
         }
 
-        private static class Key implements AutoVivifyingBiMap.Create<StateReturn> {
+        private static class Key {
             /** The {@link StateCall} that this StateReturn finishes */
             public final StateCall stateCall;
             /** The end position of the parse */
@@ -217,8 +224,6 @@ public class Parser {
                 this.hashCode = computeHash();
             }
 
-            public StateReturn create() { return new StateReturn(this); }
-
             @Override
             public boolean equals(Object o) {
                 if (this == o) return true;
@@ -311,7 +316,9 @@ public class Parser {
         final Set<StateCall> callers = new HashSet<>();
         /** The {@link StateReturn}s for the {@link ExitState} in this NonTerminalCall */
         final Set<StateReturn> exitStateReturns = new HashSet<>();
-        private static class Key implements AutoVivifyingBiMap.Create<NonTerminalCall> {
+        /** The {@link StateCall}s in this NonTerminalCall by state and start position */
+        final LongHashMap<StateCall> stateCalls = new LongHashMap<>(4);
+        private static class Key {
             /** The {@link NonTerminal} being called */
             public final NonTerminal nt;
             /** The start position for parsing the {@link NonTerminal} */
@@ -325,8 +332,6 @@ public class Parser {
                 this.hashCode = computeHash();
             }
 
-            public NonTerminalCall create() { return new NonTerminalCall(this); }
-
             @Override
             public boolean equals(Object o) {
                 if (this == o) return true;
@@ -368,19 +373,17 @@ public class Parser {
     ////////////////
 
     private static class StateReturnWorkList {
-        private final HashSet<StateReturn> contains = new HashSet<>();
         private final TreeSet<StateReturn> ordering = new TreeSet<>();
         public void enqueue(StateReturn stateReturn) {
-            if (!contains.add(stateReturn)) return;
+            if (stateReturn.queued) return;
+            stateReturn.queued = true;
             ordering.add(stateReturn);
         }
-        public void addAll(Set<? extends StateReturn> c) {
-            if (!contains.addAll(c)) return;
-            ordering.addAll(c);
-        }
         public StateReturn dequeue() {
             StateReturn next = ordering.pollFirst();
-            contains.remove(next);
+            if (next != null) {
+                next.queued = false;
+            }
             return next;
         }
     }
@@ -400,9 +403,8 @@ public class Parser {
         // TODO: extract Location class into it's own file
         final int[] lines;
         final int[] columns;
-        AutoVivifyingBiMap<NonTerminalCall.Key, NonTerminalCall> ntCalls = new AutoVivifyingBiMap<>();
-        AutoVivifyingBiMap<StateCall.Key, StateCall> stateCalls = new AutoVivifyingBiMap<>();
-        AutoVivifyingBiMap<StateReturn.Key, StateReturn> stateReturns = new AutoVivifyingBiMap<>();
+        // the NonTerminalCalls by the entry state of their non-terminal and their start position
+        final LongHashMap<NonTerminalCall> ntCalls;
 
         public ParseState(String input, int startLine, int startColumn) {
             /**
@@ -444,6 +446,42 @@ public class Parser {
             }
             lines[input.length()] = l;
             columns[input.length()] = c;
+            ntCalls = new LongHashMap<>(64);
+        }
+
+        /** Returns the {@link NonTerminalCall} for the given key, creating it if it does not exist yet */
+        NonTerminalCall ntCall(NonTerminal nt, int ntBegin) {
+            long key = LongHashMap.key(nt.entryState.unique, ntBegin);
+            NonTerminalCall ntCall = ntCalls.get(key);
+            if (ntCall == null) {
+                ntCall = new NonTerminalCall(new NonTerminalCall.Key(nt, ntBegin));
+                ntCalls.putNew(key, ntCall);
+            }
+            return ntCall;
+        }
+
+        /** Returns the {@link StateCall} for the given key, creating it if it does not exist yet */
+        StateCall stateCall(NonTerminalCall ntCall, int stateBegin, State state) {
+            long key = LongHashMap.key(state.unique, stateBegin);
+            StateCall stateCall = ntCall.stateCalls.get(key);
+            if (stateCall == null) {
+                stateCall = new StateCall(new StateCall.Key(ntCall, stateBegin, state));
+                ntCall.stateCalls.putNew(key, stateCall);
+            }
+            return stateCall;
+        }
+
+        /** Returns the {@link StateReturn} for the given key, creating it if it does not exist yet */
+        StateReturn stateReturn(StateCall stateCall, int stateEnd) {
+            if (stateCall.stateReturns == null) {
+                stateCall.stateReturns = new LongHashMap<>(1);
+            }
+            StateReturn stateReturn = stateCall.stateReturns.get(stateEnd);
+            if (stateReturn == null) {
+                stateReturn = new StateReturn(new StateReturn.Key(stateCall, stateEnd));
+                stateCall.stateReturns.putNew(stateEnd, stateReturn);
+            }
+            return stateReturn;
         }
     }
 
@@ -554,8 +592,7 @@ public class Parser {
      */
     public Term parse(NonTerminal nt, int position) {
         assert nt != null : "Start symbol cannot be null.";
-        activateStateCall(s.stateCalls.get(new StateCall.Key(s.ntCalls.get(
-            new NonTerminalCall.Key(nt, position)), position, nt.entryState)),
+        activateStateCall(s.stateCall(s.ntCall(nt, position), position, nt.entryState),
             Function.IDENTITY);
 
         for (StateReturn stateReturn;
@@ -564,7 +601,7 @@ public class Parser {
         }
 
         Ambiguity result = Ambiguity.apply(new HashSet<>());
-        for(StateReturn stateReturn : s.ntCalls.get(new NonTerminalCall.Key(nt,position)).exitStateReturns) {
+        for(StateReturn stateReturn : s.ntCall(nt, position).exitStateReturns) {
             if (stateReturn.key.stateEnd == s.input.length()) {
                 result.items().add(KList.apply(ConsPStack.singleton(Ambiguity.apply(stateReturn.function.values))));
             }
@@ -594,13 +631,15 @@ public class Parser {
      * maximum point in the input string.
      */
     public ParseError getErrors() {
+        List<StateCall.Key> keys = new ArrayList<>();
+        s.ntCalls.forEachValue(ntCall -> ntCall.stateCalls.forEachValue(stateCall -> keys.add(stateCall.key)));
         int current = 0;
-        for (StateCall.Key key : s.stateCalls.keySet()) {
+        for (StateCall.Key key : keys) {
             if (key.state instanceof PrimitiveState)
                 current = Math.max(current, key.stateBegin);
         }
         Set<Pair<Production, RegExState>> tokens = new HashSet<>();
-        for (StateCall.Key key : s.stateCalls.keySet()) {
+        for (StateCall.Key key : keys) {
             if (key.state instanceof RegExState && key.stateBegin == current) {
                 tokens.add(new ImmutablePair<>(
                     null, ((RegExState) key.state)));
@@ -642,13 +681,12 @@ public class Parser {
             if (state instanceof ExitState) {
                 for (StateCall stateCall : stateReturn.key.stateCall.key.ntCall.callers) {
                     s.stateReturnWorkList.enqueue(
-                        s.stateReturns.get(
-                            new StateReturn.Key(stateCall, stateReturn.key.stateEnd)));
+                        s.stateReturn(stateCall, stateReturn.key.stateEnd));
                 }
             } else if (state instanceof NextableState) {
                 for (State nextState : ((NextableState) state).next) {
-                    activateStateCall(s.stateCalls.get(new StateCall.Key(
-                        stateReturn.key.stateCall.key.ntCall, stateReturn.key.stateEnd, nextState)),
+                    activateStateCall(s.stateCall(
+                        stateReturn.key.stateCall.key.ntCall, stateReturn.key.stateEnd, nextState),
                         stateReturn.function);
                 }
             } else { throw unknownStateType(); }
@@ -676,14 +714,14 @@ public class Parser {
         } else if (stateReturn.key.stateCall.key.state instanceof NonTerminalState) {
             return stateReturn.function.addNTCall(
                 stateReturn.key.stateCall.function,
-                s.stateReturns.get(new StateReturn.Key(
-                    s.stateCalls.get(new StateCall.Key(
-                        s.ntCalls.get(new NonTerminalCall.Key(
+                s.stateReturn(
+                    s.stateCall(
+                        s.ntCall(
                             ((Grammar.NonTerminalState) stateReturn.key.stateCall.key.state).child,
-                            stateReturn.key.stateCall.key.stateBegin)),
+                            stateReturn.key.stateCall.key.stateBegin),
                         stateReturn.key.stateEnd,
-                        ((Grammar.NonTerminalState) stateReturn.key.stateCall.key.state).child.exitState)),
-                    stateReturn.key.stateEnd)).function);
+                        ((Grammar.NonTerminalState) stateReturn.key.stateCall.key.state).child.exitState),
+                    stateReturn.key.stateEnd).function);
         } else { throw unknownStateType(); }
     }
 
@@ -697,30 +735,27 @@ public class Parser {
             nextState instanceof ExitState ||
             nextState instanceof RuleState) {
             s.stateReturnWorkList.enqueue(
-                s.stateReturns.get(
-                    new StateReturn.Key(stateCall, stateCall.key.stateBegin)));
+                s.stateReturn(stateCall, stateCall.key.stateBegin));
         } else if (nextState instanceof PrimitiveState) {
             for (PrimitiveState.MatchResult matchResult :
                     ((PrimitiveState)nextState).matches(s.input, s.reverseInput, stateCall.key.stateBegin)) {
                 s.stateReturnWorkList.enqueue(
-                    s.stateReturns.get(
-                        new StateReturn.Key(stateCall, matchResult.matchEnd)));
+                    s.stateReturn(stateCall, matchResult.matchEnd));
             }
         // not instanceof SimpleState
         } else if (nextState instanceof NonTerminalState) {
             // add to the ntCall
-            NonTerminalCall ntCall = s.ntCalls.get(new NonTerminalCall.Key(
-                ((NonTerminalState) nextState).child, stateCall.key.stateBegin));
+            NonTerminalCall ntCall = s.ntCall(
+                ((NonTerminalState) nextState).child, stateCall.key.stateBegin);
             ntCall.callers.add(stateCall);
             // activate the entry state call (almost like activateStateCall but we have no stateReturn)
-            StateCall entryStateCall = s.stateCalls.get(new StateCall.Key(
-                ntCall, stateCall.key.stateBegin, ntCall.key.nt.entryState));
+            StateCall entryStateCall = s.stateCall(
+                ntCall, stateCall.key.stateBegin, ntCall.key.nt.entryState);
             activateStateCall(entryStateCall, Function.IDENTITY);
             // process existStateReturns already done in the ntCall
             for (StateReturn exitStateReturn : ntCall.exitStateReturns) {
                 s.stateReturnWorkList.enqueue(
-                    s.stateReturns.get(
-                        new StateReturn.Key(stateCall, exitStateReturn.key.stateEnd)));
+                    s.stateReturn(stateCall, exitStateReturn.key.stateEnd));
             }
         } else { throw unknownStateType(); }
     }
@@ -2,12 +2,22 @@
 package org.kframework.utils;
 
 import com.google.inject.Inject;
+import org.kframework.attributes.Att;
+import org.kframework.kore.ADT;
+import org.kframework.kore.K;
+import org.kframework.kore.KApply;
+import org.kframework.kore.KList;
+import org.kframework.kore.KToken;
 import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import org.kframework.utils.inject.RequestScoped;
+import scala.collection.JavaConversions;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -17,10 +27,32 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamException;
 import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Saves and loads the kompiled definition and the other binary files of K.
+ * <p>
+ * A file consists of a header, made of {@link #MAGIC} and {@link #FORMAT_VERSION}, followed by the Java serialization
+ * of the saved object. Identical strings, labels, sorts, attributes and K terms are only written once, and referred
+ * to by back-references in the rest of the stream, so that the stream effectively carries a table of the names and
+ * attributes in the definition rather than a copy of them at each of their occurrences. Files are read through a
+ * memory mapping.
+ */
 @RequestScoped
 public class BinaryLoader {
 
+    private static final int MAGIC = 0x4B42494E; // "KBIN"
+
+    /**
+     * The version of the format of the files, to be increased whenever a change makes files written by a previous
+     * version unreadable.
+     */
+    private static final int FORMAT_VERSION = 1;
+
     private final KExceptionManager kem;
 
     @Inject
@@ -64,8 +96,10 @@ public class BinaryLoader {
     }
 
     public void save(OutputStream out, Object o) throws IOException {
-        try(ObjectOutputStream serializer
-                = new ObjectOutputStream(new BufferedOutputStream(out))) {
+        DataOutputStream header = new DataOutputStream(new BufferedOutputStream(out));
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        try(ObjectOutputStream serializer = new SharingObjectOutputStream(header)) {
             serializer.writeObject(o);
         }
     }
@@ -79,31 +113,56 @@ public class BinaryLoader {
     }
 
     public <T> T loadOrDie(Class<T> cls, File fileName) {
-        try (InputStream in = new BufferedInputStream(new FileInputStream(fileName))) {
-            return loadOrDie(cls, in, fileName.getAbsolutePath());
-        } catch (IOException e) {
-            throw KEMException.criticalError("Could not read from " + fileName, e);
-        }
+        return loadOrDie(() -> load(cls, fileName), fileName.getAbsolutePath());
     }
 
     public Object load(InputStream in) throws IOException, ClassNotFoundException {
+        DataInputStream header = new DataInputStream(in);
+        readHeader(header);
         try (ObjectInputStream deserializer
-                = new ObjectInputStream(in)) {
+                = new ObjectInputStream(header)) {
             Object obj = deserializer.readObject();
             return obj;
         }
     }
 
+    /**
+     * Checks the header of a file, which is missing from files written by a version of K which did not write one,
+     * and holds an older version in files written by a version which used another format.
+     */
+    private static void readHeader(DataInputStream header) throws IOException {
+        try {
+            if (header.readInt() == MAGIC && header.readInt() == FORMAT_VERSION) {
+                return;
+            }
+        } catch (EOFException e) {
+            // too short to hold a header
+        }
+        throw new StreamCorruptedException("Unknown file format, expected version " + FORMAT_VERSION);
+    }
+
     public Object load(File fileName) throws IOException, ClassNotFoundException {
-        try (InputStream in = new BufferedInputStream(new FileInputStream(fileName))) {
-            return load(in);
+        try (FileInputStream file = new FileInputStream(fileName)) {
+            FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                // too large to be mapped in one buffer
+                return load(new BufferedInputStream(file));
+            }
+            return load(new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
         }
     }
 
     public <T> T loadOrDie(Class<T> cls, InputStream in, String fileName) {
+        return loadOrDie(() -> load(cls, in), fileName);
+    }
+
+    private interface Loader<T> {
+        T load() throws IOException, ClassNotFoundException;
+    }
 
+    private <T> T loadOrDie(Loader<T> loader, String fileName) {
         try {
-            return load(cls, in);
+            return loader.load();
         } catch (ClassNotFoundException e) {
             throw new AssertionError("Something wrong with deserialization", e);
         } catch (ObjectStreamException e) {
@@ -113,4 +172,92 @@ public class BinaryLoader {
             throw KEMException.criticalError("Could not read from " + fileName, e);
         }
     }
+
+    /**
+     * Writes each string, label, sort, token, attribute set and term only once, replacing the later occurrences of an
+     * identical object by a back-reference to the first one.
+     */
+    private static class SharingObjectOutputStream extends ObjectOutputStream {
+        private final Map<Object, Object> sharedObjects = new HashMap<>();
+
+        SharingObjectOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            if (obj instanceof String || obj instanceof ADT.KLabel || obj instanceof ADT.Sort
+                    || obj instanceof ADT.KToken || obj instanceof Att
+                    || obj instanceof ADT.KApply || obj instanceof ADT.KList) {
+                Object sharedObj = sharedObjects.putIfAbsent(obj, obj);
+                if (sharedObj != null && isIdentical(sharedObj, obj)) {
+                    return sharedObj;
+                }
+            }
+            return obj;
+        }
+
+        /**
+         * Whether two equal objects are also equal in their attributes, which the equality of K terms ignores,
+         * so that one can stand for the other.
+         */
+        private static boolean isIdentical(Object obj1, Object obj2) {
+            if (obj1 == obj2) {
+                return true;
+            }
+            if (obj1.getClass() != obj2.getClass()) {
+                return false;
+            }
+
+            if (obj1 instanceof String || obj1 instanceof ADT.KLabel || obj1 instanceof ADT.Sort) {
+                return obj1.equals(obj2);
+            } else if (obj1 instanceof ADT.KToken) {
+                KToken token1 = (KToken) obj1;
+                KToken token2 = (KToken) obj2;
+                return token1.s().equals(token2.s())
+                        && token1.sort().equals(token2.sort())
+                        && isIdentical(token1.att(), token2.att());
+            } else if (obj1 instanceof ADT.KApply) {
+                KApply kApply1 = (KApply) obj1;
+                KApply kApply2 = (KApply) obj2;
+                return isIdentical(kApply1.klabel(), kApply2.klabel())
+                        && isIdentical(kApply1.klist(), kApply2.klist())
+                        && isIdentical(kApply1.att(), kApply2.att());
+            } else if (obj1 instanceof ADT.KList) {
+                List<K> items1 = ((KList) obj1).items();
+                List<K> items2 = ((KList) obj2).items();
+                if (items1.size() != items2.size()) {
+                    return false;
+                }
+                for (int i = 0; i < items1.size(); i++) {
+                    if (!isIdentical(items1.get(i), items2.get(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            } else if (obj1 instanceof Att) {
+                scala.collection.immutable.Set<K> att1 = ((Att) obj1).att();
+                scala.collection.immutable.Set<K> att2 = ((Att) obj2).att();
+                if (att1.size() != att2.size()) {
+                    return false;
+                }
+                for (K k1 : JavaConversions.setAsJavaSet(att1)) {
+                    boolean found = false;
+                    for (K k2 : JavaConversions.setAsJavaSet(att2)) {
+                        if (k1.equals(k2) && isIdentical(k1, k2)) {
+                            found = true;
+                            break;
+                        }
+                    }
+                    if (!found) {
+                        return false;
+                    }
+                }
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
 }
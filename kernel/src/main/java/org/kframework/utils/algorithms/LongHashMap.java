@@ -0,0 +1,103 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.utils.algorithms;
+
+import java.util.function.Consumer;
+
+/**
+ * A map from primitive longs to non-null values, stored in open-addressed arrays with linear probing.
+ * Unlike a {@link java.util.HashMap}, it allocates neither a boxed key on lookup nor an entry on insertion.
+ * Entries cannot be removed.
+ * @param <V>    The type of the value
+ */
+public class LongHashMap<V> {
+    private long[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    /**
+     * @param expectedSize    The number of entries the map can hold before it has to grow.
+     */
+    public LongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    private static int hash(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Retrieves the value associated with a given key.
+     * @param key    The key to lookup
+     * @return The value that key maps to, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Associates a value with a key which is not in the map yet.
+     * @param key      The key, which must not be in the map
+     * @param value    The value, which must not be null
+     */
+    public void putNew(long key, V value) {
+        assert value != null && get(key) == null;
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        insert(keys, values, key, value);
+        size++;
+    }
+
+    private static void insert(long[] keys, Object[] values, long key, Object value) {
+        int mask = keys.length - 1;
+        int i = hash(key, mask);
+        while (values[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    private void grow() {
+        long[] newKeys = new long[keys.length * 2];
+        Object[] newValues = new Object[values.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                insert(newKeys, newValues, keys[i], values[i]);
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    public int size() { return size; }
+
+    /**
+     * Applies the given action to every value, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * Packs two non-negative ints into a long key.
+     */
+    public static long key(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+}
@@ -13,6 +13,8 @@ import java.net.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Date;
+import java.util.Optional;
+import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
 public class JarInfo {
@@ -63,6 +65,26 @@ public class JarInfo {
         }
     }
 
+    /**
+     * Returns a string identifying the build of K which is running, made of its version, git revision and build date,
+     * or nothing for an internal build, whose classes can change without any of those changing.
+     */
+    public static Optional<String> getBuildStamp() {
+        try {
+            URL url = JarInfo.class.getResource("versionMarker");
+            URLConnection conn = url.openConnection();
+            if (!(conn instanceof JarURLConnection)) {
+                return Optional.empty();
+            }
+            Attributes attributes = ((JarURLConnection)conn).getManifest().getMainAttributes();
+            return Optional.of(JarInfo.class.getPackage().getImplementationVersion()
+                    + " " + attributes.getValue("Implementation-Revision")
+                    + " " + attributes.getValue("Implementation-Date"));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
     private final KExceptionManager kem;
 
     @Inject
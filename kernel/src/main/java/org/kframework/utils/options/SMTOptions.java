@@ -43,4 +43,13 @@ public class SMTOptions implements Serializable {
 
     @Parameter(names="--z3-impl-timeout", description="The default soft timeout (in milli seconds) of Z3 for checking implication.")
     public int z3ImplTimeout = 5000;
+
+    @Parameter(names="--z3-pool-size", description="The number of Z3 instances that can check queries concurrently. Defaults to the number of available processors.")
+    public int z3PoolSize = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names="--smt-cache-size", description="The maximum number of SMT query results to cache. 0 disables the cache.")
+    public int smtCacheSize = 10000;
+
+    @Parameter(names="--smt-persistent-cache", description="Save the SMT query results cache to the kompiled directory so that it can be reused by later runs.")
+    public boolean smtPersistentCache = false;
 }
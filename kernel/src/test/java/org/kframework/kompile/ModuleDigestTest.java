@@ -0,0 +1,50 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.kompile;
+
+import org.junit.Test;
+import org.kframework.builtin.BooleanUtils;
+import org.kframework.definition.Module;
+import org.kframework.definition.Sentence;
+import org.kframework.kil.Attribute;
+import scala.collection.immutable.Set;
+
+import static org.junit.Assert.*;
+import static org.kframework.Collections.*;
+import static org.kframework.definition.Constructors.Att;
+import static org.kframework.definition.Constructors.*;
+import static org.kframework.kore.KORE.*;
+
+public class ModuleDigestTest {
+
+    private static Sentence rule(String sort) {
+        return Rule(KRewrite(KApply(KLabel("f"), KVariable("X", Att().add(Attribute.SORT_KEY, sort))), KVariable("X", Att().add(Attribute.SORT_KEY, sort))),
+                BooleanUtils.TRUE, BooleanUtils.TRUE);
+    }
+
+    private static Module module(String name, Set<Module> imports, Sentence... sentences) {
+        return Module(name, imports, Set(sentences), Att());
+    }
+
+    @Test
+    public void testSameContent() {
+        assertEquals(new ModuleDigest().digest(module("TEST", Set(), rule("Int"))),
+                new ModuleDigest().digest(module("TEST", Set(), rule("Int"))));
+    }
+
+    @Test
+    public void testSortAnnotationOnly() {
+        Module intModule = module("TEST", Set(), rule("Int"));
+        Module boolModule = module("TEST", Set(), rule("Bool"));
+        // module equality ignores the attributes holding the sorts of variables
+        assertEquals(intModule, boolModule);
+        ModuleDigest digests = new ModuleDigest();
+        assertNotEquals(digests.digest(intModule), digests.digest(boolModule));
+    }
+
+    @Test
+    public void testSortAnnotationInImport() {
+        ModuleDigest digests = new ModuleDigest();
+        assertNotEquals(digests.digest(module("TEST", Set(module("IMPORTED", Set(), rule("Int"))))),
+                digests.digest(module("TEST", Set(module("IMPORTED", Set(), rule("Bool"))))));
+    }
+}
@@ -0,0 +1,109 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.kore.compile;
+
+import org.junit.Test;
+import org.kframework.attributes.Att;
+import org.kframework.builtin.BooleanUtils;
+import org.kframework.definition.Module;
+import org.kframework.definition.Production;
+import org.kframework.definition.Sentence;
+import org.kframework.kore.K;
+import org.kframework.utils.errorsystem.KEMException;
+
+import static org.junit.Assert.*;
+import static org.kframework.Collections.*;
+import static org.kframework.definition.Constructors.Att;
+import static org.kframework.definition.Constructors.*;
+import static org.kframework.kore.KORE.*;
+
+public class CheckMemoFunctionsTest {
+
+    private static Production function(String name, Att att) {
+        return Production(name, Sort("Foo"), Seq(Terminal(name), Terminal("("), NonTerminal(Sort("Foo")), Terminal(")")), att);
+    }
+
+    private static Sentence rule(String name, K rhs) {
+        return Rule(KRewrite(KApply(KLabel(name), KVariable("X")), rhs), BooleanUtils.TRUE, BooleanUtils.TRUE);
+    }
+
+    private static void check(Sentence... sentences) {
+        new CheckMemoFunctions().check(Module("TEST", Set(), Set(sentences), Att()));
+    }
+
+    @Test
+    public void testPureFunction() {
+        check(function("f", Att().add("function").add("memo")),
+                function("g", Att().add("function")),
+                rule("f", KApply(KLabel("g"), KVariable("X"))));
+    }
+
+    @Test
+    public void testNotFunction() {
+        try {
+            check(function("f", Att().add("memo")));
+            fail();
+        } catch (KEMException e) {
+            assertTrue(e.getMessage().contains("Only functions"));
+        }
+    }
+
+    @Test
+    public void testImpureFunction() {
+        try {
+            check(function("f", Att().add("function").add("memo").add("impure")));
+            fail();
+        } catch (KEMException e) {
+            assertTrue(e.getMessage().contains("Impure functions"));
+        }
+    }
+
+    @Test
+    public void testCallsImpureFunction() {
+        try {
+            check(function("f", Att().add("function").add("memo")),
+                    function("g", Att().add("function").add("impure")),
+                    rule("f", KApply(KLabel("g"), KVariable("X"))));
+            fail();
+        } catch (KEMException e) {
+            assertTrue(e.getMessage().contains("impure function g"));
+        }
+    }
+
+    @Test
+    public void testCallsIndirectlyImpureFunction() {
+        try {
+            check(function("f", Att().add("function").add("memo")),
+                    function("g", Att().add("function")),
+                    function("h", Att().add("function").add("impure")),
+                    rule("f", KApply(KLabel("g"), KVariable("X"))),
+                    rule("g", KApply(KLabel("h"), KVariable("X"))));
+            fail();
+        } catch (KEMException e) {
+            assertTrue(e.getMessage().contains("calls the function g, which calls the impure function h"));
+        }
+    }
+
+    @Test
+    public void testCallsFunctionWithFreshConstant() {
+        try {
+            check(function("f", Att().add("function").add("memo")),
+                    function("g", Att().add("function")),
+                    rule("f", KApply(KLabel("g"), KVariable("X"))),
+                    rule("g", KVariable("!Y")));
+            fail();
+        } catch (KEMException e) {
+            assertTrue(e.getMessage().contains("calls the function g, which introduces the fresh constant !Y"));
+        }
+    }
+
+    @Test
+    public void testFreshConstant() {
+        try {
+            check(function("f", Att().add("function").add("memo")),
+                    rule("f", KVariable("!Y")));
+            fail();
+        } catch (KEMException e) {
+            assertTrue(e.getMessage().contains("fresh constant !Y"));
+        }
+    }
+}
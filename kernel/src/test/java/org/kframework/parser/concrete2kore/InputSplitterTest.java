@@ -0,0 +1,105 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore;
+
+import org.junit.Test;
+import org.kframework.definition.Module;
+import org.kframework.definition.ProductionItem;
+import org.kframework.definition.Sentence;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.kframework.Collections.*;
+import static org.kframework.definition.Constructors.Att;
+import static org.kframework.definition.Constructors.*;
+import static org.kframework.kore.KORE.*;
+
+public class InputSplitterTest {
+
+    @Test
+    public void testSeparator() {
+        List<InputSplitter.Segment> segments = InputSplitter.split("a;b;c;d", ";", 1, 1, 2);
+        assertEquals(2, segments.size());
+        assertEquals("a;b", segments.get(0).text);
+        assertEquals("c;d", segments.get(1).text);
+        assertEquals(1, segments.get(1).startLine);
+        assertEquals(5, segments.get(1).startColumn);
+    }
+
+    @Test
+    public void testTopLevelOnly() {
+        List<InputSplitter.Segment> segments = InputSplitter.split("f(a;b;c);\"x;y\";d", ";", 1, 1, 4);
+        assertEquals(3, segments.size());
+        assertEquals("f(a;b;c)", segments.get(0).text);
+        assertEquals("\"x;y\"", segments.get(1).text);
+        assertEquals("d", segments.get(2).text);
+    }
+
+    @Test
+    public void testNoSeparator() {
+        List<InputSplitter.Segment> segments = InputSplitter.split("a\n  b\nc {\nd\n}\r\ne\n", "", 3, 1, 10);
+        assertEquals(1, segments.size());
+        assertEquals("a\n  b\nc {\nd\n}\r\ne\n", segments.get(0).text);
+    }
+
+    @Test
+    public void testLineComment() {
+        List<InputSplitter.Segment> segments = InputSplitter.split("x = 1; // old; y = 2;\nz = 3;w", ";", 1, 1, 10);
+        assertEquals(3, segments.size());
+        assertEquals("x = 1", segments.get(0).text);
+        assertEquals(" // old; y = 2;\nz = 3", segments.get(1).text);
+        assertEquals("w", segments.get(2).text);
+        assertEquals(2, segments.get(2).startLine);
+        assertEquals(7, segments.get(2).startColumn);
+    }
+
+    @Test
+    public void testBlockComment() {
+        List<InputSplitter.Segment> segments = InputSplitter.split("x = 1; /* old; y = 2; */ z = 3;w", ";", 1, 1, 10);
+        assertEquals(3, segments.size());
+        assertEquals("x = 1", segments.get(0).text);
+        assertEquals(" /* old; y = 2; */ z = 3", segments.get(1).text);
+        assertEquals("w", segments.get(2).text);
+    }
+
+    @Test
+    public void testCommentInString() {
+        List<InputSplitter.Segment> segments = InputSplitter.split("\"a // b\";c", ";", 1, 1, 10);
+        assertEquals(2, segments.size());
+        assertEquals("\"a // b\"", segments.get(0).text);
+        assertEquals("c", segments.get(1).text);
+    }
+
+    private static Module grammar(ProductionItem... tokens) {
+        List<Sentence> prods = new ArrayList<>();
+        for (ProductionItem token : tokens) {
+            prods.add(Production(Sort("Exp"), Seq(token)));
+        }
+        return Module("TEST", Set(), immutable(new HashSet<>(prods)), Att());
+    }
+
+    @Test
+    public void testCanSplit() {
+        Module grammar = grammar(Terminal(";"), Terminal("("), RegexTerminal("[a-z]+"),
+                RegexTerminal("[\\\"]([^\\\"\\\\]|[\\\\][\\\"\\\\n])*[\\\"]"));
+        assertTrue(InputSplitter.canSplit(grammar, ";"));
+        assertFalse(InputSplitter.canSplit(grammar, ""));
+    }
+
+    @Test
+    public void testCannotSplitInToken() {
+        assertFalse(InputSplitter.canSplit(grammar(Terminal(";"), RegexTerminal("'[^']'")), ";"));
+        assertFalse(InputSplitter.canSplit(grammar(Terminal(";"), Terminal(";;")), ";"));
+        assertFalse(InputSplitter.canSplit(grammar(Terminal(";"), RegexTerminal("[/][/][a-z]*")), ";"));
+        assertFalse(InputSplitter.canSplit(grammar(Terminal(";"), RegexTerminal("[\\\"][^\\\"]*[\\\"]")), ";"));
+    }
+
+    @Test
+    public void testUnbalanced() {
+        List<InputSplitter.Segment> segments = InputSplitter.split("a);b;c", ";", 1, 1, 3);
+        assertEquals(1, segments.size());
+        assertEquals("a);b;c", segments.get(0).text);
+    }
+}
@@ -0,0 +1,154 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kframework.definition.Module;
+import org.kframework.main.GlobalOptions;
+import org.kframework.parser.concrete2kore.ParseCache.ParsedSentence;
+import org.kframework.utils.errorsystem.KExceptionManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+import static org.kframework.Collections.*;
+import static org.kframework.definition.Constructors.Att;
+import static org.kframework.definition.Constructors.*;
+import static org.kframework.kore.KORE.*;
+
+public class ParseCacheStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Module grammar = Module("TEST", Set(), Set(), Att());
+    private final KExceptionManager kem = new KExceptionManager(new GlobalOptions());
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("parse-cache");
+    }
+
+    private ParseCacheStore store() {
+        return new ParseCacheStore(directory, kem);
+    }
+
+    private ParseCache cache(ParseCacheStore store, boolean strict) {
+        return store.get(grammar, strict, Module::equals);
+    }
+
+    private static ParsedSentence parse(String token) {
+        return new ParsedSentence(KToken(token, Sort("Int")), new HashSet<>());
+    }
+
+    private File shard(ParseCacheStore store) {
+        return store.shardFile(grammar.name());
+    }
+
+    private void write(String... sentences) {
+        ParseCacheStore store = store();
+        ParseCache cache = cache(store, false);
+        for (String sentence : sentences) {
+            cache.put(sentence, parse(sentence));
+        }
+        store.close(false);
+    }
+
+    @Test
+    public void testReopen() {
+        write("a", "b");
+        ParseCacheStore store = store();
+        ParseCache cache = cache(store, false);
+        assertEquals(KToken("a", Sort("Int")), cache.get("a").getParse());
+        assertEquals(KToken("b", Sort("Int")), cache.get("b").getParse());
+        store.close(false);
+    }
+
+    @Test
+    public void testTornRecord() throws IOException {
+        write("a", "b");
+        File shard = shard(store());
+        long length = shard.length();
+        try (RandomAccessFile file = new RandomAccessFile(shard, "rw")) {
+            file.setLength(length - 3);
+        }
+
+        ParseCacheStore store = store();
+        ParseCache cache = cache(store, false);
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        cache.put("c", parse("c"));
+        store.close(false);
+
+        store = store();
+        cache = cache(store, false);
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(KToken("c", Sort("Int")), cache.get("c").getParse());
+        store.close(false);
+    }
+
+    @Test
+    public void testCorruptedRecord() throws IOException {
+        write("a", "corrupted", "c");
+        File shard = shard(store());
+        byte[] bytes = Files.readAllBytes(shard.toPath());
+        int key = new String(bytes, StandardCharsets.ISO_8859_1).indexOf("corrupted");
+        bytes[key] ^= 1;
+        Files.write(shard.toPath(), bytes);
+
+        ParseCacheStore store = store();
+        ParseCache cache = cache(store, false);
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("corrupted"));
+        assertNull(cache.get("c"));
+        store.close(false);
+        assertTrue(shard.length() < bytes.length);
+    }
+
+    @Test
+    public void testCompaction() {
+        String large = new String(new char[100000]).replace((char) 0, 'x');
+        write("a", large + "b", large + "c");
+        File shard = shard(store());
+        long length = shard.length();
+
+        ParseCacheStore store = store();
+        ParseCache cache = cache(store, false);
+        assertNotNull(cache.get("a"));
+        store.close(false);
+        assertTrue(shard.length() < length / 2);
+
+        store = store();
+        cache = cache(store, false);
+        assertEquals(KToken("a", Sort("Int")), cache.get("a").getParse());
+        assertNull(cache.get(large + "b"));
+        assertNull(cache.get(large + "c"));
+        store.close(false);
+    }
+
+    @Test
+    public void testStrictnessChange() {
+        write("a");
+        ParseCacheStore store = store();
+        assertNotNull(cache(store, false).get("a"));
+        ParseCache cache = cache(store, true);
+        assertNull(cache.get("a"));
+        cache.put("b", parse("b"));
+        store.close(false);
+
+        store = store();
+        cache = cache(store, true);
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        store.close(false);
+    }
+}
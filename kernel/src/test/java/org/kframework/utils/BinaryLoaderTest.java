@@ -0,0 +1,123 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kframework.kore.K;
+import org.kframework.kore.KApply;
+import org.kframework.main.GlobalOptions;
+import org.kframework.utils.errorsystem.KEMException;
+import org.kframework.utils.errorsystem.KExceptionManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.kframework.kore.KORE.*;
+
+public class BinaryLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BinaryLoader loader = new BinaryLoader(new KExceptionManager(new GlobalOptions()));
+
+    @SuppressWarnings("unchecked")
+    private List<K> roundTrip(List<K> terms) throws IOException {
+        File file = folder.newFile();
+        loader.saveOrDie(file, new ArrayList<>(terms));
+        return loader.loadOrDie(List.class, file);
+    }
+
+    @Test
+    public void testSharing() throws IOException {
+        K one = KToken("1", Sort("Int"), Att());
+        K identicalOne = KToken("1", Sort("Int"), Att());
+        K annotatedOne = KToken("1", Sort("Int"), Att().add("annotated"));
+        List<K> terms = roundTrip(Arrays.asList(one, identicalOne, annotatedOne));
+
+        /* identical terms are shared, but equal terms which differ in their attributes are not */
+        assertEquals(Arrays.asList(one, one, one), terms);
+        assertSame(terms.get(0), terms.get(1));
+        assertNotSame(terms.get(0), terms.get(2));
+        assertEquals(Att(), terms.get(0).att());
+        assertEquals(Att().add("annotated"), terms.get(2).att());
+    }
+
+    @Test
+    public void testSharingOfChildren() throws IOException {
+        KApply plain = KApply(KLabel("f"), KToken("1", Sort("Int"), Att()));
+        KApply annotated = KApply(KLabel("f"), KToken("1", Sort("Int"), Att().add("annotated")));
+        KApply identical = KApply(KLabel("f"), KToken("1", Sort("Int"), Att()));
+        assertEquals(plain, annotated);
+        List<K> terms = roundTrip(Arrays.asList(plain, annotated, identical));
+
+        assertNotSame(terms.get(0), terms.get(1));
+        assertSame(terms.get(0), terms.get(2));
+        assertEquals(Att(), ((KApply) terms.get(0)).klist().items().get(0).att());
+        assertEquals(Att().add("annotated"), ((KApply) terms.get(1)).klist().items().get(0).att());
+    }
+
+    private void assertOutOfDate(File file) throws ClassNotFoundException, IOException {
+        try {
+            loader.load(file);
+            fail("expected the file to be rejected");
+        } catch (StreamCorruptedException e) {
+        }
+        try {
+            loader.loadOrDie(Object.class, file);
+            fail("expected the file to be rejected");
+        } catch (KEMException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("out of date"));
+        }
+    }
+
+    @Test
+    public void testNoHeader() throws ClassNotFoundException, IOException {
+        File file = folder.newFile();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject("definition");
+        }
+        assertOutOfDate(file);
+    }
+
+    @Test
+    public void testTruncatedHeader() throws ClassNotFoundException, IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), new byte[] {'K', 'B'});
+        assertOutOfDate(file);
+        Files.write(file.toPath(), new byte[0]);
+        assertOutOfDate(file);
+    }
+
+    @Test
+    public void testWrongMagic() throws ClassNotFoundException, IOException {
+        File file = folder.newFile();
+        loader.saveOrDie(file, "definition");
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[0] ^= 1;
+        Files.write(file.toPath(), bytes);
+        assertOutOfDate(file);
+    }
+
+    @Test
+    public void testOldVersion() throws ClassNotFoundException, IOException {
+        File file = folder.newFile();
+        loader.saveOrDie(file, "definition");
+        assertEquals("definition", loader.load(file));
+
+        /* the version follows the four bytes of the magic number */
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[7]--;
+        Files.write(file.toPath(), bytes);
+        assertOutOfDate(file);
+    }
+}
@@ -0,0 +1,44 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+package org.kframework.utils.algorithms;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LongHashMapTest {
+
+    @Test
+    public void testPutAndGetAcrossGrowth() {
+        LongHashMap<String> map = new LongHashMap<>(1);
+        for (int i = 0; i < 1000; i++) {
+            map.putNew(LongHashMap.key(i % 7, i), "v" + i);
+        }
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("v" + i, map.get(LongHashMap.key(i % 7, i)));
+        }
+        assertNull(map.get(LongHashMap.key(1, 0)));
+    }
+
+    @Test
+    public void testForEachValue() {
+        LongHashMap<Integer> map = new LongHashMap<>(4);
+        map.putNew(0, 0);
+        map.putNew(-1, 1);
+        map.putNew(LongHashMap.key(3, 0), 2);
+        Set<Integer> values = new HashSet<>();
+        map.forEachValue(values::add);
+        assertEquals(3, values.size());
+        assertTrue(values.contains(0) && values.contains(1) && values.contains(2));
+    }
+
+    @Test
+    public void testKeyPacking() {
+        assertNotEquals(LongHashMap.key(1, 2), LongHashMap.key(2, 1));
+        assertEquals(5L, LongHashMap.key(0, 5));
+        assertEquals(1L << 32, LongHashMap.key(1, 0));
+    }
+}
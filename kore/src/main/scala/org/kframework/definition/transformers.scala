@@ -7,15 +7,21 @@ import org.kframework.definition
 import org.kframework.kore.K
 import org.kframework.utils.errorsystem.KEMException
 
+import scala.util.Try
+
 object ModuleTransformer {
   def from(f: java.util.function.UnaryOperator[Module], name: String): ModuleTransformer = ModuleTransformer(f(_), name)
 
   def fromSentenceTransformer(f: java.util.function.UnaryOperator[Sentence], name: String): ModuleTransformer =
     fromSentenceTransformer((m: Module, s: Sentence) => f(s), name)
 
+  /**
+   * The sentences of a module are transformed in parallel, and so are the modules which do not import each other,
+   * so f must be thread-safe.
+   */
   def fromSentenceTransformer(f: (Module, Sentence) => Sentence, name: String): ModuleTransformer =
-    ModuleTransformer(m => {
-      val newSentences = m.localSentences map { s =>
+    new ModuleTransformer(m => {
+      val newSentences = parMap(m.localSentences.toSeq)({ s =>
         try {
           f(m, s)
         } catch {
@@ -23,12 +29,12 @@ object ModuleTransformer {
             e.exception.addTraceFrame("while executing phase \"" + name + "\" on sentence at " + s.att.get(classOf[Source]).map(_.toString).getOrElse("<none>") + ":" + s.att.get(classOf[Location]).map(_.toString).getOrElse("<none>"))
             throw e
         }
-      }
+      }).toSet
       if (newSentences != m.localSentences)
         Module(m.name, m.imports, newSentences, m.att)
       else
         m
-    }, name)
+    }, name, parallel = true)
 
   def fromRuleBodyTranformer(f: java.util.function.UnaryOperator[K], name: String): ModuleTransformer =
     fromSentenceTransformer(_ match { case r: Rule => r.copy(body = f(r.body)); case s => s }, name)
@@ -40,24 +46,59 @@ object ModuleTransformer {
     case f: ModuleTransformer => f
     case _ => new ModuleTransformer(f, name)
   }
+
+  /**
+   * Maps f over xs in parallel. When f throws on several elements, a parallel collection would merge the exceptions
+   * into a CompositeThrowable; this rethrows the exception of the first failing element of xs instead.
+   */
+  private[definition] def parMap[A, B](xs: Seq[A])(f: A => B): Seq[B] =
+    xs.par.map(x => Try(f(x))).seq.map(_.get)
 }
 
 /**
  * Transform all modules, transforming each module after its imports.
  * The f function take a module with all the imported modules already transformed, and changes the current module.
+ * If parallel is set, f must be thread-safe: the modules are then transformed in layers following a topological sort
+ * of the import graph, and the modules of a layer, which do not import each other, are transformed in parallel.
  */
-class ModuleTransformer(f: Module => Module, name: String) extends (Module => Module) {
+class ModuleTransformer(f: Module => Module, val name: String, parallel: Boolean = false) extends (Module => Module) {
   val memoization = collection.concurrent.TrieMap[Module, Module]()
 
+  /**
+   * This transformer, with f applied through cache, which is given the module to transform together with f.
+   * The module given to f already has its imports transformed, so a cache mapping the content of the modules,
+   * attributes included, to the results of f can be kept across runs as long as f does not change.
+   */
+  def cached(cache: (Module, Module => Module) => Module): ModuleTransformer =
+    new ModuleTransformer(m => cache(m, f), name, parallel)
+
   override def apply(input: Module): Module = {
+    if (parallel && !memoization.contains(input))
+      importLayers(input) foreach { layer => ModuleTransformer.parMap(layer.toSeq)(transform) }
+    transform(input)
+  }
+
+  private def transform(input: Module): Module = {
     memoization.getOrElseUpdate(input, {
-      var newImports = input.imports map this
+      var newImports = input.imports map transform
       if (newImports != input.imports)
         f(Module(input.name, newImports, input.localSentences, input.att))
       else
         f(input)
     })
   }
+
+  /**
+   * The modules imported by input, directly or not, which are not transformed yet, grouped by their height in the
+   * import graph, lowest first, so that the modules of a layer only import modules of the previous layers.
+   */
+  private def importLayers(input: Module): Seq[Iterable[Module]] = {
+    val heights = collection.mutable.HashMap[Module, Int]()
+    def height(m: Module): Int = heights.getOrElseUpdate(m,
+      if (memoization.contains(m)) -1 else (m.imports.toSeq.map(height) :+ -1).max + 1)
+    input.imports foreach height
+    heights.toSeq.filter(_._2 >= 0).groupBy(_._2).toSeq.sortBy(_._1).map(_._2.map(_._1))
+  }
 }
 
 object DefinitionTransformer {
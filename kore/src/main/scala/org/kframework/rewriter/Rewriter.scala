@@ -40,4 +40,10 @@ trait Rewriter {
   def executeAndMatch(k: kore.K, depth: Optional[Integer], rule: Rule): Tuple2[RewriterResult, java.util.List[_ <: java.util.Map[_ <: kore.KVariable, _ <: kore.K]]]
 
   def prove(rules: java.util.List[Rule]): java.util.List[kore.K]
+
+  /**
+   * Releases the resources held by the rewriter, such as the processes of external solvers.
+   * The rewriter must not be used afterwards.
+   */
+  def close(): Unit
 }
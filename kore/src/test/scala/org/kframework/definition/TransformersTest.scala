@@ -0,0 +1,35 @@
+// Copyright (c) 2015 K Team. All Rights Reserved.
+
+package org.kframework.definition
+
+import org.junit.{Assert, Test}
+import org.kframework.kore.ADT.Sort
+import org.kframework.utils.errorsystem.KEMException
+
+class TransformersTest {
+
+  @Test def testSeveralFailingSentences() {
+    val m = Module("TEST", Set(), (1 to 10).map(i => SyntaxSort(Sort("S" + i)): Sentence).toSet)
+    val transformer = ModuleTransformer.fromSentenceTransformer(
+      (m: Module, s: Sentence) => throw KEMException.compilerError("failed on " + s), "test")
+    try {
+      transformer(m)
+      Assert.fail("Should have failed.")
+    } catch {
+      case e: KEMException =>
+    }
+  }
+
+  @Test def testSeveralFailingModules() {
+    val modules = (1 to 10).map(i => Module("M" + i, Set(), Set(SyntaxSort(Sort("S" + i)))))
+    val m = Module("TEST", modules.toSet, Set())
+    val transformer = ModuleTransformer.fromSentenceTransformer(
+      (m: Module, s: Sentence) => throw KEMException.compilerError("failed in " + m.name), "test")
+    try {
+      transformer(m)
+      Assert.fail("Should have failed.")
+    } catch {
+      case e: KEMException =>
+    }
+  }
+}
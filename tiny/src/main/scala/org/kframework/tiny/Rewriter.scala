@@ -52,6 +52,8 @@ class FullTinyRewriter(module: definition.Module) extends rewriter.Rewriter {
   override def `match`(k: kore.K, rule: org.kframework.definition.Rule): java.util.List[java.util.Map[kore.KVariable, kore.K]] = ???
 
   override def prove(rules: util.List[definition.Rule]): util.List[kore.K] = ???
+
+  override def close(): Unit = {}
 }
 
 class Rewriter(module: definition.Module, index: K => Option[Symbol] = KIndex, theory: Theory) {